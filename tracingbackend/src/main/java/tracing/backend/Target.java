@@ -1,9 +1,11 @@
 package tracing.backend;
 
-import tracing.backend.scheduler.vectorclock.VectorClock;
+import tracing.backend.scheduler.vectorclock.DenseVectorClock;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.source.elf.ElfParser;
 import tracing.backend.trace.TraceEvent;
 
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a tracing target (or the observer board of a target).
@@ -12,40 +14,64 @@ public class Target {
 
     // unique name/ID of the target
     private final String targetId;
+    // ordinal of the target ID in the vector clock index
+    private final int ordinal;
 
     // the queue of events from this target
-    private final TraceQueue traceQueue = new TraceQueue();
+    private final TraceQueue traceQueue;
 
     // whether the target notified the server that it is ready to start tracing
     private boolean isReady = false;
 
+    // whether the observer is connected, the scheduler does not wait for disconnected targets
+    private volatile boolean connected = true;
+
     // host name of the observer
     private String host;
 
-    // the current vector clock value of the target
-    private VectorClock<String> vectorClock;
+    // the current vector clock value of the target, read by other scheduler threads to retire send events
+    private volatile DenseVectorClock vectorClock;
+
+    // sequence number of the last event created for this target
+    private final AtomicLong eventSeq = new AtomicLong(0);
 
     // last event from this target that the scheduler processed
     private TraceEvent lastTraceEvent;
 
+    // parser of the target's binary, used to resolve addresses of its events, null if unknown
+    private volatile ElfParser elfParser;
+
     /**
      * Construct a new target instance with a unique ID.
      *
      * @param targetId unique ID
-     * @param allTargetIds IDs of all other targets, needed for vector clock
+     * @param clockIndex index of all target IDs, needed for vector clock
      */
-    public Target(String targetId, List<String> allTargetIds) {
+    public Target(String targetId, VectorClockIndex clockIndex) {
+        this(targetId, clockIndex, new TraceQueue());
+    }
+
+    /**
+     * Construct a new target instance with a unique ID and the given event queue.
+     *
+     * @param targetId unique ID
+     * @param clockIndex index of all target IDs, needed for vector clock
+     * @param traceQueue the queue for events of this target
+     */
+    public Target(String targetId, VectorClockIndex clockIndex, TraceQueue traceQueue) {
         this.targetId = targetId;
+        this.ordinal = clockIndex.ordinalOf(targetId);
+        this.traceQueue = traceQueue;
 
-        this.vectorClock = VectorClock.create(allTargetIds);
+        this.vectorClock = DenseVectorClock.create(clockIndex);
     }
 
     /**
      * Increments the vector clock of this target and returns the new value.
      * @return new value
      */
-    public VectorClock<String> incrementVectorClock() {
-        this.vectorClock = this.vectorClock.increment(this.getTargetId());
+    public DenseVectorClock incrementVectorClock() {
+        this.vectorClock = this.vectorClock.increment(this.ordinal);
         return this.vectorClock;
     }
 
@@ -53,12 +79,20 @@ public class Target {
      * Increments the vector clock of this target, merges it with the given vector clock and returns the new value.
      * @return new value
      */
-    public VectorClock<String> merge(VectorClock<String> other) {
-        this.incrementVectorClock();
-        this.vectorClock = this.vectorClock.merge(other);
+    public DenseVectorClock merge(DenseVectorClock other) {
+        this.vectorClock = this.vectorClock.incrementAndMerge(this.ordinal, other);
         return this.vectorClock;
     }
 
+    /**
+     * Returns a new event ID, unique across all targets: the ordinal of the target in the upper 24 bits and a
+     * sequence number of this target in the lower 40 bits. IDs of a target increase in creation order.
+     * @return new event ID
+     */
+    public long nextEventId() {
+        return ((long) this.ordinal << 40) | this.eventSeq.incrementAndGet();
+    }
+
     public TraceQueue getTraceQueue() {
         return traceQueue;
     }
@@ -67,6 +101,14 @@ public class Target {
         return targetId;
     }
 
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public DenseVectorClock getVectorClock() {
+        return vectorClock;
+    }
+
     public boolean isReady() {
         return isReady;
     }
@@ -75,6 +117,14 @@ public class Target {
         isReady = ready;
     }
 
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
     public String getHost() {
         return host;
     }
@@ -90,4 +140,12 @@ public class Target {
     public void setLastTraceEvent(TraceEvent lastTraceEvent) {
         this.lastTraceEvent = lastTraceEvent;
     }
+
+    public ElfParser getElfParser() {
+        return elfParser;
+    }
+
+    public void setElfParser(ElfParser elfParser) {
+        this.elfParser = elfParser;
+    }
 }
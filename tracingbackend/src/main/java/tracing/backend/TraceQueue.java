@@ -2,57 +2,205 @@ package tracing.backend;
 
 import tracing.backend.trace.TraceEvent;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Queue of trace events that allows a blocking peek operation.
+ * Bounded queue of trace events that allows a blocking peek operation.
+ * <p>
+ * Implemented as a lock-free ring buffer for a single producer (the source thread of the target) and a single
+ * consumer (the scheduler). The {@link FullPolicy} defines what happens to new events when the queue is full.
  */
 public class TraceQueue {
 
-    private final Semaphore available = new Semaphore(0, false);
-    private final BlockingQueue<TraceEvent> queue = new LinkedBlockingQueue<>();
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * What to do when an event is added to a full queue.
+     */
+    public enum FullPolicy {
+        BLOCK, // wait until the scheduler removed an event
+        DROP_OLDEST, // discard the oldest event in the queue to make room
+        SIGNAL // reject the new event, add() returns false so the source can react
+    }
+
+    private final TraceEvent[] buffer;
+    private final int mask;
+    private final FullPolicy fullPolicy;
+
+    // sequence number of the head of the queue, advanced by the consumer (or by the producer when dropping events)
+    private final AtomicLong head = new AtomicLong(0);
+    // sequence number of the next free slot, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong(0);
+    // sequence number of the event returned by the last peek, only used by the consumer
+    private long peeked = -1;
+
+    // consumer waiting for an event, producer waiting for a free slot
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    // number of events dropped or rejected because the queue was full
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    /**
+     * Creates a queue with default capacity that blocks the producer when full.
+     */
+    public TraceQueue() {
+        this(DEFAULT_CAPACITY, FullPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a queue with the given capacity and full-queue policy.
+     * @param capacity maximum number of events, rounded up to the next power of two
+     * @param fullPolicy what to do when the queue is full
+     */
+    public TraceQueue(int capacity, FullPolicy fullPolicy) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new TraceEvent[size];
+        this.mask = size - 1;
+        this.fullPolicy = fullPolicy;
+    }
 
     /**
      * Retrieves, but does not remove, the head of this queue, or blocks if the queue is empty.
-     * @return the head of this queue
+     * @return the head of this queue, or null if interrupted while waiting
      */
     public TraceEvent blockingPeek() {
-        try {
-            // potentially block until at least one element is in the queue, counts semaphore down by one
-            this.available.acquire();
-            // count back up because element is not yet removed
-            this.available.release();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            return null;
+        while (true) {
+            var event = this.peek();
+            if (event != null) {
+                return event;
+            }
+
+            // announce that we are going to park, then check again so that a concurrent add() cannot be missed
+            this.waitingConsumer = Thread.currentThread();
+            if (this.isEmpty()) {
+                LockSupport.park(this);
+            }
+            this.waitingConsumer = null;
+
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
         }
-        return this.queue.peek();
     }
 
     /**
-     * Removes the head of the queue (oldest event in the trace of a specific target)
+     * Retrieves, but does not remove, the head of this queue.
+     * @return the head of this queue, or null if the queue is empty
+     */
+    public TraceEvent peek() {
+        long h;
+        TraceEvent event;
+        do {
+            h = this.head.get();
+            if (h == this.tail.get()) {
+                return null;
+            }
+            event = this.buffer[(int) h & this.mask];
+        } while (this.head.get() != h); // head was dropped by the producer in the meantime, slot may be reused
+
+        this.peeked = h;
+        return event;
+    }
+
+    /**
+     * Removes the head of the queue (oldest event in the trace of a specific target).
+     * Must be preceded by a peek, the event returned by that peek is removed.
      */
     public void remove() {
-        try {
-            // count down by one because element is removed. Should not block here, as blockingPeek() should have been called first
-            this.available.acquire();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        if (this.peeked < 0) {
+            throw new IllegalStateException("remove() without preceding peek");
+        }
+        if (this.fullPolicy == FullPolicy.DROP_OLDEST) {
+            // the producer may have already dropped the peeked event, then there is nothing left to remove
+            // (the slot is not cleared, as the producer may already reuse it)
+            if (!this.head.compareAndSet(this.peeked, this.peeked + 1)) {
+                // the event was delivered anyway, it is not lost
+                this.droppedCount.decrementAndGet();
+            }
+        } else {
+            // release the event, the producer cannot reuse the slot before the head advances
+            this.buffer[(int) this.peeked & this.mask] = null;
+            this.head.set(this.peeked + 1);
+        }
+        this.peeked = -1;
+
+        var producer = this.waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
         }
-        // remove head of queue (oldest event in the trace of a specific target)
-        this.queue.remove();
     }
 
     /**
-     * Inserts the specified event into this queue.
+     * Inserts the specified event into this queue, following the full-queue policy if there is no space left.
      * @param traceEvent the event to add
+     * @return false if the event was rejected (policy SIGNAL) or the producer was interrupted while waiting
      */
-    public void add(TraceEvent traceEvent) {
-        this.queue.add(traceEvent);
-        // indicate that there is a an element in the queue, potentially unblocking a waiting thread
-        this.available.release();
+    public boolean add(TraceEvent traceEvent) {
+        long t = this.tail.get();
+
+        while (t - this.head.get() >= this.buffer.length) {
+            switch (this.fullPolicy) {
+                case BLOCK:
+                    this.waitingProducer = Thread.currentThread();
+                    if (t - this.head.get() >= this.buffer.length) {
+                        LockSupport.park(this);
+                    }
+                    this.waitingProducer = null;
+                    if (Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    long h = this.head.get();
+                    if (t - h >= this.buffer.length && this.head.compareAndSet(h, h + 1)) {
+                        this.droppedCount.incrementAndGet();
+                    }
+                    break;
+                default: // SIGNAL
+                    this.droppedCount.incrementAndGet();
+                    return false;
+            }
+        }
+
+        this.buffer[(int) t & this.mask] = traceEvent;
+        // publish the event, the volatile write makes the slot visible to the consumer
+        this.tail.set(t + 1);
+
+        var consumer = this.waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a consumer thread that is unparked by the next add(), or unregisters it if null.
+     * Allows the consumer to wait for a change of several queues at once.
+     * @param consumer the consumer thread or null
+     */
+    public void setWaitingConsumer(Thread consumer) {
+        this.waitingConsumer = consumer;
+    }
+
+    /**
+     * Registers a producer thread that is unparked by the next remove(), or unregisters it if null.
+     * Allows a producer that feeds several queues to wait for space without blocking in add().
+     * @param producer the producer thread or null
+     */
+    public void setWaitingProducer(Thread producer) {
+        this.waitingProducer = producer;
+    }
+
+    public boolean isEmpty() {
+        return this.head.get() == this.tail.get();
     }
 
     /**
@@ -60,6 +208,22 @@ public class TraceQueue {
      * @return the number of events in this queue
      */
     public int size() {
-        return this.queue.size();
+        return (int) Math.max(0, this.tail.get() - this.head.get());
+    }
+
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    public FullPolicy getFullPolicy() {
+        return fullPolicy;
+    }
+
+    /**
+     * Returns the number of events that were dropped or rejected because the queue was full.
+     * @return the number of lost events
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
     }
 }
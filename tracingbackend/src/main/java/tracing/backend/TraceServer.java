@@ -8,13 +8,19 @@ import tracing.backend.output.falcon.FalconOutput;
 import tracing.backend.output.other.NullOutput;
 import tracing.backend.output.other.PrintOutput;
 import tracing.backend.output.shiviz.ShiVizOutput;
+import tracing.backend.post_processing.ParallelStage;
 import tracing.backend.post_processing.PostProcessingStep;
 import tracing.backend.post_processing.print.PrintStep;
 import tracing.backend.post_processing.resolve.ResolveAddressesStep;
+import tracing.backend.scheduler.Scheduler;
 import tracing.backend.scheduler.causal.CausalScheduler;
+import tracing.backend.scheduler.causal.PartitionedScheduler;
+import tracing.backend.scheduler.hlc.HybridClockScheduler;
 import tracing.backend.source.TraceSource;
 import tracing.backend.source.mqtt.MQTTSource;
+import tracing.backend.source.shm.SharedMemorySource;
 import tracing.backend.source.simulation.SimulationSource;
+import tracing.backend.source.tcp.TCPSource;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,6 +29,8 @@ public class TraceServer {
 
     private TraceSource traceSource;
     private final List<PostProcessingStep> postProcessingSteps = new ArrayList<>();
+    // stages running thread-safe post-processing steps on several threads
+    private final List<ParallelStage> parallelStages = new ArrayList<>();
     private TraceOutput traceOutput;
     private CommandLine cmd;
 
@@ -43,6 +51,14 @@ public class TraceServer {
                     System.out.println("Trace source: MQTT");
                     traceSource = new MQTTSource(traceOutput);
                     break;
+                case "tcp":
+                    System.out.println("Trace source: TCP");
+                    traceSource = new TCPSource(traceOutput);
+                    break;
+                case "shm":
+                    System.out.println("Trace source: shared memory");
+                    traceSource = new SharedMemorySource(traceOutput);
+                    break;
                 default:
                     throw new IllegalArgumentException(cmd.getOptionValue("s"));
             }
@@ -105,16 +121,40 @@ public class TraceServer {
         // different source implementations may have different ways to define the traced targets
         var configurationProvider = traceSource.getTargetProvider();
 
-        // start the causal scheduler
-        var scheduler = new CausalScheduler();
+        // scheduler selection, default: CausalScheduler
+        // in bounded-latency mode if a target timeout is given
+        var timeout = cmd.hasOption("t") ? Long.parseLong(cmd.getOptionValue("t")) : 0;
+        if (timeout > 0) {
+            System.out.println("Scheduler: bounded latency, target timeout " + timeout + " ms");
+        }
+        Scheduler scheduler;
+        switch (cmd.getOptionValue("c", "causal")) {
+            case "causal":
+                scheduler = new CausalScheduler(timeout);
+                break;
+            case "partitioned":
+                System.out.println("Scheduler: partitioned");
+                scheduler = new PartitionedScheduler(timeout);
+                break;
+            case "hlc":
+                System.out.println("Scheduler: hybrid logical clocks");
+                if (traceOutput instanceof ShiVizOutput) {
+                    throw new IllegalArgumentException("ShiViz output requires vector clocks, not supported with hlc");
+                }
+                scheduler = new HybridClockScheduler(timeout);
+                break;
+            default:
+                throw new IllegalArgumentException(cmd.getOptionValue("c"));
+        }
         // get list of targets from the configuration provider of the source
         scheduler.setTargets(configurationProvider.getTargets());
-        scheduler.start();
+        new Thread(scheduler).start();
 
         // make sure to close/stop the trace source and output on exit
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down...");
             traceSource.close();
+            parallelStages.forEach(ParallelStage::close);
             traceOutput.close();
         }));
 
@@ -122,30 +162,59 @@ public class TraceServer {
         var stream = scheduler.resultStream()
                 .peek(t -> {
                     Metrics.markSchedulerEvent();
-                    Metrics.updateSchedulerQueueSize(scheduler.resultQueue.size());
+                    Metrics.updateSchedulerQueueSize(scheduler.getResultQueueSize());
                 });
 
         // execute all post-processing steps on events that passed the scheduler
+        // consecutive thread-safe steps run on several threads, the order of the events is kept
+        var workers = cmd.hasOption("w") ? Integer.parseInt(cmd.getOptionValue("w")) : Runtime.getRuntime().availableProcessors();
+        if (workers > 1 && postProcessingSteps.stream().anyMatch(PostProcessingStep::isThreadSafe)) {
+            System.out.println("Post-processing: " + workers + " worker threads");
+        }
+        var parallelSteps = new ArrayList<PostProcessingStep>();
         for (var postProcessingStep : postProcessingSteps) {
+            if (workers > 1 && postProcessingStep.isThreadSafe()) {
+                parallelSteps.add(postProcessingStep);
+                continue;
+            }
+            if (!parallelSteps.isEmpty()) {
+                stream = this.parallelStage(parallelSteps, workers).apply(stream);
+                parallelSteps.clear();
+            }
             stream = stream.peek(postProcessingStep);
         }
+        if (!parallelSteps.isEmpty()) {
+            stream = this.parallelStage(parallelSteps, workers).apply(stream);
+        }
 
         // output
-        stream.peek(t -> Metrics.markSinkEvent(t.uuid))
+        stream.peek(t -> Metrics.markSinkEvent(t))
                 .forEach(traceOutput::put);
     }
 
+    /**
+     * Creates a stage for consecutive thread-safe post-processing steps, closed on exit.
+     */
+    private ParallelStage parallelStage(List<PostProcessingStep> steps, int workers) {
+        var stage = new ParallelStage(steps, workers, ParallelStage.DEFAULT_WINDOW);
+        this.parallelStages.add(stage);
+        return stage;
+    }
+
     /**
      * Parse command line options.
      * @param args
      */
     private void parseOptions(String[] args) {
         Options options = new Options();
-        options.addOption("s", "source", true, "trace source (sim/mqtt)");
+        options.addOption("s", "source", true, "trace source (sim/mqtt/tcp/shm)");
         var interOption = new Option("p", "post", true, "post-processing (print/resolve)");
         interOption.setArgs(Option.UNLIMITED_VALUES);
         options.addOption(interOption);
         options.addOption("o", "output", true, "trace sink/output (null/print/elk/falcon/shiviz)");
+        options.addOption("c", "scheduler", true, "scheduler (causal/partitioned/hlc)");
+        options.addOption("t", "timeout", true, "do not wait for targets silent for this time in ms (e.g. 1000)");
+        options.addOption("w", "workers", true, "threads for thread-safe post-processing steps (default: number of cores)");
         CommandLineParser parser = new DefaultParser();
         try {
             cmd = parser.parse(options, args);
@@ -1,5 +1,11 @@
 package tracing.backend.configuration;
 
+import tracing.backend.TraceQueue;
+import tracing.backend.source.elf.ElfIndexCache;
+import tracing.backend.source.mqtt.MQTTBroker;
+import tracing.backend.source.shm.SharedMemorySource;
+import tracing.backend.source.tcp.TCPSource;
+
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,10 +17,59 @@ public class Config {
 
     private final List<TargetConfig> targetConfigs = new ArrayList<>();
 
+    // capacity of the event queue of each target (optional)
+    private Integer queue_capacity;
+    // what to do when the event queue of a target is full: block, drop_oldest or signal (optional)
+    private String queue_full_policy;
+    // persistence of the MQTT broker: file or memory (optional)
+    private String broker_profile;
+    // maximum number of messages the broker queues per client (optional, memory profile)
+    private Integer broker_max_queued_messages;
+    // port of the TCP trace source (optional)
+    private Integer tcp_port;
+    // directory of the ring files of the shared memory trace source (optional)
+    private String shm_directory;
+    // size of the data region of each ring file in bytes, a power of two (optional)
+    private Integer shm_ring_size;
+    // directory of the cache of parsed ELF files (optional)
+    private String elf_cache_directory;
+
     public List<TargetConfig> getTargetConfigs() {
         return targetConfigs;
     }
 
+    public int getQueueCapacity() {
+        return queue_capacity != null ? queue_capacity : TraceQueue.DEFAULT_CAPACITY;
+    }
+
+    public TraceQueue.FullPolicy getQueueFullPolicy() {
+        return queue_full_policy != null ? TraceQueue.FullPolicy.valueOf(queue_full_policy.toUpperCase()) : TraceQueue.FullPolicy.BLOCK;
+    }
+
+    public MQTTBroker.Profile getBrokerProfile() {
+        return broker_profile != null ? MQTTBroker.Profile.valueOf(broker_profile.toUpperCase()) : MQTTBroker.Profile.FILE;
+    }
+
+    public int getBrokerMaxQueuedMessages() {
+        return broker_max_queued_messages != null ? broker_max_queued_messages : MQTTBroker.DEFAULT_MAX_QUEUED_MESSAGES;
+    }
+
+    public int getTcpPort() {
+        return tcp_port != null ? tcp_port : TCPSource.DEFAULT_PORT;
+    }
+
+    public Path getShmDirectory() {
+        return shm_directory != null ? Path.of(shm_directory) : SharedMemorySource.DEFAULT_DIRECTORY;
+    }
+
+    public int getShmRingSize() {
+        return shm_ring_size != null ? shm_ring_size : SharedMemorySource.DEFAULT_RING_SIZE;
+    }
+
+    public Path getElfCacheDirectory() {
+        return elf_cache_directory != null ? Path.of(elf_cache_directory) : ElfIndexCache.DEFAULT_DIRECTORY;
+    }
+
     public static class TargetConfig {
 
         private String name;
@@ -2,10 +2,13 @@ package tracing.backend.configuration;
 
 import com.google.gson.Gson;
 import tracing.backend.Target;
+import tracing.backend.TraceQueue;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
 import tracing.backend.source.elf.ElfParser;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.HashMap;
@@ -45,6 +48,15 @@ public class JsonTargetProvider implements TargetProvider {
         }
     }
 
+    /**
+     * Creates a provider independent of the singleton instance, e.g. for tests.
+     * @param configFile the JSON config file
+     * @throws IOException if the file cannot be read
+     */
+    public JsonTargetProvider(Path configFile) throws IOException {
+        this.loadConfiguration(configFile);
+    }
+
     private Config config;
     private final Gson gson = new Gson();
     // maps elf file names to elf parser instances (often many or all targets have the same binaries, so we cache the elf parsers)
@@ -61,17 +73,23 @@ public class JsonTargetProvider implements TargetProvider {
             System.err.println("Config file not found!");
             System.exit(0);
         }
+        this.loadConfiguration(path);
+    }
 
+    private void loadConfiguration(Path path) throws IOException {
         // parse JSON config file
         config = this.gson.fromJson(Files.readString(path), Config.class);
         List<String> targetNames = config.getTargetConfigs().stream().map(Config.TargetConfig::getName).collect(Collectors.toList());
+        // intern target names to vector clock ordinals once
+        var clockIndex = new VectorClockIndex(targetNames);
 
         // process all defined targets
         config.getTargetConfigs().forEach(targetConfig -> {
 
             // create a new target
             var name = targetConfig.getName();
-            var target = new Target(name, targetNames);
+            var traceQueue = new TraceQueue(config.getQueueCapacity(), config.getQueueFullPolicy());
+            var target = new Target(name, clockIndex, traceQueue);
             targetIdToTargetMap.put(name, target);
 
             // get an elf parser for the target's binary
@@ -80,10 +98,11 @@ public class JsonTargetProvider implements TargetProvider {
             if (elfMap.containsKey(elfPath)) {
                 elfParser = elfMap.get(elfPath);
             } else {
-                elfParser = new ElfParser(targetConfig.getElfPath());
+                elfParser = new ElfParser(targetConfig.getElfPath(), config.getElfCacheDirectory());
                 elfMap.put(elfPath, elfParser);
             }
             targetIdToElfParserMap.put(targetConfig.getName(), elfParser);
+            target.setElfParser(elfParser);
 
             // resolve variable names to addresses and sizes to create watchpoints
             targetConfig.getWatchedVars().forEach(var -> {
@@ -105,6 +124,10 @@ public class JsonTargetProvider implements TargetProvider {
         return targetIdToTargetMap.containsKey(targetId);
     }
 
+    public Config getConfig() {
+        return config;
+    }
+
     public Target getTarget(String targetId) {
         return targetIdToTargetMap.get(targetId);
     }
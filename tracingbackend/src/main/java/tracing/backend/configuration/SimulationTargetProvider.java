@@ -1,6 +1,7 @@
 package tracing.backend.configuration;
 
 import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -17,9 +18,10 @@ public class SimulationTargetProvider implements TargetProvider {
     public SimulationTargetProvider(int numTargets) {
 
         var targetIds = IntStream.range(0, numTargets).mapToObj(String::valueOf).collect(Collectors.toList());
+        var clockIndex = new VectorClockIndex(targetIds);
 
         targetIds.forEach(targetId -> {
-            var target = new Target(targetId, targetIds);
+            var target = new Target(targetId, clockIndex);
             this.targets.add(target);
         });
     }
@@ -2,6 +2,7 @@ package tracing.backend.metrics;
 
 import com.codahale.metrics.*;
 import tracing.backend.TraceQueue;
+import tracing.backend.trace.TraceEvent;
 
 import java.io.File;
 import java.util.HashMap;
@@ -18,7 +19,6 @@ public final class Metrics {
 
     // tracks the time events spend in the server
     private static final Timer timer = metrics.timer("event_pipeline");
-    private static final Map<String, Timer.Context> eventTimerContexts = new HashMap<>();
     // rate of output
     private static final Meter output = metrics.meter("sink_output");
     // rate of scheduler output
@@ -29,6 +29,11 @@ public final class Metrics {
     private static final Map<String, Meter> eventMeters = new HashMap<>();
     // scheduler output queue sizes
     private static final Histogram schedulerQueueHistogram = new Histogram(new UniformReservoir());
+    // targets excluded from the scheduler watermark because they were silent, and targets active again
+    private static final Meter targetsExcluded = metrics.meter("scheduler_targets_excluded");
+    private static final Meter targetsActive = metrics.meter("scheduler_targets_active");
+    // receive events scheduled without their send event, because it was already retired
+    private static final Meter unmatchedReceives = metrics.meter("scheduler_unmatched_receives");
 
     /**
      * Starts metric collection and reporting. CSV files are stored in a metrics folder.
@@ -65,31 +70,28 @@ public final class Metrics {
         schedulerOutput.mark();
     }
 
-    public static void markInputEvent(String name, String eventUUID) {
+    public static void markInputEvent(String name, TraceEvent event) {
         eventMeters.get(name).mark();
-        startInputEventTimer(eventUUID);
+        startInputEventTimer(event);
     }
 
-    public static void markSinkEvent(String eventUUID) {
+    public static void markSinkEvent(TraceEvent event) {
         output.mark();
-        stopInputEventTimer(eventUUID);
+        stopInputEventTimer(event);
     }
 
-    public static void startInputEventTimer(String eventUUID) {
-        synchronized (eventTimerContexts) {
-            eventTimerContexts.put(eventUUID, timer.time());
-        }
+    /**
+     * Remembers the time the event entered the server on the event itself.
+     * @param event the event
+     */
+    public static void startInputEventTimer(TraceEvent event) {
+        event.setIngestTime(System.nanoTime());
     }
 
-    public static void stopInputEventTimer(String eventUUID) {
-        synchronized (eventTimerContexts) {
-            try {
-               eventTimerContexts.get(eventUUID).stop();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public static void stopInputEventTimer(TraceEvent event) {
+        if (event.getIngestTime() != 0) {
+            timer.update(System.nanoTime() - event.getIngestTime(), TimeUnit.NANOSECONDS);
         }
-        eventTimerContexts.remove(eventUUID);
     }
 
     public static void updateQueueSize(String name, int size) {
@@ -100,12 +102,29 @@ public final class Metrics {
         }
     }
 
+    public static void markTargetExcluded() {
+        targetsExcluded.mark();
+    }
+
+    public static void markTargetActive() {
+        targetsActive.mark();
+    }
+
+    public static void markUnmatchedReceive() {
+        unmatchedReceives.mark();
+    }
+
     public static void updateSchedulerQueueSize(int size) {
         schedulerQueueHistogram.update(size);
     }
 
-    public static void registerInputQueue(String name, TraceQueue queue) {
+    public static synchronized void registerInputQueue(String name, TraceQueue queue) {
+        if (queueHistograms.containsKey(name)) {
+            // registered before the observer reconnected
+            return;
+        }
         metrics.register(name + "_input_gauge", (Gauge<Integer>) queue::size);
+        metrics.register(name + "_input_dropped", (Gauge<Long>) queue::getDroppedCount);
         var histogram = new Histogram(new ExponentiallyDecayingReservoir(100000, 0.015));
         metrics.register(name + "_input_histogram", histogram);
 
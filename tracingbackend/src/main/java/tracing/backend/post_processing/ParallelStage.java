@@ -0,0 +1,133 @@
+package tracing.backend.post_processing;
+
+import tracing.backend.scheduler.QueueSpliterator;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs thread-safe post-processing steps on several threads without reordering the events, e.g. to resolve addresses
+ * on multiple cores while keeping the order of the scheduler output.
+ * <p>
+ * A feeder thread takes the events from the input stream and submits them to the workers. The pending results are
+ * queued in input order and the output stream waits for each of them in turn. The number of pending events is bounded,
+ * the feeder blocks while the output does not keep up.
+ * <p>
+ * The output stream ends after the last pending event when the input stream ends or the stage is closed.
+ */
+public class ParallelStage {
+
+    public static final int DEFAULT_WINDOW = 4096;
+
+    private static final AtomicInteger stageCount = new AtomicInteger();
+    // marks the end of the output
+    private static final CompletableFuture<TraceEvent> END = CompletableFuture.completedFuture(null);
+
+    private final List<PostProcessingStep> steps;
+    private final ExecutorService workers;
+    // results of the submitted events, in input order
+    private final BlockingQueue<CompletableFuture<TraceEvent>> pending;
+    private volatile Thread feeder;
+
+    /**
+     * Creates a stage.
+     * @param steps the steps to run on every event, in this order, all must be thread-safe
+     * @param threadCount number of worker threads
+     * @param window maximum number of events in the stage
+     */
+    public ParallelStage(List<PostProcessingStep> steps, int threadCount, int window) {
+        this.steps = List.copyOf(steps);
+        this.pending = new ArrayBlockingQueue<>(window);
+
+        var name = "post-processing-" + stageCount.getAndIncrement() + "-";
+        var threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threadCount), r -> {
+            var thread = new Thread(r, name + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts processing the events of the input stream.
+     * @param input the input events
+     * @return the processed events, in input order
+     */
+    public Stream<TraceEvent> apply(Stream<TraceEvent> input) {
+        this.feeder = new Thread(() -> this.feed(input), "post-processing-feeder");
+        this.feeder.setDaemon(true);
+        this.feeder.start();
+
+        return StreamSupport.stream(new QueueSpliterator<>(this.pending), false)
+                .takeWhile(result -> result != END)
+                .map(CompletableFuture::join);
+    }
+
+    /**
+     * Submits the events of the input stream until it ends or the feeder is interrupted, then ends the output.
+     */
+    private void feed(Stream<TraceEvent> input) {
+        try {
+            input.forEach(this::submit);
+        } catch (CancellationException e) {
+            // interrupted, stop feeding
+        } finally {
+            this.workers.shutdown();
+            // the pending events are still output, wait until there is room for the end marker
+            var interrupted = Thread.interrupted();
+            try {
+                this.pending.put(END);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Submits an event to the workers, waits while the stage is full.
+     * @throws CancellationException if interrupted while waiting, to stop the input stream
+     */
+    private void submit(TraceEvent traceEvent) {
+        try {
+            this.pending.put(CompletableFuture.supplyAsync(() -> this.process(traceEvent), this.workers));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Post-processing stage interrupted");
+        }
+    }
+
+    private TraceEvent process(TraceEvent traceEvent) {
+        for (var step : this.steps) {
+            try {
+                step.accept(traceEvent);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return traceEvent;
+    }
+
+    /**
+     * Stops feeding events and shuts the workers down, the output ends after the events already submitted.
+     */
+    public void close() {
+        var feeder = this.feeder;
+        if (feeder != null) {
+            feeder.interrupt();
+        } else {
+            this.workers.shutdown();
+        }
+    }
+}
@@ -8,4 +8,12 @@ import java.util.function.Consumer;
  * A post-processing step that consumes events after they exit the scheduler.
  */
 public interface PostProcessingStep extends Consumer<TraceEvent> {
+
+    /**
+     * Whether the step may process several events concurrently, so it can run in a {@link ParallelStage}.
+     * @return false by default, the step then runs on the single post-processing thread
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 }
@@ -1,6 +1,5 @@
 package tracing.backend.post_processing.resolve;
 
-import tracing.backend.configuration.JsonTargetProvider;
 import tracing.backend.post_processing.PostProcessingStep;
 import tracing.backend.trace.FunctionEvent;
 import tracing.backend.trace.MemoryEvent;
@@ -8,6 +7,9 @@ import tracing.backend.trace.TraceEvent;
 
 /**
  * Resolves addresses of functions and variables and adds information from the symbol table to the event.
+ * <p>
+ * Events resolve their addresses on first access anyway, this step resolves them eagerly, e.g. on the worker threads of
+ * a parallel stage instead of the output thread. Thread-safe, events can be resolved in parallel.
  */
 public class ResolveAddressesStep implements PostProcessingStep {
 
@@ -16,19 +18,22 @@ public class ResolveAddressesStep implements PostProcessingStep {
         this.resolveAddresses(traceEvent);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Resolves function and memory addresses.
      * @param traceEvent the event to process
      */
     private void resolveAddresses(TraceEvent traceEvent) {
-        var elfParser = JsonTargetProvider.getInstance().getElfParserByTargetId(traceEvent.getTargetId());
         if (traceEvent instanceof FunctionEvent) {
             var t = (FunctionEvent) traceEvent;
-            elfParser.getFunction(t.getFunctionAddress()).ifPresent(t::setCalleeFunction);
-            elfParser.getFunction(t.getCallSiteAddress()).ifPresent(t::setCallerFunction);
+            t.getCalleeFunction();
+            t.getCallerFunction();
         } else if (traceEvent instanceof MemoryEvent) {
-            var t = (MemoryEvent) traceEvent;
-            elfParser.getSymbol(t.getAddress()).ifPresent(t::setSymbol);
+            ((MemoryEvent) traceEvent).getSymbol();
         }
     }
 }
@@ -1,5 +1,6 @@
 package tracing.backend.scheduler;
 
+import java.util.ArrayList;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.BlockingQueue;
@@ -31,4 +32,19 @@ public class QueueSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
         }
         return false;
     }
+
+    /**
+     * Waits for the next element, then takes all available elements at once instead of one by one.
+     */
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        final var batch = new ArrayList<T>();
+        while (this.tryAdvance(action)) {
+            this.queue.drainTo(batch);
+            for (T next : batch) {
+                action.accept(next);
+            }
+            batch.clear();
+        }
+    }
 }
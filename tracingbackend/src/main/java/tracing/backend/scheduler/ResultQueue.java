@@ -0,0 +1,191 @@
+package tracing.backend.scheduler;
+
+import tracing.backend.trace.TraceEvent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unbounded output queue of a scheduler, shared by the workers of a {@link tracing.backend.scheduler.causal.PartitionedScheduler}.
+ * <p>
+ * Unlike {@link java.util.concurrent.LinkedBlockingQueue#addAll}, which adds the events one by one, {@link #addAll}
+ * appends a run of events under a single lock and signals the consumer once, so the events of a run are handed over
+ * as one unit and never interleaved with the events of other workers.
+ * <p>
+ * The queue also assigns the global sequence numbers, under the same lock as the events are appended, so the IDs
+ * in the merged output of several workers increase in output order.
+ */
+public class ResultQueue extends AbstractQueue<TraceEvent> implements BlockingQueue<TraceEvent> {
+
+    private final ArrayDeque<TraceEvent> events = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    // global sequence number of the last added event
+    private long lastGlobalEventId = 0;
+
+    /**
+     * Assigns the next global sequence number to the event and appends it.
+     * @param event the event
+     * @return true
+     */
+    @Override
+    public boolean offer(TraceEvent event) {
+        if (event == null) {
+            throw new NullPointerException();
+        }
+        this.lock.lock();
+        try {
+            event.setGlobalEventId(++this.lastGlobalEventId);
+            this.events.add(event);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Assigns the next global sequence numbers to the events and appends them at once.
+     * @param run the events, in output order
+     * @return true if the queue changed
+     */
+    @Override
+    public boolean addAll(Collection<? extends TraceEvent> run) {
+        if (run == this) {
+            throw new IllegalArgumentException();
+        }
+        if (run.isEmpty()) {
+            return false;
+        }
+        this.lock.lock();
+        try {
+            for (var event : run) {
+                event.setGlobalEventId(++this.lastGlobalEventId);
+            }
+            this.events.addAll(run);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public void put(TraceEvent event) {
+        this.offer(event);
+    }
+
+    @Override
+    public boolean offer(TraceEvent event, long timeout, TimeUnit unit) {
+        return this.offer(event);
+    }
+
+    @Override
+    public TraceEvent poll() {
+        this.lock.lock();
+        try {
+            return this.events.poll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TraceEvent take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.events.isEmpty()) {
+                this.notEmpty.await();
+            }
+            return this.events.poll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TraceEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            while (this.events.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            return this.events.poll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TraceEvent peek() {
+        this.lock.lock();
+        try {
+            return this.events.peek();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super TraceEvent> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super TraceEvent> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        this.lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !this.events.isEmpty()) {
+                c.add(this.events.poll());
+                n++;
+            }
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.events.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queue, it does not support removal.
+     */
+    @Override
+    public Iterator<TraceEvent> iterator() {
+        this.lock.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(this.events)).iterator();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -23,6 +23,12 @@ public interface Scheduler extends Runnable {
      */
     void stop();
 
+    /**
+     * Returns the number of ordered events that were not yet taken from the output.
+     * @return the number of events
+     */
+    int getResultQueueSize();
+
     /**
      * The output stream of ordered events.
      * @return the stream
@@ -0,0 +1,184 @@
+package tracing.backend.scheduler;
+
+import tracing.backend.Target;
+import tracing.backend.trace.MessageEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Remembers scheduled send events so that receive events can be matched to them.
+ * <p>
+ * A send event is not required anymore as soon as the clocks of all targets passed it. For every sender, the
+ * minimum of its clock component over all targets is the watermark of that sender; send events with a clock value
+ * up to the watermark are retired. Send events of a sender are kept in scheduling order, so retiring only ever looks
+ * at the oldest remaining send event of a sender.
+ * <p>
+ * The watermark of every sender is kept together with the target holding the minimum. Clocks only grow, so the
+ * watermark can only change once that target advances; only then the minimum is searched again over all targets.
+ * <p>
+ * The watermark of a sender may be restricted to the targets of its group ({@link #setScope}), as targets that never
+ * receive from a sender keep its clock component at zero. Retired send events of such a sender may still be received
+ * by a target of another group that lags behind, so the most recent ones can be kept for lookups.
+ * <p>
+ * Lookups are thread-safe. Send events of a sender must only be put and retired by the thread that schedules the
+ * events of that sender, so that several scheduler threads can share one index.
+ */
+public class SendMessageIndex {
+
+    // maps message IDs to send events
+    private final ConcurrentHashMap<String, MessageEvent> sendMsgMap = new ConcurrentHashMap<>();
+    // send events of every sender in scheduling order, indexed by target ordinal
+    private final List<ArrayDeque<MessageEvent>> sendsBySender = new ArrayList<>();
+    // targets whose clocks define the watermark of every sender, indexed by target ordinal
+    private final Target[][] scopes;
+    // retired send events of every sender that are still kept for lookups, indexed by target ordinal
+    private final List<ArrayDeque<MessageEvent>> retainedBySender = new ArrayList<>();
+    // number of retired send events kept per sender
+    private final int retainedSends;
+    // last computed watermark of every sender, -1 if not computed yet, indexed by target ordinal
+    private final int[] watermarks;
+    // index of the target in the scope that held the minimum of every sender, indexed by target ordinal
+    private final int[] minTargets;
+
+    /**
+     * Creates an index for send events of the given targets.
+     * @param targets all targets of the system
+     */
+    public SendMessageIndex(Collection<Target> targets) {
+        this(targets, 0);
+    }
+
+    /**
+     * Creates an index for send events of the given targets that keeps retired send events for lookups.
+     * @param targets all targets of the system
+     * @param retainedSends number of retired send events kept per sender
+     */
+    public SendMessageIndex(Collection<Target> targets, int retainedSends) {
+        this.retainedSends = retainedSends;
+        this.scopes = new Target[targets.size()][];
+        this.watermarks = new int[targets.size()];
+        this.minTargets = new int[targets.size()];
+        for (int i = 0; i < targets.size(); i++) {
+            this.sendsBySender.add(new ArrayDeque<>());
+            this.retainedBySender.add(new ArrayDeque<>());
+        }
+        this.setScope(targets);
+    }
+
+    /**
+     * Computes the watermarks of the given senders over the clocks of these targets only, e.g. the members of a
+     * group of communicating targets. Must not be called while the senders are scheduled.
+     * @param targets the senders and the targets whose clocks define their watermarks
+     */
+    public void setScope(Collection<Target> targets) {
+        var scope = targets.toArray(new Target[0]);
+        for (Target sender : scope) {
+            int ordinal = sender.getOrdinal();
+            this.scopes[ordinal] = scope;
+            // computed again on the next retire
+            this.watermarks[ordinal] = -1;
+            this.minTargets[ordinal] = 0;
+        }
+    }
+
+    /**
+     * Remembers a scheduled send event. Its vector clock must be set.
+     * @param send the send event
+     */
+    public void put(MessageEvent send) {
+        this.sendMsgMap.put(send.getMsgId(), send);
+        this.sendsBySender.get(send.getTarget().getOrdinal()).add(send);
+    }
+
+    /**
+     * Returns the send event of the given message, if it was scheduled and not yet retired.
+     * @param msgId the message ID
+     * @return the send event or null
+     */
+    public MessageEvent get(String msgId) {
+        return this.sendMsgMap.get(msgId);
+    }
+
+    public boolean contains(String msgId) {
+        return this.sendMsgMap.containsKey(msgId);
+    }
+
+    /**
+     * Advances the watermark of the given sender and retires all of its send events that every target has passed.
+     * Schedulers call this once per scheduled event for their senders in turn. Unless the target holding the
+     * minimum advanced, this only reads a single clock value.
+     * @param sender ordinal of the sender
+     */
+    public void retire(int sender) {
+        var sends = this.sendsBySender.get(sender);
+        if (sends.isEmpty()) {
+            return;
+        }
+
+        // the minimum cannot have changed while the target holding it did not advance
+        var scope = this.scopes[sender];
+        if (scope[this.minTargets[sender]].getVectorClock().get(sender) <= this.watermarks[sender]) {
+            return;
+        }
+
+        // minimum clock value of the sender known to any target
+        int watermark = Integer.MAX_VALUE;
+        for (int i = 0; i < scope.length; i++) {
+            int clock = scope[i].getVectorClock().get(sender);
+            if (clock < watermark) {
+                watermark = clock;
+                this.minTargets[sender] = i;
+            }
+        }
+        this.watermarks[sender] = watermark;
+
+        while (!sends.isEmpty() && sends.peek().getVectorClock().get(sender) <= watermark) {
+            this.retain(sender, sends.poll());
+        }
+    }
+
+    /**
+     * Retires the oldest send events of the given sender as long as the predicate holds.
+     * @param sender ordinal of the sender
+     * @param retired tests whether a send event can be retired
+     */
+    public void retire(int sender, Predicate<MessageEvent> retired) {
+        var sends = this.sendsBySender.get(sender);
+        while (!sends.isEmpty() && retired.test(sends.peek())) {
+            this.retain(sender, sends.poll());
+        }
+    }
+
+    /**
+     * Keeps a retired send event for lookups, removing the oldest kept send event of the sender if there are too many.
+     */
+    private void retain(int sender, MessageEvent send) {
+        if (this.retainedSends == 0) {
+            this.remove(send);
+            return;
+        }
+        var retained = this.retainedBySender.get(sender);
+        retained.add(send);
+        if (retained.size() > this.retainedSends) {
+            this.remove(retained.poll());
+        }
+    }
+
+    private void remove(MessageEvent send) {
+        // only remove if the message ID was not reused by a later send event
+        this.sendMsgMap.remove(send.getMsgId(), send);
+    }
+
+    /**
+     * Returns the number of remembered send events.
+     * @return the number of send events
+     */
+    public int size() {
+        return this.sendMsgMap.size();
+    }
+}
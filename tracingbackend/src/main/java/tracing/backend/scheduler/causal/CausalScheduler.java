@@ -1,168 +1,678 @@
 package tracing.backend.scheduler.causal;
 
 import tracing.backend.Target;
-import tracing.backend.TraceQueue;
-import tracing.backend.scheduler.EvictionService;
+import tracing.backend.metrics.Metrics;
 import tracing.backend.scheduler.QueueSpliterator;
+import tracing.backend.scheduler.ResultQueue;
 import tracing.backend.scheduler.Scheduler;
+import tracing.backend.scheduler.SendMessageIndex;
 import tracing.backend.trace.EventType;
 import tracing.backend.trace.MessageEvent;
 import tracing.backend.trace.TraceEvent;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 /**
  * Schedules an event order based on the causality of events, that is, following the happened-before relation.
+ * The heads of all input queues are kept in a priority queue ordered by their local timestamps, so that scheduling
+ * an event only requires replacing the head of a single target. Receive events whose send event was not scheduled
+ * yet are parked by message ID until the send event is scheduled.
+ * <p>
+ * By default, no event is scheduled while the queue of any target is empty, because the next event of that target
+ * may have a lower timestamp. In bounded-latency mode (a target timeout is set), the last timestamp seen from an
+ * empty target (usually of a heartbeat) is a watermark: events up to the watermark are scheduled anyway. Targets
+ * that are disconnected or were silent for longer than the timeout are excluded from the watermark until they send
+ * events again. Exclusions are counted in the {@link Metrics}, only the first one of a target is logged.
+ * <p>
+ * A causal scheduler may also run as a worker of a {@link PartitionedScheduler} for a group of targets, sharing the
+ * send index and output queue with the other workers.
  */
 public class CausalScheduler implements Scheduler {
 
-    public static final int EVICTION_INTERVAL = 5000;
+    // maximum number of consecutive internal events of a target that are scheduled in one step
+    static final int MAX_RUN_LENGTH = 256;
 
-    // all targets of the system
+    // all targets of the system (or of the group, if this is a worker)
     private Collection<Target> targets;
-    // maps message IDs to message events to remember send events
-    private final HashMap<String, MessageEvent> sendMsgMap = new HashMap<>();
+    // the targets as array, senders whose send events are retired in turn
+    private Target[] senders;
+    // index of the sender whose send events are retired next
+    private int retireCursor = 0;
+    // whether a target belongs to this scheduler, by ordinal
+    private boolean[] members;
+    // position of the next target, orders candidates with equal timestamps
+    private int nextIndex = 0;
+    // targets handed over by the partitioned scheduler, taken over by the worker thread
+    private final ConcurrentLinkedQueue<Collection<Target>> addedTargets = new ConcurrentLinkedQueue<>();
+    // the thread running this scheduler
+    private volatile Thread thread;
+    // remembers send events until all targets passed them
+    private SendMessageIndex sendIndex;
     // output queue
-    public final BlockingQueue<TraceEvent> resultQueue = new LinkedBlockingQueue<>();
+    public final ResultQueue resultQueue;
     // still running?
-    private boolean running = true;
-    // maps target IDs to input queues
-    private final Map<String, TraceQueue> queueMap = new HashMap<>();
-    // global sequence number assigned to events
-    private final AtomicLong globalSeq = new AtomicLong(0);
+    private volatile boolean running = true;
+    // the current head of every non-empty input queue, ordered by local timestamp
+    private final PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+    // candidates of targets whose input queue is empty
+    private final ArrayList<Candidate> idleCandidates = new ArrayList<>();
+    // candidates whose head is a receive event waiting for its send event, by message ID
+    // (candidates waiting for the same message are chained)
+    private final HashMap<String, Candidate> pendingReceives = new HashMap<>();
+    // internal events of the current run, handed to the output at once
+    private final ArrayList<TraceEvent> run = new ArrayList<>(MAX_RUN_LENGTH);
+    // the partitioned scheduler this scheduler is a worker of, or null
+    private final PartitionedScheduler partition;
+    // time after which a silent target is excluded from the watermark, 0 to wait for all targets (strict mode)
+    private final long targetTimeoutNanos;
+
+    /**
+     * Creates a scheduler that waits for events of all targets.
+     */
+    public CausalScheduler() {
+        this(0);
+    }
+
+    /**
+     * Creates a scheduler in bounded-latency mode if the timeout is positive.
+     * @param targetTimeoutMillis time in ms after which a silent target no longer holds back other targets,
+     *                            should be a multiple of the heartbeat interval of the observers
+     */
+    public CausalScheduler(long targetTimeoutMillis) {
+        this(targetTimeoutMillis, null);
+    }
+
+    /**
+     * Creates a worker of the given partitioned scheduler, or a standalone scheduler if null.
+     * @param targetTimeoutMillis time in ms after which a silent target no longer holds back other targets
+     * @param partition the partitioned scheduler or null
+     */
+    CausalScheduler(long targetTimeoutMillis, PartitionedScheduler partition) {
+        this.targetTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetTimeoutMillis));
+        this.partition = partition;
+        this.resultQueue = partition != null ? partition.resultQueue : new ResultQueue();
+    }
 
     @Override
     public void setTargets(Collection<Target> targets) {
         this.targets = targets;
-        targets.forEach(target -> queueMap.put(target.getTargetId(), target.getTraceQueue()));
+        this.senders = targets.toArray(new Target[0]);
+        if (this.partition != null) {
+            this.sendIndex = this.partition.sendIndex;
+            this.members = new boolean[this.partition.targetCount()];
+            for (Target target : targets) {
+                this.members[target.getOrdinal()] = true;
+            }
+        } else {
+            this.sendIndex = new SendMessageIndex(targets);
+        }
     }
 
     @Override
     public void run() {
 
-        AtomicLong operations = new AtomicLong(0);
+        this.thread = Thread.currentThread();
+
+        // all targets start idle until their first event arrives
+        this.addIdleCandidates(this.targets);
 
         // while not stopped...
-        while (running) {
+        while (running && !Thread.currentThread().isInterrupted()) {
 
-            // try getting the oldest TraceEvent element from every trace, blocking if one trace is empty
-            var candidates = this.targets.stream()
-                    .map(t -> t.getTraceQueue().blockingPeek())
-                    .sorted(Comparator.comparing(TraceEvent::getLocalTimestamp)) // sort by local timestamps to get initial order
-                    .collect(Collectors.toList());
+            // targets of a merged group join the others
+            if (!this.addedTargets.isEmpty()) {
+                this.takeOverTargets();
+            }
 
-            // process candidates in order, breaking as soon as the first event can be processed
-            for (var event : candidates) {
-                if (event.getEventType() == EventType.SEND) {
+            // targets that received events compete again
+            this.activateIdleCandidates();
 
-                    var send = (MessageEvent) event;
+            // the candidate with the lowest local timestamp, if no idle target may still deliver an older event
+            var candidate = this.candidates.peek();
+            if (candidate == null || candidate.timestamp > this.watermark()) {
+                // wait without spinning until an idle target or a parked receive event changes, or a target times out
+                if (!this.awaitChange()) {
+                    break; // interrupted
+                }
+                continue;
+            }
+            this.candidates.poll();
 
-                    // set vector clock
-                    var clock = event.getTarget().incrementVectorClock();
-                    event.setVectorClock(clock);
+            if (candidate.event.getEventType() == EventType.INTERNAL) {
+                // internal events only depend on the previous event of the target, schedule them as a run
+                this.processRun(candidate);
+                continue;
+            }
 
-                    // add to send map to remember for receive event(s)
-                    this.sendMsgMap.put(send.getMsgId(), send);
+            if (!this.canProcess(candidate.event) && !this.isUnmatchable((MessageEvent) candidate.event)) {
+                var msgId = ((MessageEvent) candidate.event).getMsgId();
+                if (this.partition != null && this.partition.awaitSend(msgId)) {
+                    // scheduled by another worker in the meantime
+                    this.candidates.add(candidate);
+                } else {
+                    // park until the send event is scheduled
+                    candidate.nextPending = this.pendingReceives.put(msgId, candidate);
+                }
+                continue;
+            }
 
-                } else if (event.getEventType() == EventType.RECEIVE) {
+            this.process(candidate.event);
+            candidate.lastTimestamp = candidate.timestamp;
 
-                    var receiveMsg = (MessageEvent) event;
-                    var msgId = receiveMsg.getMsgId();
+            if (candidate.event.getEventType() == EventType.SEND) {
+                // receive events of a scheduled send event can be processed now
+                var msgId = ((MessageEvent) candidate.event).getMsgId();
+                this.releasePending(this.pendingReceives.remove(msgId));
+                if (this.partition != null) {
+                    this.partition.sendScheduled(msgId);
+                }
+            } else if (this.partition != null && candidate.event.getEventType() == EventType.RECEIVE) {
+                // a message from another group links both groups
+                var send = this.sendIndex.get(((MessageEvent) candidate.event).getMsgId());
+                if (send != null && !this.members[send.getTarget().getOrdinal()]) {
+                    this.partition.link(send.getTarget(), candidate.target);
+                }
+            }
 
-                    var sendMsg = this.sendMsgMap.get(msgId);
-                    if (sendMsg == null) {
-                        System.out.println("no send event to this receive event");
+            // retire send events that all targets have passed
+            this.retireNextSender();
 
-                        continue; // don't process receive yet
-                    }
+            // the processed event was removed from its queue, replace it by the next event of the same target
+            this.enqueue(candidate);
+        }
 
-                    // receive event depends on send event
-                    event.setDependency(sendMsg.getGlobalEventId());
+        // the events stay in their queues for the next worker, which waits for their send events itself
+        this.cancelAwaits();
+    }
 
-                    sendMsg.addParticipant(event.getTargetId()); // set sender
-                    receiveMsg.addParticipant(sendMsg.getTargetId()); // add receiver
+    /**
+     * Adds an idle candidate for each target.
+     * @param targets the targets
+     */
+    private void addIdleCandidates(Collection<Target> targets) {
+        long now = System.nanoTime();
+        for (Target target : targets) {
+            var candidate = new Candidate(target, this.nextIndex++);
+            candidate.lastActivity = now;
+            if (target.getLastTraceEvent() != null) {
+                // continue from the events another scheduler already processed
+                candidate.lastTimestamp = target.getLastTraceEvent().getLocalTimestamp();
+            }
+            this.idleCandidates.add(candidate);
+        }
+    }
 
-                    // set vector clock
-                    var senderClock = sendMsg.getVectorClock();
-                    var clock = event.getTarget().merge(senderClock);
-                    event.setVectorClock(clock);
+    /**
+     * Hands targets over to this worker, e.g. the members of a group merged into the group of this worker. The worker
+     * of their former group must have stopped, their events are then scheduled by this worker.
+     * @param targets the targets
+     */
+    void addTargets(Collection<Target> targets) {
+        this.addedTargets.add(targets);
+        var thread = this.thread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Takes over the targets handed over by {@link #addTargets}, called by the worker thread.
+     */
+    private void takeOverTargets() {
+        Collection<Target> added;
+        while ((added = this.addedTargets.poll()) != null) {
+            var targets = new ArrayList<>(this.targets);
+            targets.addAll(added);
+            this.targets = targets;
+            this.senders = targets.toArray(new Target[0]);
+            for (Target target : added) {
+                this.members[target.getOrdinal()] = true;
+            }
+            this.addIdleCandidates(added);
+            // watermarks of the members only depend on the group from now on
+            this.sendIndex.setScope(targets);
+        }
+    }
+
+    /**
+     * Schedules the internal event of the candidate and the following internal events of the same target, as long
+     * as they would also be chosen one by one: their timestamps are up to the watermark and lower than the head of
+     * any other target. The events of the run are added to the output at once.
+     * @param candidate candidate with an internal event, not in the priority queue
+     */
+    private void processRun(Candidate candidate) {
+        var target = candidate.target;
+        var next = this.candidates.peek();
+        long watermark = this.watermark();
+
+        boolean hasNext;
+        do {
+            var event = candidate.event;
+            this.tick(event);
+            target.getTraceQueue().remove();
+            target.setLastTraceEvent(event);
+            this.run.add(event);
+            candidate.lastTimestamp = candidate.timestamp;
+
+            hasNext = candidate.peek();
+        } while (hasNext
+                && this.run.size() < MAX_RUN_LENGTH
+                && candidate.event.getEventType() == EventType.INTERNAL
+                && candidate.timestamp <= watermark
+                && (next == null || candidate.compareTo(next) < 0));
+
+        // a single hand-off that also numbers the events, the run is not interleaved with events of other workers
+        this.resultQueue.addAll(this.run);
+        this.run.clear();
+
+        // retire send events that all targets have passed
+        this.retireNextSender();
+
+        if (hasNext) {
+            this.candidates.add(candidate);
+        } else {
+            candidate.lastActivity = System.nanoTime();
+            this.idleCandidates.add(candidate);
+        }
+    }
 
-                } else { // internal
+    /**
+     * Puts the candidate into the priority queue if its target has an event, otherwise into the idle list.
+     * @param candidate the candidate
+     */
+    private void enqueue(Candidate candidate) {
+        if (candidate.peek()) {
+            this.candidates.add(candidate);
+        } else {
+            candidate.lastActivity = System.nanoTime();
+            this.idleCandidates.add(candidate);
+        }
+    }
 
-                    // set vector clock
-                    var clock = event.getTarget().incrementVectorClock();
-                    event.setVectorClock(clock);
+    /**
+     * Moves all idle candidates whose target received an event into the priority queue.
+     */
+    private void activateIdleCandidates() {
+        for (int i = this.idleCandidates.size() - 1; i >= 0; i--) {
+            var candidate = this.idleCandidates.get(i);
+            if (candidate.peek()) {
+                // swap remove, the order of idle candidates does not matter
+                var last = this.idleCandidates.remove(this.idleCandidates.size() - 1);
+                if (last != candidate) {
+                    this.idleCandidates.set(i, last);
                 }
+                if (candidate.excluded) {
+                    candidate.excluded = false;
+                    Metrics.markTargetActive();
+                }
+                this.candidates.add(candidate);
+            }
+        }
+    }
 
-                // remove processed event from input queue
-                this.queueMap.get(event.getTargetId()).remove();
+    /**
+     * Returns the highest local timestamp up to which events can be scheduled. In strict mode, nothing can be
+     * scheduled while a target is idle. In bounded-latency mode, this is the lowest last seen timestamp of all idle
+     * targets that are still live.
+     * @return the watermark
+     */
+    private long watermark() {
+        if (this.idleCandidates.isEmpty()) {
+            return Long.MAX_VALUE;
+        } else if (this.targetTimeoutNanos == 0) {
+            return Long.MIN_VALUE;
+        }
 
-                // set global sequence number
-                event.setGlobalEventId(globalSeq.incrementAndGet());
+        long watermark = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        for (var candidate : this.idleCandidates) {
+            if (this.isExcluded(candidate, now)) {
+                continue;
+            }
+            watermark = Math.min(watermark, candidate.lastTimestamp);
+        }
+        return watermark;
+    }
 
-                // add to output
-                this.resultQueue.add(event);
+    /**
+     * Whether the idle candidate no longer holds back other targets, because its target disconnected or did not send
+     * any event within the timeout.
+     * @param candidate idle candidate
+     * @param now current time in ns
+     * @return true if excluded from the watermark
+     */
+    private boolean isExcluded(Candidate candidate, long now) {
+        if (!candidate.excluded
+                && (!candidate.target.isConnected() || now - candidate.lastActivity > this.targetTimeoutNanos)) {
+            candidate.excluded = true;
+            Metrics.markTargetExcluded();
+            if (!candidate.excludedBefore) {
+                // targets hovering around the timeout toggle often, only log the first time
+                candidate.excludedBefore = true;
+                System.out.println("[Scheduler] Target " + candidate.target.getTargetId() + " is silent, not waiting for it.");
+            }
+        }
+        return candidate.excluded;
+    }
 
-                // remember last event on target
-                event.getTarget().setLastTraceEvent(event);
+    /**
+     * Puts the parked candidates whose receive event can no longer be matched back into the priority queue, they are
+     * scheduled without their send event.
+     */
+    protected void releaseUnmatchable() {
+        var iterator = this.pendingReceives.values().iterator();
+        while (iterator.hasNext()) {
+            var candidate = iterator.next();
+            // candidates waiting for the same message are evaluated one by one when scheduled
+            if (this.isUnmatchable((MessageEvent) candidate.event)) {
+                iterator.remove();
+                this.releasePending(candidate);
+            }
+        }
+    }
 
-                if (operations.incrementAndGet() == EVICTION_INTERVAL) {
-                    operations.set(0);
-                    new EvictionService(targets, sendMsgMap).start();
-                }
+    /**
+     * Puts the given chain of parked candidates back into the priority queue.
+     * @param candidate first candidate of the chain or null
+     */
+    private void releasePending(Candidate candidate) {
+        while (candidate != null) {
+            var next = candidate.nextPending;
+            candidate.nextPending = null;
+            this.enqueue(candidate);
+            candidate = next;
+        }
+    }
+
+    /**
+     * Waits until an idle target received an event, the head of a queue with a parked receive event changed (e.g.
+     * because the producer dropped it), another worker scheduled the send event of a parked receive event, targets
+     * were handed over or, in bounded-latency mode, the next live idle target times out.
+     * If a parked candidate changed, all parked candidates are re-evaluated.
+     * @return false if interrupted while waiting
+     */
+    private boolean awaitChange() {
+        var current = Thread.currentThread();
+
+        // register at all watched queues first, then check again so that a concurrent add() cannot be missed
+        this.setWaitingConsumer(current);
+        if (!this.idleTargetActive() && !this.pendingChanged() && this.addedTargets.isEmpty()) {
+            long timeout = this.nanosUntilTimeout();
+            if (timeout < 0) {
+                LockSupport.park(this);
+            } else if (timeout > 0) {
+                LockSupport.parkNanos(this, timeout);
+            }
+        }
+        this.setWaitingConsumer(null);
+
+        if (current.isInterrupted()) {
+            return false;
+        }
 
-                // stop here, continue with next set of candidates
-                break;
+        if (this.pendingChanged()) {
+            var pending = new ArrayList<>(this.pendingReceives.values());
+            this.cancelAwaits();
+            this.pendingReceives.clear();
+            for (var candidate : pending) {
+                this.releasePending(candidate);
             }
         }
+        return true;
     }
 
-    public Thread start() {
-        var t = new Thread(this);
-        t.start();
-        return t;
+    /**
+     * Returns the time until the next live idle target is excluded from the watermark.
+     * @return time in ns, 0 if a target was excluded just now, or -1 if no target can time out
+     */
+    private long nanosUntilTimeout() {
+        if (this.targetTimeoutNanos == 0) {
+            return -1;
+        }
+        long timeout = -1;
+        long now = System.nanoTime();
+        for (var candidate : this.idleCandidates) {
+            boolean wasExcluded = candidate.excluded;
+            if (!this.isExcluded(candidate, now)) {
+                long remaining = Math.max(0, candidate.lastActivity + this.targetTimeoutNanos - now);
+                timeout = timeout < 0 ? remaining : Math.min(timeout, remaining);
+            } else if (!wasExcluded) {
+                // timed out since the watermark was computed, the watermark rose and must not be waited for
+                return 0;
+            }
+        }
+        return timeout;
     }
 
-    @Override
-    public void stop() {
-        this.running = false;
+    /**
+     * Tells the partitioned scheduler that this worker no longer waits for the send events of its parked candidates.
+     */
+    private void cancelAwaits() {
+        if (this.partition != null) {
+            for (var msgId : this.pendingReceives.keySet()) {
+                this.partition.cancelAwait(msgId);
+            }
+        }
+    }
+
+    private boolean idleTargetActive() {
+        for (var candidate : this.idleCandidates) {
+            if (!candidate.target.getTraceQueue().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean pendingChanged() {
+        for (var entry : this.pendingReceives.entrySet()) {
+            if (this.partition != null && this.sendIndex.contains(entry.getKey())) {
+                return true;
+            }
+            for (var c = entry.getValue(); c != null; c = c.nextPending) {
+                if (c.target.getTraceQueue().peek() != c.event) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void setWaitingConsumer(Thread consumer) {
+        for (var candidate : this.idleCandidates) {
+            candidate.target.getTraceQueue().setWaitingConsumer(consumer);
+        }
+        for (var candidate : this.pendingReceives.values()) {
+            for (var c = candidate; c != null; c = c.nextPending) {
+                c.target.getTraceQueue().setWaitingConsumer(consumer);
+            }
+        }
     }
 
     /**
-     * Create result/output stream from queue.
-     * @return output stream
+     * Whether the event can be processed now. A receive event can only be processed after its send event.
+     * @param event the event
+     * @return true if the event can be processed
      */
-    @Override
-    public Stream<TraceEvent> resultStream() {
-        return StreamSupport.stream(new QueueSpliterator<>(resultQueue), false);
+    private boolean canProcess(TraceEvent event) {
+        if (event.getEventType() == EventType.RECEIVE) {
+            return this.sendIndex.contains(((MessageEvent) event).getMsgId());
+        }
+        return true;
     }
-}
 
+    /**
+     * Whether the send event of a receive event that is not in the send index was already retired, so that it can
+     * never be matched. By default, send events are only retired after all targets passed them, so this is never the
+     * case.
+     * @param receive the receive event
+     * @return true if the receive event is scheduled without its send event instead of being parked
+     */
+    protected boolean isUnmatchable(MessageEvent receive) {
+        return false;
+    }
+
+    /**
+     * Assigns vector clock and global sequence number to the event, removes it from its input queue and adds it
+     * to the output.
+     * @param event the event to process
+     */
+    private void process(TraceEvent event) {
+        var sendMsg = event.getEventType() == EventType.RECEIVE
+                ? this.sendIndex.get(((MessageEvent) event).getMsgId())
+                : null;
+        if (sendMsg != null) {
+
+            var receiveMsg = (MessageEvent) event;
 
+            // receive event depends on send event
+            event.setDependency(sendMsg.getGlobalEventId());
 
+            sendMsg.addParticipant(event.getTargetId()); // set sender
+            receiveMsg.addParticipant(sendMsg.getTargetId()); // add receiver
 
+            // set clock
+            this.receive(receiveMsg, sendMsg);
 
+        } else { // send, internal or unmatchable receive
 
+            if (event.getEventType() == EventType.RECEIVE) {
+                Metrics.markUnmatchedReceive();
+            }
 
+            // set clock
+            this.tick(event);
+        }
 
+        // remove processed event from input queue
+        event.getTarget().getTraceQueue().remove();
 
+        // add to output, the queue sets the global sequence number
+        this.resultQueue.add(event);
 
+        // remember last event on target
+        event.getTarget().setLastTraceEvent(event);
 
+        // add to send index to remember for receive event(s), only after the send event is in the output, as other
+        // workers may output a receive event as soon as they find the send event
+        if (event.getEventType() == EventType.SEND) {
+            this.sendIndex.put((MessageEvent) event);
+        }
+    }
 
+    /**
+     * Assigns the clock of a send or internal event, by default the incremented vector clock of its target.
+     * @param event the event
+     */
+    protected void tick(TraceEvent event) {
+        event.setVectorClock(event.getTarget().incrementVectorClock());
+    }
 
+    /**
+     * Assigns the clock of a receive event, by default the vector clock of its target merged with the clock of the
+     * send event.
+     * @param receive the receive event
+     * @param send the matching send event
+     */
+    protected void receive(MessageEvent receive, MessageEvent send) {
+        receive.setVectorClock(receive.getTarget().merge(send.getVectorClock()));
+    }
 
+    /**
+     * Retires the send events of a sender that are not needed anymore, by default those that all vector clocks
+     * passed. Called once per scheduling step for every sender in turn.
+     * @param sendIndex the send index
+     * @param sender ordinal of the sender
+     */
+    protected void retire(SendMessageIndex sendIndex, int sender) {
+        sendIndex.retire(sender);
+    }
 
+    private void retireNextSender() {
+        this.retire(this.sendIndex, this.senders[this.retireCursor].getOrdinal());
+        this.retireCursor = (this.retireCursor + 1) % this.senders.length;
+    }
 
+    public Thread start() {
+        var t = new Thread(this);
+        t.start();
+        return t;
+    }
 
+    @Override
+    public void stop() {
+        this.running = false;
+    }
 
+    @Override
+    public int getResultQueueSize() {
+        return this.resultQueue.size();
+    }
 
+    /**
+     * Create result/output stream from queue.
+     * @return output stream
+     */
+    @Override
+    public Stream<TraceEvent> resultStream() {
+        return StreamSupport.stream(new QueueSpliterator<>(resultQueue), false);
+    }
 
+    /**
+     * The current head of the input queue of a target.
+     * Candidates are ordered by the local timestamp of their head event, ties are broken by target order.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final Target target;
+        // position of the target, used to keep the order stable for equal timestamps
+        private final int index;
+
+        // head of the target's input queue
+        private TraceEvent event;
+        // local timestamp of the head event
+        private long timestamp;
+        // next candidate waiting for the same message, if this candidate is parked
+        private Candidate nextPending;
+        // local timestamp of the last scheduled event of the target
+        private long lastTimestamp = Long.MIN_VALUE;
+        // time in ns when the target was last seen with events in its queue
+        private long lastActivity;
+        // whether the idle target is currently excluded from the watermark
+        private boolean excluded;
+        // whether the target was excluded from the watermark at least once
+        private boolean excludedBefore;
+
+        Candidate(Target target, int index) {
+            this.target = target;
+            this.index = index;
+        }
+
+        /**
+         * Updates this candidate to the current head of the target's queue.
+         * @return false if the queue is empty
+         */
+        boolean peek() {
+            this.event = this.target.getTraceQueue().peek();
+            if (this.event == null) {
+                return false;
+            }
+            this.timestamp = this.event.getLocalTimestamp();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int c = Long.compare(this.timestamp, o.timestamp);
+            return c != 0 ? c : Integer.compare(this.index, o.index);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package tracing.backend.scheduler.causal;
+
+import tracing.backend.Target;
+import tracing.backend.scheduler.QueueSpliterator;
+import tracing.backend.scheduler.ResultQueue;
+import tracing.backend.scheduler.Scheduler;
+import tracing.backend.scheduler.SendMessageIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Schedules groups of targets that do not communicate with each other on separate threads.
+ * <p>
+ * Every group is scheduled by a {@link CausalScheduler} worker. Initially, every target forms its own group. When a
+ * worker schedules a receive event whose send event was scheduled by another group, both groups are merged: the
+ * worker of the smaller group is stopped and the worker of the larger group takes over its targets without being
+ * interrupted. The workers share the send index, so a message between groups is scheduled in causal order even
+ * before the groups are merged.
+ * The output of all workers is merged into a single result queue.
+ * <p>
+ * Once groups were merged, send events are retired as soon as all targets of the sender's group passed them, the
+ * targets of other groups do not receive from the sender. The last {@link #RETAINED_SENDS} retired send events of
+ * every sender are kept, so that a target of another group can still receive such a message (and merge both groups)
+ * while it lags behind. A target that did not communicate yet is still waited for by all targets, as its receivers
+ * are not known.
+ */
+public class PartitionedScheduler implements Scheduler {
+
+    // number of retired send events kept per sender for receivers of other groups
+    static final int RETAINED_SENDS = 4096;
+
+    // output queue shared by all workers, numbers the events in output order
+    public final ResultQueue resultQueue = new ResultQueue();
+    // send events of all targets, shared by all workers
+    SendMessageIndex sendIndex;
+
+    // all targets by ordinal
+    private Target[] targets;
+    // parent of every target in the union-find structure of groups, by ordinal
+    private int[] parent;
+    // running group by ordinal of its root target
+    private final HashMap<Integer, Group> groups = new HashMap<>();
+    // pairs of sender and receiver ordinals reported by workers
+    private final BlockingQueue<int[]> links = new LinkedBlockingQueue<>();
+    // workers waiting for a send event of another group, by message ID
+    private final ConcurrentHashMap<String, Set<Thread>> awaitedSends = new ConcurrentHashMap<>();
+    // target timeout for the workers
+    private final long targetTimeoutMillis;
+    // still running?
+    private volatile boolean running = true;
+
+    /**
+     * Creates a partitioned scheduler whose workers wait for events of all targets of their group.
+     */
+    public PartitionedScheduler() {
+        this(0);
+    }
+
+    /**
+     * Creates a partitioned scheduler whose workers run in bounded-latency mode if the timeout is positive.
+     * @param targetTimeoutMillis time in ms after which a silent target no longer holds back its group
+     */
+    public PartitionedScheduler(long targetTimeoutMillis) {
+        this.targetTimeoutMillis = targetTimeoutMillis;
+    }
+
+    @Override
+    public void setTargets(Collection<Target> targets) {
+        this.targets = new Target[targets.size()];
+        for (Target target : targets) {
+            this.targets[target.getOrdinal()] = target;
+        }
+        this.parent = new int[this.targets.length];
+        this.sendIndex = new SendMessageIndex(targets, RETAINED_SENDS);
+    }
+
+    /**
+     * Starts a worker for every target and merges groups as links between them are reported.
+     */
+    @Override
+    public void run() {
+        for (int i = 0; i < this.targets.length; i++) {
+            this.parent[i] = i;
+            this.groups.put(i, this.startGroup(this.targets[i]));
+        }
+
+        try {
+            while (running) {
+                var link = this.links.take();
+                if (!running) {
+                    break;
+                }
+                int a = this.find(link[0]);
+                int b = this.find(link[1]);
+                if (a == b) {
+                    continue; // already merged
+                }
+
+                if (this.groups.get(a).members.size() < this.groups.get(b).members.size()) {
+                    // the larger group takes over the smaller one
+                    int swap = a;
+                    a = b;
+                    b = swap;
+                }
+                var group = this.groups.get(a);
+                var absorbed = this.groups.remove(b);
+                absorbed.stop();
+
+                group.members.addAll(absorbed.members);
+                group.worker.addTargets(List.copyOf(absorbed.members));
+                this.parent[b] = a;
+
+                System.out.println("[Scheduler] Merged groups of " + this.targets[link[0]].getTargetId() + " and "
+                        + this.targets[link[1]].getTargetId() + ", " + this.groups.size() + " groups left.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // stop all workers
+        for (var group : this.groups.values()) {
+            try {
+                group.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Group startGroup(Target target) {
+        var worker = new CausalScheduler(this.targetTimeoutMillis, this);
+        worker.setTargets(List.of(target));
+        var thread = worker.start();
+        thread.setName("Scheduler worker " + target.getTargetId());
+        return new Group(target, worker, thread);
+    }
+
+    /**
+     * Finds the root of the group of a target, compressing the path on the way.
+     * @param ordinal ordinal of the target
+     * @return ordinal of the root target
+     */
+    private int find(int ordinal) {
+        while (this.parent[ordinal] != ordinal) {
+            this.parent[ordinal] = this.parent[this.parent[ordinal]];
+            ordinal = this.parent[ordinal];
+        }
+        return ordinal;
+    }
+
+    int targetCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Called by a worker that received a message from a target of another group.
+     * @param sender sending target
+     * @param receiver receiving target
+     */
+    void link(Target sender, Target receiver) {
+        this.links.add(new int[]{sender.getOrdinal(), receiver.getOrdinal()});
+    }
+
+    /**
+     * Called by a worker before it parks a receive event, so that it is unparked when another worker schedules the
+     * send event. Several workers may wait for the same (multicast) message.
+     * @param msgId the message ID
+     * @return true if the send event was scheduled in the meantime and the receive event can be processed
+     */
+    boolean awaitSend(String msgId) {
+        this.awaitedSends.compute(msgId, (id, waiting) -> {
+            if (waiting == null) {
+                waiting = new HashSet<>();
+            }
+            waiting.add(Thread.currentThread());
+            return waiting;
+        });
+        // check again, the send event may have been scheduled before we registered
+        if (this.sendIndex.contains(msgId)) {
+            this.cancelAwait(msgId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by a worker that no longer waits for the send event, e.g. because it released its parked receive events.
+     * @param msgId the message ID
+     */
+    void cancelAwait(String msgId) {
+        this.awaitedSends.computeIfPresent(msgId, (id, waiting) -> {
+            waiting.remove(Thread.currentThread());
+            return waiting.isEmpty() ? null : waiting;
+        });
+    }
+
+    /**
+     * Called by a worker after it scheduled a send event, unparks all workers waiting for it.
+     * @param msgId the message ID
+     */
+    void sendScheduled(String msgId) {
+        var waiting = this.awaitedSends.remove(msgId);
+        if (waiting == null) {
+            return;
+        }
+        for (var thread : waiting) {
+            if (thread != Thread.currentThread()) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    public Thread start() {
+        var t = new Thread(this);
+        t.start();
+        return t;
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        // wake up the coordinator, the link is ignored
+        this.links.add(new int[]{0, 0});
+    }
+
+    @Override
+    public int getResultQueueSize() {
+        return this.resultQueue.size();
+    }
+
+    /**
+     * Create result/output stream from queue.
+     * @return output stream
+     */
+    @Override
+    public Stream<TraceEvent> resultStream() {
+        return StreamSupport.stream(new QueueSpliterator<>(resultQueue), false);
+    }
+
+    /**
+     * A group of targets and its worker.
+     */
+    private static final class Group {
+
+        private final List<Target> members = new ArrayList<>();
+        private final CausalScheduler worker;
+        private final Thread thread;
+
+        Group(Target target, CausalScheduler worker, Thread thread) {
+            this.members.add(target);
+            this.worker = worker;
+            this.thread = thread;
+        }
+
+        /**
+         * Interrupts the worker and waits until it stopped, the events it did not schedule stay in the queues.
+         */
+        void stop() throws InterruptedException {
+            this.thread.interrupt();
+            this.thread.join();
+        }
+    }
+}
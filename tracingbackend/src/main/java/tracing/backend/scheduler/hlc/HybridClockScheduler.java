@@ -0,0 +1,104 @@
+package tracing.backend.scheduler.hlc;
+
+import tracing.backend.Target;
+import tracing.backend.scheduler.SendMessageIndex;
+import tracing.backend.scheduler.causal.CausalScheduler;
+import tracing.backend.trace.MessageEvent;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Causal scheduler that assigns hybrid logical clocks instead of vector clocks. Events are scheduled in the same
+ * order, but carry a constant-size timestamp (see {@link HybridLogicalClock}), which keeps memory and serialization
+ * cost independent of the number of targets. Events do not have a vector clock.
+ * <p>
+ * As HLCs do not tell which targets know about a send event, send events are retired once every target that
+ * produced events is further ahead than the retention time. A receive event that is further behind can no longer be
+ * matched, it is scheduled without its send event instead of waiting for it forever.
+ */
+public class HybridClockScheduler extends CausalScheduler {
+
+    // default time in ms that send events are kept for receive events
+    public static final long DEFAULT_RETENTION = 10_000;
+
+    // retention time as HLC difference
+    private final long retention;
+    // all targets of the system
+    private Target[] targets;
+    // send events with a lower clock are retired
+    private long retireBefore = 0;
+    private final Predicate<MessageEvent> retired = send -> send.getHybridTimestamp() < this.retireBefore;
+
+    /**
+     * Creates a scheduler with the default retention time.
+     * @param targetTimeoutMillis time in ms after which a silent target no longer holds back other targets,
+     *                            0 to wait for all targets
+     */
+    public HybridClockScheduler(long targetTimeoutMillis) {
+        this(targetTimeoutMillis, DEFAULT_RETENTION);
+    }
+
+    /**
+     * Creates a scheduler.
+     * @param targetTimeoutMillis time in ms after which a silent target no longer holds back other targets,
+     *                            0 to wait for all targets
+     * @param retentionMillis time in ms that send events are kept for receive events
+     */
+    public HybridClockScheduler(long targetTimeoutMillis, long retentionMillis) {
+        super(targetTimeoutMillis);
+        this.retention = retentionMillis << HybridLogicalClock.COUNTER_BITS;
+    }
+
+    @Override
+    public void setTargets(Collection<Target> targets) {
+        super.setTargets(targets);
+        this.targets = targets.toArray(new Target[0]);
+    }
+
+    @Override
+    protected void tick(TraceEvent event) {
+        var clock = HybridLogicalClock.tick(clockOf(event.getTarget()), event.getLocalTimestamp());
+        event.setHybridTimestamp(clock);
+    }
+
+    @Override
+    protected void receive(MessageEvent receive, MessageEvent send) {
+        var clock = HybridLogicalClock.receive(clockOf(receive.getTarget()), send.getHybridTimestamp(),
+                receive.getLocalTimestamp());
+        receive.setHybridTimestamp(clock);
+    }
+
+    @Override
+    protected void retire(SendMessageIndex sendIndex, int sender) {
+        // the lowest target clock only changes slowly, update it once per round over all senders
+        if (sender == this.targets[0].getOrdinal()) {
+            long min = Long.MAX_VALUE;
+            for (Target target : this.targets) {
+                if (target.getLastTraceEvent() != null) {
+                    min = Math.min(min, clockOf(target));
+                }
+            }
+            this.retireBefore = min == Long.MAX_VALUE ? 0 : min - this.retention;
+            this.releaseUnmatchable();
+        }
+        sendIndex.retire(sender, this.retired);
+    }
+
+    @Override
+    protected boolean isUnmatchable(MessageEvent receive) {
+        // the send event happened before the receive event, so it had a lower clock and was retired
+        return HybridLogicalClock.tick(clockOf(receive.getTarget()), receive.getLocalTimestamp()) < this.retireBefore;
+    }
+
+    /**
+     * Returns the current clock of the target, the clock of its last scheduled event.
+     * @param target the target
+     * @return the clock or 0
+     */
+    private static long clockOf(Target target) {
+        var last = target.getLastTraceEvent();
+        return last != null ? last.getHybridTimestamp() : 0;
+    }
+}
@@ -0,0 +1,63 @@
+package tracing.backend.scheduler.hlc;
+
+/**
+ * Operations on hybrid logical clock (HLC) values packed into a long.
+ * <p>
+ * The upper 48 bits hold the logical time l, the highest physical time (local timestamp in ms) known to the event,
+ * the lower 16 bits hold the counter c that orders events with the same l. Because the counter is the low part,
+ * comparing the packed values compares (l, c) lexicographically, and incrementing the packed value increments c
+ * (carrying over to l in the rare case that more than 65535 events share the same l).
+ * Like a vector clock, the HLC of an event is greater than the HLC of every event that happened before it, but it
+ * has a constant size regardless of the number of targets.
+ */
+public final class HybridLogicalClock {
+
+    public static final int COUNTER_BITS = 16;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private HybridLogicalClock() {
+    }
+
+    /**
+     * Returns the clock of a local or send event.
+     * @param clock the current clock of the target, 0 if none
+     * @param physicalTime the local timestamp of the event in ms
+     * @return the clock of the event
+     */
+    public static long tick(long clock, long physicalTime) {
+        return Math.max(clock + 1, physicalTime << COUNTER_BITS);
+    }
+
+    /**
+     * Returns the clock of a receive event.
+     * @param clock the current clock of the target, 0 if none
+     * @param sendClock the clock of the send event
+     * @param physicalTime the local timestamp of the event in ms
+     * @return the clock of the event
+     */
+    public static long receive(long clock, long sendClock, long physicalTime) {
+        return Math.max(Math.max(clock, sendClock) + 1, physicalTime << COUNTER_BITS);
+    }
+
+    /**
+     * Returns the logical time l of the clock, a physical time in ms.
+     * @param clock the clock value
+     * @return the logical time
+     */
+    public static long logicalTime(long clock) {
+        return clock >>> COUNTER_BITS;
+    }
+
+    /**
+     * Returns the counter c of the clock.
+     * @param clock the clock value
+     * @return the counter
+     */
+    public static int counter(long clock) {
+        return (int) (clock & COUNTER_MASK);
+    }
+
+    public static String toString(long clock) {
+        return logicalTime(clock) + "." + counter(clock);
+    }
+}
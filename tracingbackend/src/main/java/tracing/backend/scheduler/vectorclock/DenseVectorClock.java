@@ -0,0 +1,230 @@
+package tracing.backend.scheduler.vectorclock;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable vector clock that stores the clock values in an int array indexed by the ordinals of a
+ * {@link VectorClockIndex}. Updating the clock copies a single array, comparing clocks does not allocate.
+ */
+public final class DenseVectorClock {
+
+    // ordinals of the keys, shared by all clocks of the system
+    private final VectorClockIndex index;
+    // the current clock values by ordinal
+    private final int[] clocks;
+
+    /**
+     * Creates a new vector clock for all keys of the index with all values initialized to zero.
+     * @param index the key index
+     * @return new vector clock
+     */
+    public static DenseVectorClock create(VectorClockIndex index) {
+        return new DenseVectorClock(index, new int[index.size()]);
+    }
+
+    private DenseVectorClock(VectorClockIndex index, int[] clocks) {
+        this.index = index;
+        this.clocks = clocks;
+    }
+
+    /**
+     * Increment the clock component with the given ordinal.
+     * @param ordinal the ordinal of the key
+     * @return the new vector clock
+     */
+    public DenseVectorClock increment(int ordinal) {
+        var dst = this.clocks.clone();
+        dst[ordinal]++;
+        return new DenseVectorClock(this.index, dst);
+    }
+
+    /**
+     * Merge this clock with the other and return the new clock.
+     * @param other another vc
+     * @return the merged clock
+     */
+    public DenseVectorClock merge(DenseVectorClock other) {
+        var dst = this.clocks.clone();
+        max(dst, other.clocks);
+        return new DenseVectorClock(this.index, dst);
+    }
+
+    /**
+     * Increment the clock component with the given ordinal and merge the result with the other clock, copying
+     * the clock only once.
+     * @param ordinal the ordinal of the key
+     * @param other another vc
+     * @return the new vector clock
+     */
+    public DenseVectorClock incrementAndMerge(int ordinal, DenseVectorClock other) {
+        var dst = this.clocks.clone();
+        dst[ordinal]++;
+        max(dst, other.clocks);
+        return new DenseVectorClock(this.index, dst);
+    }
+
+    private static void max(int[] dst, int[] src) {
+        for (int i = 0; i < dst.length; i++) {
+            if (src[i] > dst[i]) {
+                dst[i] = src[i];
+            }
+        }
+    }
+
+    /**
+     * Get the clock value for the given ordinal.
+     * @param ordinal the ordinal of the key
+     * @return the clock value
+     */
+    public int get(int ordinal) {
+        return this.clocks[ordinal];
+    }
+
+    /**
+     * Get the clock value for the given key.
+     * @param key the key
+     * @return the clock value or zero if the key is unknown
+     */
+    public int get(String key) {
+        var ordinal = this.index.findOrdinal(key);
+        return ordinal >= 0 ? this.clocks[ordinal] : 0;
+    }
+
+    public int size() {
+        return this.clocks.length;
+    }
+
+    public VectorClockIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Whether this vector clock is causally after the given one.
+     * @param that another vc
+     * @return true if this is after
+     */
+    public boolean isAfter(DenseVectorClock that) {
+        boolean anyClockGreater = false;
+        for (int i = 0; i < this.clocks.length; i++) {
+            if (this.clocks[i] < that.clocks[i]) {
+                return false;
+            } else if (this.clocks[i] > that.clocks[i]) {
+                anyClockGreater = true;
+            }
+        }
+        return anyClockGreater;
+    }
+
+    /**
+     * Whether this vector clock is causally before the given one.
+     * @param that another vc
+     * @return true if this is before
+     */
+    public boolean isBefore(DenseVectorClock that) {
+        return that.isAfter(this);
+    }
+
+    /**
+     * Whether neither clock is causally after the other one and the clocks are not equal.
+     * @param that another vc
+     * @return true if the clocks are concurrent
+     */
+    public boolean isConcurrent(DenseVectorClock that) {
+        return !this.isAfter(that) && !that.isAfter(this) && !Arrays.equals(this.clocks, that.clocks);
+    }
+
+    /**
+     * Returns a read-only map view of this clock from keys to clock values. The view does not copy the clock.
+     * @return map view
+     */
+    public Map<String, Integer> toMap() {
+        return new MapView();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof DenseVectorClock)) {
+            return false;
+        }
+        return Arrays.equals(this.clocks, ((DenseVectorClock) o).clocks);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.clocks);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("{");
+        for (int i = 0; i < this.clocks.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(this.index.keyOf(i)).append('=').append(this.clocks[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Read-only map view of the clock values in ordinal order.
+     */
+    private final class MapView extends AbstractMap<String, Integer> {
+
+        @Override
+        public Integer get(Object key) {
+            var ordinal = index.findOrdinal(key);
+            return ordinal >= 0 ? clocks[ordinal] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return index.findOrdinal(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return clocks.length;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < clocks.length;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next >= clocks.length) {
+                                throw new NoSuchElementException();
+                            }
+                            var entry = new SimpleImmutableEntry<>(index.keyOf(next), clocks[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return clocks.length;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package tracing.backend.scheduler.vectorclock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the keys of a vector clock (the target IDs) to dense ordinals, so that clock values can be stored in an
+ * array. Created once when the target definitions are loaded and shared by all clocks of the system.
+ */
+public final class VectorClockIndex {
+
+    // keys by ordinal
+    private final List<String> keys;
+    // ordinals by key
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Creates an index that assigns ordinals to the given keys in list order.
+     * @param keys list of unique keys
+     */
+    public VectorClockIndex(List<String> keys) {
+        this.keys = List.copyOf(keys);
+        for (int i = 0; i < this.keys.size(); i++) {
+            if (this.ordinals.put(this.keys.get(i), i) != null) {
+                throw new IllegalArgumentException("Duplicate key: " + this.keys.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the ordinal of the given key.
+     * @param key the key
+     * @return the ordinal
+     */
+    public int ordinalOf(String key) {
+        var ordinal = this.ordinals.get(key);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the ordinal of the given key, or -1 if the key is unknown.
+     * @param key the key
+     * @return the ordinal or -1
+     */
+    public int findOrdinal(Object key) {
+        var ordinal = this.ordinals.get(key);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Returns the key with the given ordinal.
+     * @param ordinal the ordinal
+     * @return the key
+     */
+    public String keyOf(int ordinal) {
+        return this.keys.get(ordinal);
+    }
+
+    public List<String> keys() {
+        return Collections.unmodifiableList(this.keys);
+    }
+
+    public int size() {
+        return this.keys.size();
+    }
+}
@@ -0,0 +1,249 @@
+package tracing.backend.source;
+
+import tracing.backend.Target;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the decoding of trace payloads outside of the network threads.
+ * <p>
+ * Every target has its own bounded payload queue. Every target is assigned to a fixed lane, a single thread that
+ * takes the payloads of its targets in turn and decodes them in order. This keeps the packets of a target in order
+ * and makes the lane the only producer of the target's trace queue.
+ * <p>
+ * A target whose trace queue is full (policy BLOCK) is behind: its lane skips it until the scheduler took events from
+ * the queue, the other targets of the lane go on. Its payloads pile up in its own queue, only a source that adds to
+ * that queue gets backpressure when it is full.
+ */
+public class DecodePool {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Decodes the payloads of a target, called by the lane of the target.
+     */
+    public interface Decoder {
+
+        /**
+         * Decodes a payload. Must not block on a full trace queue, but keep the events for {@link #drain}.
+         * @param target the target
+         * @param payload the payload
+         */
+        void decode(Target target, byte[] payload);
+
+        /**
+         * Adds the events of earlier payloads to the trace queue that did not fit yet, without blocking.
+         * @param target the target
+         * @return false if the target is still behind, then its next payload must wait
+         */
+        boolean drain(Target target);
+
+        /**
+         * Called when the payload queue of a target that refused a payload has room again.
+         * @param target the target
+         */
+        default void onSpace(Target target) {
+        }
+    }
+
+    private final Decoder decoder;
+    // payload queue of every target, by ordinal
+    private final TargetQueue[] queues;
+    private final Lane[] lanes;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pool with the default payload queue capacity.
+     * @param laneCount number of lanes (threads)
+     * @param targetCount number of targets
+     * @param decoder decodes the payloads
+     */
+    public DecodePool(int laneCount, int targetCount, Decoder decoder) {
+        this(laneCount, targetCount, DEFAULT_QUEUE_CAPACITY, decoder);
+    }
+
+    /**
+     * Creates a pool.
+     * @param laneCount number of lanes (threads)
+     * @param targetCount number of targets
+     * @param queueCapacity maximum number of payloads waiting per target
+     * @param decoder decodes the payloads
+     */
+    public DecodePool(int laneCount, int targetCount, int queueCapacity, Decoder decoder) {
+        this.decoder = decoder;
+        this.queues = new TargetQueue[targetCount];
+        for (int i = 0; i < targetCount; i++) {
+            this.queues[i] = new TargetQueue(queueCapacity);
+        }
+        this.lanes = new Lane[Math.max(1, laneCount)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane(i);
+        }
+        for (var lane : this.lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Queues a payload of the target for decoding, without waiting.
+     * @param target the target
+     * @param payload the payload, must not be changed afterwards
+     * @return false if the payload queue of the target is full, the payload was not taken, then
+     * {@link Decoder#onSpace} is called as soon as it has room again
+     * @throws RejectedExecutionException if the pool is closed
+     */
+    public boolean offer(Target target, byte[] payload) {
+        if (this.closed) {
+            throw new RejectedExecutionException("Decode pool is closed");
+        }
+        var queue = this.queue(target);
+        if (!queue.payloads.offer(payload)) {
+            // announce the refusal, then try again so that a concurrent poll by the lane cannot be missed
+            queue.refused.set(true);
+            if (!queue.payloads.offer(payload)) {
+                return false;
+            }
+            queue.refused.set(false);
+        }
+        this.lane(target).wakeUp();
+        return true;
+    }
+
+    /**
+     * Queues a payload of the target for decoding, waits while the payload queue of the target is full.
+     * @param target the target
+     * @param payload the payload, must not be changed afterwards
+     * @throws RejectedExecutionException if the pool is closed or the thread is interrupted while waiting
+     */
+    public void submit(Target target, byte[] payload) {
+        if (this.closed) {
+            throw new RejectedExecutionException("Decode pool is closed");
+        }
+        var queue = this.queue(target);
+        try {
+            while (!queue.payloads.offer(payload, 100, TimeUnit.MILLISECONDS)) {
+                if (this.closed) {
+                    throw new RejectedExecutionException("Decode pool is closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the decode queue", e);
+        }
+        if (this.closed) {
+            queue.payloads.clear();
+            throw new RejectedExecutionException("Decode pool is closed");
+        }
+        this.lane(target).wakeUp();
+    }
+
+    private TargetQueue queue(Target target) {
+        var queue = this.queues[target.getOrdinal()];
+        if (queue.target == null) {
+            queue.target = target;
+        }
+        return queue;
+    }
+
+    private Lane lane(Target target) {
+        return this.lanes[target.getOrdinal() % this.lanes.length];
+    }
+
+    /**
+     * Stops the lanes, payloads that were not decoded yet are discarded.
+     */
+    public void close() {
+        this.closed = true;
+        for (var lane : this.lanes) {
+            lane.wakeUp();
+        }
+    }
+
+    /**
+     * Payloads of a target waiting for its lane.
+     */
+    private static final class TargetQueue {
+
+        private final ArrayBlockingQueue<byte[]> payloads;
+        // whether a payload was refused since the last poll
+        private final AtomicBoolean refused = new AtomicBoolean(false);
+        // set by the first payload, the lane skips targets without payloads so far
+        private volatile Target target;
+
+        TargetQueue(int capacity) {
+            this.payloads = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * A thread that decodes the payloads of every n-th target.
+     */
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final Thread thread;
+
+        Lane(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "decode-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void wakeUp() {
+            LockSupport.unpark(this.thread);
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                boolean decoded = false;
+                for (int ordinal = this.index; ordinal < queues.length; ordinal += lanes.length) {
+                    var target = queues[ordinal].target;
+                    if (target == null || !this.catchUp(target)) {
+                        continue;
+                    }
+                    var payload = queues[ordinal].payloads.poll();
+                    if (payload == null) {
+                        continue;
+                    }
+                    if (queues[ordinal].refused.compareAndSet(true, false)) {
+                        decoder.onSpace(target);
+                    }
+                    try {
+                        decoder.decode(target, payload);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    decoded = true;
+                }
+
+                if (!decoded) {
+                    // woken up by a new payload or by the scheduler taking events of a target that is behind
+                    LockSupport.park(this);
+                }
+            }
+        }
+
+        /**
+         * Adds the events of a target that did not fit into its trace queue yet.
+         * @return false if the target is still behind
+         */
+        private boolean catchUp(Target target) {
+            if (decoder.drain(target)) {
+                return true;
+            }
+            // register for the next removal from the trace queue, then try again so that it cannot be missed
+            var traceQueue = target.getTraceQueue();
+            traceQueue.setWaitingProducer(this.thread);
+            if (decoder.drain(target)) {
+                traceQueue.setWaitingProducer(null);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package tracing.backend.source;
+
+import tracing.backend.Target;
+
+/**
+ * Checks the sequence numbers of the packets of every target for gaps and duplicates.
+ * <p>
+ * The sequence number of a target must only be checked by a single thread (the decode lane of the target).
+ */
+public class SequenceTracker {
+
+    // result for packets that were already received
+    public static final long DUPLICATE = -1;
+
+    // next expected sequence number by target ordinal, 0 if none received yet
+    private final long[] expected;
+
+    public SequenceTracker(int targetCount) {
+        this.expected = new long[targetCount];
+    }
+
+    /**
+     * Checks the sequence number of a packet received from the target.
+     * Numbering restarts at 1 when the observer restarts.
+     * @param target the target
+     * @param sequenceNumber the sequence number of the packet
+     * @return the number of packets lost before this packet, or DUPLICATE
+     */
+    public long check(Target target, long sequenceNumber) {
+        int ordinal = target.getOrdinal();
+        long next = this.expected[ordinal];
+
+        if (sequenceNumber < next && sequenceNumber != 1) {
+            return DUPLICATE;
+        }
+
+        this.expected[ordinal] = sequenceNumber + 1;
+        if (next == 0 || sequenceNumber == 1) {
+            return 0;
+        }
+        return sequenceNumber - next;
+    }
+}
@@ -0,0 +1,257 @@
+package tracing.backend.source;
+
+import com.google.gson.JsonParseException;
+import tracing.backend.Target;
+import tracing.backend.TraceQueue;
+import tracing.backend.metrics.Metrics;
+import tracing.backend.output.TraceOutput;
+import tracing.backend.trace.TraceEvent;
+import tracing.backend.trace.TracePacket;
+import tracing.backend.trace.TracePacketDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Turns trace payloads received from observers into trace events of their targets, independent of the transport.
+ * <p>
+ * Payloads are decoded on the decode lane of their target, checked for lost and duplicate packets and added to the
+ * trace queue of the target. Lost packets and events rejected by a full trace queue (policy SIGNAL) are marked by a
+ * loss event in the trace of the target.
+ * <p>
+ * A lane never blocks on a full trace queue (policy BLOCK): the events that do not fit are kept per target and the
+ * lane skips the target until the scheduler made room, so a target that is behind does not stall the other targets
+ * of its lane.
+ */
+public class TraceReceiver {
+
+    private final TracePacketDecoder decoder = new TracePacketDecoder();
+    // decodes trace packets outside of the network threads, one payload queue per target
+    private final DecodePool decodePool;
+    // decoded events that did not fit into the full trace queue yet, by target ordinal, only used by the lanes
+    private final ArrayDeque<TraceEvent>[] pending;
+    // detects lost and duplicate packets
+    private final SequenceTracker sequenceTracker;
+    // number of events rejected by the full trace queue since the last loss event, by target ordinal
+    private final long[] rejected;
+    private final TraceOutput traceOutput;
+    // notified when a target whose payload was refused by offer() can take payloads again
+    private final Consumer<Target> spaceListener;
+
+    /**
+     * Creates a receiver for the given number of targets.
+     * @param targetCount number of targets
+     * @param traceOutput output for raw trace packets
+     */
+    public TraceReceiver(int targetCount, TraceOutput traceOutput) {
+        this(targetCount, traceOutput, target -> { });
+    }
+
+    /**
+     * Creates a receiver for the given number of targets.
+     * @param targetCount number of targets
+     * @param traceOutput output for raw trace packets
+     * @param spaceListener called on a decode lane when a target whose payload was refused by
+     * {@link #offer(Target, byte[])} can take payloads again
+     */
+    @SuppressWarnings("unchecked")
+    public TraceReceiver(int targetCount, TraceOutput traceOutput, Consumer<Target> spaceListener) {
+        this.spaceListener = spaceListener;
+        this.pending = new ArrayDeque[targetCount];
+        for (int i = 0; i < targetCount; i++) {
+            this.pending[i] = new ArrayDeque<>();
+        }
+        // every target gets its own lane unless there are more targets than cores
+        var lanes = Math.min(targetCount, Runtime.getRuntime().availableProcessors());
+        this.decodePool = new DecodePool(lanes, targetCount, new LaneDecoder());
+        this.sequenceTracker = new SequenceTracker(targetCount);
+        this.rejected = new long[targetCount];
+        this.traceOutput = traceOutput;
+    }
+
+    /**
+     * Decodes a trace payload of a target asynchronously, binary or JSON. Waits while the payload queue of the target
+     * is full, the payload is discarded if the receiver is closed or the thread is interrupted meanwhile.
+     * @param target the target
+     * @param data the payload, must not be changed afterwards
+     */
+    public void receive(Target target, byte[] data) {
+        try {
+            this.decodePool.submit(target, data);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Trace payload of " + target.getTargetId() + " discarded: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes a trace payload of a target asynchronously, binary or JSON, without waiting.
+     * @param target the target
+     * @param data the payload, must not be changed afterwards
+     * @return false if the payload queue of the target is full or the receiver is closed, the payload was not taken
+     * @see #TraceReceiver(int, TraceOutput, Consumer)
+     */
+    public boolean offer(Target target, byte[] data) {
+        try {
+            return this.decodePool.offer(target, data);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes a trace payload of a target on the calling thread, binary or JSON. Sources that read every target on
+     * its own thread can use this instead of the decode lanes, the payload is not needed anymore when it returns.
+     * The payloads of a target must always be decoded by the same thread.
+     * @param target the target
+     * @param payload the payload
+     */
+    public void decode(Target target, ByteBuffer payload) {
+        this.decode(target, payload, true);
+    }
+
+    /**
+     * Decodes a trace payload of a target.
+     * @param target the target
+     * @param payload the payload
+     * @param blocking whether to wait while the trace queue is full (policy BLOCK), otherwise the events are pending
+     */
+    private void decode(Target target, ByteBuffer payload, boolean blocking) {
+        try {
+            this.decoder.decode(payload, tracePacket -> this.onTracePacket(target, tracePacket, blocking));
+        } catch (IllegalArgumentException | JsonParseException e) {
+            System.err.println("Invalid trace packet from " + target.getTargetId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called for every trace packet received from a target.
+     * @param target the target
+     * @param tracePacket the packet
+     * @param blocking whether to wait while the trace queue is full
+     */
+    private void onTracePacket(Target target, TracePacket tracePacket, boolean blocking) {
+        if (tracePacket.getS() != null) {
+            var lost = this.sequenceTracker.check(target, tracePacket.getS());
+            if (lost == SequenceTracker.DUPLICATE) {
+                return;
+            } else if (lost > 0) {
+                // mark the loss in the trace of the target, right before the packet after the gap
+                System.err.println("PACKET_LOSS: " + lost + " packets of " + target.getTargetId());
+                this.onTraceEvent(target, lossEvent(target, lost + " packets", tracePacket.getTimestamp()), blocking);
+            }
+        }
+
+        // put out raw trace packet for debugging etc.
+        this.traceOutput.putRaw(tracePacket);
+
+        // parse trace event from packet
+        this.onTraceEvent(target, TraceEvent.from(target, tracePacket), blocking);
+    }
+
+    private void onTraceEvent(Target target, TraceEvent traceEvent, boolean blocking) {
+        Metrics.markInputEvent(target.getTargetId(), traceEvent);
+        Metrics.updateQueueSize(target.getTargetId(), target.getTraceQueue().size());
+
+        if (!blocking) {
+            var pending = this.pending[target.getOrdinal()];
+            if (!pending.isEmpty() || !this.hasSpace(target)) {
+                // keep the order, the lane adds it as soon as the scheduler made room
+                pending.add(traceEvent);
+                return;
+            }
+        }
+        this.enqueue(target, traceEvent);
+    }
+
+    /**
+     * Adds the pending events of a target to its trace queue, as far as they fit.
+     * @param target the target
+     * @return false if events are still pending
+     */
+    private boolean drain(Target target) {
+        var pending = this.pending[target.getOrdinal()];
+        while (!pending.isEmpty()) {
+            if (!this.hasSpace(target)) {
+                return false;
+            }
+            this.enqueue(target, pending.poll());
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an event can be added to the trace queue of the target without waiting.
+     * @param target the target
+     * @return true unless the queue blocks when full and has no room for the event and a pending loss event
+     */
+    private boolean hasSpace(Target target) {
+        var queue = target.getTraceQueue();
+        if (queue.getFullPolicy() != TraceQueue.FullPolicy.BLOCK) {
+            return true;
+        }
+        int needed = this.rejected[target.getOrdinal()] > 0 ? 2 : 1;
+        return queue.size() + needed <= queue.capacity();
+    }
+
+    private void enqueue(Target target, TraceEvent traceEvent) {
+        var queue = target.getTraceQueue();
+        int ordinal = target.getOrdinal();
+        if (this.rejected[ordinal] > 0) {
+            // mark the events rejected by the full queue, as soon as there is room again
+            var lossEvent = lossEvent(target, this.rejected[ordinal] + " events rejected by full queue",
+                    traceEvent.getLocalTimestamp());
+            if (!queue.add(lossEvent)) {
+                this.rejected[ordinal]++;
+                return;
+            }
+            this.rejected[ordinal] = 0;
+        }
+
+        // add trace event to output queue, counted by the queue if rejected
+        if (!queue.add(traceEvent)) {
+            this.rejected[ordinal]++;
+        }
+    }
+
+    /**
+     * Creates an event that marks lost events in the trace of a target.
+     * @param target the target
+     * @param message what was lost
+     * @param timestamp local timestamp of the event
+     * @return the loss event
+     */
+    private static TraceEvent lossEvent(Target target, String message, Long timestamp) {
+        var lossPacket = new TracePacket();
+        lossPacket.setType(TracePacket.TYPE_LOSS);
+        lossPacket.setLogMessage(message);
+        lossPacket.setTimestamp(timestamp);
+        return TraceEvent.from(target, lossPacket);
+    }
+
+    public void close() {
+        this.decodePool.close();
+    }
+
+    /**
+     * Decodes the payloads on the lanes, without blocking on full trace queues.
+     */
+    private final class LaneDecoder implements DecodePool.Decoder {
+
+        @Override
+        public void decode(Target target, byte[] payload) {
+            TraceReceiver.this.decode(target, ByteBuffer.wrap(payload), false);
+        }
+
+        @Override
+        public boolean drain(Target target) {
+            return TraceReceiver.this.drain(target);
+        }
+
+        @Override
+        public void onSpace(Target target) {
+            spaceListener.accept(target);
+        }
+    }
+}
@@ -0,0 +1,835 @@
+package tracing.backend.source.elf;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Address to source file and line mapping of an ELF file, parsed once from the DWARF line number programs in the
+ * .debug_line section (DWARF 2 to 5), the same information addr2line prints.
+ * <p>
+ * The rows of all line number programs are kept in one array sorted by address, a row covers the addresses up to the
+ * next row, so a lookup is a binary search. The compilation directories of the compile units (.debug_info) are used to
+ * complete relative file paths. The rows are backed by buffers, so a table can be used directly from a memory-mapped
+ * {@link ElfIndexCache} file.
+ */
+public class DwarfLineTable {
+
+    private static final int DW_LNS_COPY = 1;
+    private static final int DW_LNS_ADVANCE_PC = 2;
+    private static final int DW_LNS_ADVANCE_LINE = 3;
+    private static final int DW_LNS_SET_FILE = 4;
+    private static final int DW_LNS_CONST_ADD_PC = 8;
+    private static final int DW_LNS_FIXED_ADVANCE_PC = 9;
+    private static final int DW_LNE_END_SEQUENCE = 1;
+    private static final int DW_LNE_SET_ADDRESS = 2;
+    private static final int DW_LNE_DEFINE_FILE = 3;
+    private static final int DW_LNCT_PATH = 1;
+    private static final int DW_LNCT_DIRECTORY_INDEX = 2;
+    private static final int DW_AT_STMT_LIST = 0x10;
+    private static final int DW_AT_COMP_DIR = 0x1b;
+
+    private static final int DW_FORM_ADDR = 0x01;
+    private static final int DW_FORM_BLOCK2 = 0x03;
+    private static final int DW_FORM_BLOCK4 = 0x04;
+    private static final int DW_FORM_DATA2 = 0x05;
+    private static final int DW_FORM_DATA4 = 0x06;
+    private static final int DW_FORM_DATA8 = 0x07;
+    private static final int DW_FORM_STRING = 0x08;
+    private static final int DW_FORM_BLOCK = 0x09;
+    private static final int DW_FORM_BLOCK1 = 0x0a;
+    private static final int DW_FORM_DATA1 = 0x0b;
+    private static final int DW_FORM_FLAG = 0x0c;
+    private static final int DW_FORM_SDATA = 0x0d;
+    private static final int DW_FORM_STRP = 0x0e;
+    private static final int DW_FORM_UDATA = 0x0f;
+    private static final int DW_FORM_REF_ADDR = 0x10;
+    private static final int DW_FORM_REF1 = 0x11;
+    private static final int DW_FORM_REF2 = 0x12;
+    private static final int DW_FORM_REF4 = 0x13;
+    private static final int DW_FORM_REF8 = 0x14;
+    private static final int DW_FORM_REF_UDATA = 0x15;
+    private static final int DW_FORM_INDIRECT = 0x16;
+    private static final int DW_FORM_SEC_OFFSET = 0x17;
+    private static final int DW_FORM_EXPRLOC = 0x18;
+    private static final int DW_FORM_FLAG_PRESENT = 0x19;
+    private static final int DW_FORM_STRX = 0x1a;
+    private static final int DW_FORM_ADDRX = 0x1b;
+    private static final int DW_FORM_REF_SUP4 = 0x1c;
+    private static final int DW_FORM_STRP_SUP = 0x1d;
+    private static final int DW_FORM_DATA16 = 0x1e;
+    private static final int DW_FORM_LINE_STRP = 0x1f;
+    private static final int DW_FORM_REF_SIG8 = 0x20;
+    private static final int DW_FORM_IMPLICIT_CONST = 0x21;
+    private static final int DW_FORM_LOCLISTX = 0x22;
+    private static final int DW_FORM_RNGLISTX = 0x23;
+    private static final int DW_FORM_REF_SUP8 = 0x24;
+    private static final int DW_FORM_STRX1 = 0x25;
+    private static final int DW_FORM_STRX2 = 0x26;
+    private static final int DW_FORM_STRX3 = 0x27;
+    private static final int DW_FORM_STRX4 = 0x28;
+    private static final int DW_FORM_ADDRX1 = 0x29;
+    private static final int DW_FORM_ADDRX2 = 0x2a;
+    private static final int DW_FORM_ADDRX3 = 0x2b;
+    private static final int DW_FORM_ADDRX4 = 0x2c;
+    private static final int DW_FORM_GNU_REF_ALT = 0x1f20;
+    private static final int DW_FORM_GNU_STRP_ALT = 0x1f21;
+
+    // row start addresses, sorted
+    private final LongBuffer addresses;
+    // file of each row as index into the file names, -1 if the row ends a sequence
+    private final IntBuffer files;
+    // line number of each row
+    private final IntBuffer lines;
+    private final String[] fileNames;
+
+    private DwarfLineTable(LongBuffer addresses, IntBuffer files, IntBuffer lines, String[] fileNames) {
+        this.addresses = addresses;
+        this.files = files;
+        this.lines = lines;
+        this.fileNames = fileNames;
+    }
+
+    /**
+     * Parses the line number programs of all compile units.
+     * @param debugLine the .debug_line section
+     * @param debugInfo the .debug_info section, null if missing
+     * @param debugAbbrev the .debug_abbrev section, null if missing
+     * @param debugStr the .debug_str section, null if missing
+     * @param debugLineStr the .debug_line_str section (DWARF 5), null if missing
+     * @return the line table
+     */
+    public static DwarfLineTable parse(ByteBuffer debugLine, ByteBuffer debugInfo, ByteBuffer debugAbbrev,
+                                       ByteBuffer debugStr, ByteBuffer debugLineStr) {
+        var strings = new Strings(debugStr, debugLineStr);
+        var compDirs = debugInfo != null && debugAbbrev != null
+                ? parseCompDirs(debugInfo, debugAbbrev, strings)
+                : Map.<Long, String>of();
+
+        var builder = new Builder();
+        var in = debugLine.duplicate().order(debugLine.order());
+        in.position(0);
+        while (in.remaining() > 0) {
+            long offset = in.position();
+            try {
+                parseProgram(in, compDirs.get(offset), strings, builder);
+            } catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+                System.out.println("[ElfParser] Invalid line number program at offset " + offset + ".");
+                break;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the row that covers the address.
+     * @param address the address
+     * @return the row index, -1 if no line number program covers the address
+     */
+    private int find(long address) {
+        int low = 0;
+        int high = this.size() - 1;
+        // index of the last row starting at or before the address
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.addresses.get(mid) <= address) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (index < 0 || this.files.get(index) < 0) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Source file of the code at the address.
+     * @param address the address
+     * @return the file path, null if unknown
+     */
+    public String getFile(long address) {
+        int i = this.find(address);
+        return i >= 0 ? this.fileNames[this.files.get(i)] : null;
+    }
+
+    /**
+     * Source line of the code at the address.
+     * @param address the address
+     * @return the line number, 0 if unknown
+     */
+    public int getLine(long address) {
+        int i = this.find(address);
+        return i >= 0 ? this.lines.get(i) : 0;
+    }
+
+    /**
+     * Number of rows in the table.
+     */
+    public int size() {
+        return this.addresses.limit();
+    }
+
+    /**
+     * Writes the table in the cache file format.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int size = this.size();
+        out.writeInt(size);
+        out.writeInt(this.fileNames.length);
+        ElfIndexCache.align(out);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(this.addresses.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(this.files.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(this.lines.get(i));
+        }
+        for (var fileName : this.fileNames) {
+            ElfIndexCache.writeString(out, fileName);
+        }
+        ElfIndexCache.align(out);
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}, the rows are backed by the buffer.
+     */
+    static DwarfLineTable readFrom(ByteBuffer in) {
+        int size = in.getInt();
+        var fileNames = new String[in.getInt()];
+        ElfIndexCache.align(in);
+        var addresses = ElfIndexCache.slice(in, size * 8).asLongBuffer();
+        var files = ElfIndexCache.slice(in, size * 4).asIntBuffer();
+        var lines = ElfIndexCache.slice(in, size * 4).asIntBuffer();
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = ElfIndexCache.readString(in);
+        }
+        ElfIndexCache.align(in);
+        return new DwarfLineTable(addresses, files, lines, fileNames);
+    }
+
+    /**
+     * Parses the line number program at the current position and moves to the next one.
+     * @param in the .debug_line section
+     * @param compDir compilation directory of the compile unit, null if unknown
+     * @param strings string sections
+     * @param builder receives the rows
+     */
+    private static void parseProgram(ByteBuffer in, String compDir, Strings strings, Builder builder) {
+        long unitLength = Integer.toUnsignedLong(in.getInt());
+        int offsetSize = 4;
+        if (unitLength == 0xFFFFFFFFL) {
+            unitLength = in.getLong();
+            offsetSize = 8;
+        }
+        int end = Math.toIntExact(in.position() + unitLength);
+        int version = Short.toUnsignedInt(in.getShort());
+        if (version < 2 || version > 5) {
+            // unknown format, skip the unit
+            in.position(end);
+            return;
+        }
+        int addressSize = 0;
+        if (version >= 5) {
+            addressSize = in.get();
+            // segment selector size
+            in.get();
+        }
+        long headerLength = offsetSize == 8 ? in.getLong() : Integer.toUnsignedLong(in.getInt());
+        int programStart = Math.toIntExact(in.position() + headerLength);
+        int minInstructionLength = Byte.toUnsignedInt(in.get());
+        if (version >= 4) {
+            // maximum operations per instruction, only used for VLIW
+            in.get();
+        }
+        boolean defaultIsStmt = in.get() != 0;
+        int lineBase = in.get();
+        int lineRange = Byte.toUnsignedInt(in.get());
+        int opcodeBase = Byte.toUnsignedInt(in.get());
+        var opcodeLengths = new int[opcodeBase];
+        for (int i = 1; i < opcodeBase; i++) {
+            opcodeLengths[i] = Byte.toUnsignedInt(in.get());
+        }
+        if (lineRange == 0) {
+            throw new IllegalArgumentException("line range 0");
+        }
+
+        // directories and files of the unit, files refer to directories by index
+        var directories = new ArrayList<String>();
+        var files = new ArrayList<String>();
+        if (version >= 5) {
+            var reader = new Reader(in, offsetSize, addressSize, strings);
+            for (var entry : reader.readEntries()) {
+                directories.add(entry.path);
+            }
+            for (var entry : reader.readEntries()) {
+                files.add(filePath(entry.path, entry.directoryIndex, directories, compDir));
+            }
+        } else {
+            // directory 0 is the compilation directory, file 0 is not used
+            directories.add(compDir);
+            files.add(null);
+            String directory;
+            while (!(directory = readCString(in)).isEmpty()) {
+                directories.add(directory);
+            }
+            String name;
+            while (!(name = readCString(in)).isEmpty()) {
+                int directoryIndex = (int) readUnsigned(in);
+                // modification time and length
+                readUnsigned(in);
+                readUnsigned(in);
+                files.add(filePath(name, directoryIndex, directories, compDir));
+            }
+        }
+
+        // run the line number program
+        in.position(programStart);
+        long address = 0;
+        int file = 1;
+        int line = 1;
+        while (in.position() < end) {
+            int opcode = Byte.toUnsignedInt(in.get());
+            if (opcode >= opcodeBase) {
+                // special opcode, advances address and line and appends a row
+                int adjusted = opcode - opcodeBase;
+                address += (long) (adjusted / lineRange) * minInstructionLength;
+                line += lineBase + adjusted % lineRange;
+                builder.add(address, fileAt(files, file), line);
+            } else if (opcode == 0) {
+                // extended opcode
+                int length = (int) readUnsigned(in);
+                int next = in.position() + length;
+                int extended = length > 0 ? Byte.toUnsignedInt(in.get()) : -1;
+                switch (extended) {
+                    case DW_LNE_END_SEQUENCE:
+                        builder.addEnd(address);
+                        address = 0;
+                        file = 1;
+                        line = 1;
+                        break;
+                    case DW_LNE_SET_ADDRESS:
+                        address = readAddress(in, length - 1);
+                        break;
+                    case DW_LNE_DEFINE_FILE:
+                        var name = readCString(in);
+                        int directoryIndex = (int) readUnsigned(in);
+                        files.add(filePath(name, directoryIndex, directories, compDir));
+                        break;
+                    default:
+                        // discriminator and vendor extensions
+                        break;
+                }
+                in.position(next);
+            } else {
+                switch (opcode) {
+                    case DW_LNS_COPY:
+                        builder.add(address, fileAt(files, file), line);
+                        break;
+                    case DW_LNS_ADVANCE_PC:
+                        address += readUnsigned(in) * minInstructionLength;
+                        break;
+                    case DW_LNS_ADVANCE_LINE:
+                        line += (int) readSigned(in);
+                        break;
+                    case DW_LNS_SET_FILE:
+                        file = (int) readUnsigned(in);
+                        break;
+                    case DW_LNS_CONST_ADD_PC:
+                        address += (long) ((255 - opcodeBase) / lineRange) * minInstructionLength;
+                        break;
+                    case DW_LNS_FIXED_ADVANCE_PC:
+                        address += Short.toUnsignedInt(in.getShort());
+                        break;
+                    default:
+                        // column, is_stmt, basic block, prologue/epilogue and ISA are not used, skip the operands
+                        for (int i = 0; i < opcodeLengths[opcode]; i++) {
+                            readUnsigned(in);
+                        }
+                        break;
+                }
+            }
+        }
+        in.position(end);
+    }
+
+    private static String fileAt(List<String> files, int file) {
+        return file >= 0 && file < files.size() ? files.get(file) : null;
+    }
+
+    /**
+     * Completes the path of a file like addr2line: relative to its directory, relative to the compilation directory.
+     */
+    private static String filePath(String name, int directoryIndex, List<String> directories, String compDir) {
+        if (name == null || name.startsWith("/")) {
+            return name;
+        }
+        var directory = directoryIndex >= 0 && directoryIndex < directories.size() ? directories.get(directoryIndex) : null;
+        if (directory == null) {
+            return name;
+        }
+        if (!directory.startsWith("/") && compDir != null && !directory.equals(compDir)) {
+            directory = compDir + "/" + directory;
+        }
+        return directory + "/" + name;
+    }
+
+    /**
+     * Reads the compilation directory of every compile unit, by the offset of its line number program.
+     */
+    private static Map<Long, String> parseCompDirs(ByteBuffer debugInfo, ByteBuffer debugAbbrev, Strings strings) {
+        var compDirs = new HashMap<Long, String>();
+        var in = debugInfo.duplicate().order(debugInfo.order());
+        in.position(0);
+        try {
+            while (in.remaining() > 0) {
+                long unitLength = Integer.toUnsignedLong(in.getInt());
+                int offsetSize = 4;
+                if (unitLength == 0xFFFFFFFFL) {
+                    unitLength = in.getLong();
+                    offsetSize = 8;
+                }
+                int end = Math.toIntExact(in.position() + unitLength);
+                int version = Short.toUnsignedInt(in.getShort());
+                int addressSize;
+                long abbrevOffset;
+                if (version >= 5) {
+                    int unitType = in.get();
+                    addressSize = in.get();
+                    abbrevOffset = offsetSize == 8 ? in.getLong() : Integer.toUnsignedLong(in.getInt());
+                    if (unitType == 2 || unitType == 6) {
+                        // type units, type signature and offset
+                        in.position(in.position() + 8 + offsetSize);
+                    } else if (unitType == 4 || unitType == 5) {
+                        // skeleton and split units, DWO id
+                        in.position(in.position() + 8);
+                    }
+                } else {
+                    abbrevOffset = offsetSize == 8 ? in.getLong() : Integer.toUnsignedLong(in.getInt());
+                    addressSize = in.get();
+                }
+
+                // the first entry is the compile unit
+                var reader = new Reader(in, offsetSize, addressSize, strings);
+                reader.version = version;
+                long code = readUnsigned(in);
+                var abbrev = findAbbrev(debugAbbrev, abbrevOffset, code);
+                if (abbrev != null) {
+                    long stmtList = -1;
+                    String compDir = null;
+                    for (int i = 0; i < abbrev.length; i += 3) {
+                        int attribute = (int) abbrev[i];
+                        int form = (int) abbrev[i + 1];
+                        if (attribute == DW_AT_STMT_LIST) {
+                            stmtList = reader.readConstant(form, abbrev[i + 2]);
+                        } else if (attribute == DW_AT_COMP_DIR) {
+                            compDir = reader.readString(form);
+                        } else {
+                            reader.skip(form);
+                        }
+                    }
+                    if (stmtList >= 0 && compDir != null) {
+                        compDirs.put(stmtList, compDir);
+                    }
+                }
+                in.position(end);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+            System.out.println("[ElfParser] Invalid debug info at offset " + in.position() + ".");
+        }
+        return compDirs;
+    }
+
+    /**
+     * Looks up an abbreviation declaration.
+     * @return attribute, form and implicit constant of every attribute specification, null if not found
+     */
+    private static long[] findAbbrev(ByteBuffer debugAbbrev, long offset, long code) {
+        var in = debugAbbrev.duplicate().order(debugAbbrev.order());
+        in.position(Math.toIntExact(offset));
+        while (in.remaining() > 0) {
+            long c = readUnsigned(in);
+            if (c == 0) {
+                return null;
+            }
+            // tag and children flag
+            readUnsigned(in);
+            in.get();
+            var specs = new ArrayList<Long>();
+            while (true) {
+                long attribute = readUnsigned(in);
+                long form = readUnsigned(in);
+                if (attribute == 0 && form == 0) {
+                    break;
+                }
+                specs.add(attribute);
+                specs.add(form);
+                specs.add(form == DW_FORM_IMPLICIT_CONST ? readSigned(in) : 0L);
+            }
+            if (c == code) {
+                return specs.stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+        return null;
+    }
+
+    private static String readCString(ByteBuffer in) {
+        int start = in.position();
+        while (in.get() != 0) {
+            // find terminator
+        }
+        var bytes = new byte[in.position() - start - 1];
+        in.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readUnsigned(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get();
+            if (shift < 64) {
+                result |= (long) (b & 0x7F) << shift;
+            }
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    private static long readSigned(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get();
+            if (shift < 64) {
+                result |= (long) (b & 0x7F) << shift;
+            }
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (shift < 64 && (b & 0x40) != 0) {
+            result |= -1L << shift;
+        }
+        return result;
+    }
+
+    private static long readAddress(ByteBuffer in, int size) {
+        switch (size) {
+            case 1:
+                return Byte.toUnsignedLong(in.get());
+            case 2:
+                return Short.toUnsignedLong(in.getShort());
+            case 4:
+                return Integer.toUnsignedLong(in.getInt());
+            case 8:
+                return in.getLong();
+            default:
+                throw new IllegalArgumentException("address size " + size);
+        }
+    }
+
+    /**
+     * String sections referenced by offset.
+     */
+    private static final class Strings {
+
+        private final ByteBuffer debugStr;
+        private final ByteBuffer debugLineStr;
+
+        Strings(ByteBuffer debugStr, ByteBuffer debugLineStr) {
+            this.debugStr = debugStr;
+            this.debugLineStr = debugLineStr;
+        }
+
+        String get(ByteBuffer section, long offset) {
+            if (section == null || offset < 0 || offset >= section.limit()) {
+                return null;
+            }
+            var in = section.duplicate();
+            in.position((int) offset);
+            return readCString(in);
+        }
+    }
+
+    /**
+     * An entry of the directory or file name table of a DWARF 5 line number program header.
+     */
+    private static final class Entry {
+
+        private String path;
+        private int directoryIndex;
+    }
+
+    /**
+     * Reads attribute values of the given forms.
+     */
+    private static final class Reader {
+
+        private final ByteBuffer in;
+        private final int offsetSize;
+        private final int addressSize;
+        private final Strings strings;
+        private int version = 5;
+
+        Reader(ByteBuffer in, int offsetSize, int addressSize, Strings strings) {
+            this.in = in;
+            this.offsetSize = offsetSize;
+            this.addressSize = addressSize;
+            this.strings = strings;
+        }
+
+        /**
+         * Reads a directory or file name table of a DWARF 5 line number program header.
+         */
+        List<Entry> readEntries() {
+            int formatCount = Byte.toUnsignedInt(this.in.get());
+            var format = new int[formatCount * 2];
+            for (int i = 0; i < format.length; i++) {
+                format[i] = (int) readUnsigned(this.in);
+            }
+            int count = (int) readUnsigned(this.in);
+            var entries = new ArrayList<Entry>(count);
+            for (int i = 0; i < count; i++) {
+                var entry = new Entry();
+                for (int j = 0; j < format.length; j += 2) {
+                    if (format[j] == DW_LNCT_PATH) {
+                        entry.path = this.readString(format[j + 1]);
+                    } else if (format[j] == DW_LNCT_DIRECTORY_INDEX) {
+                        entry.directoryIndex = (int) this.readConstant(format[j + 1], 0);
+                    } else {
+                        this.skip(format[j + 1]);
+                    }
+                }
+                entries.add(entry);
+            }
+            return entries;
+        }
+
+        private long readOffset() {
+            return this.offsetSize == 8 ? this.in.getLong() : Integer.toUnsignedLong(this.in.getInt());
+        }
+
+        /**
+         * Reads a string value, strings of unsupported forms (string offset tables) are skipped.
+         * @return the string, null if not supported
+         */
+        String readString(int form) {
+            switch (form) {
+                case DW_FORM_STRING:
+                    return readCString(this.in);
+                case DW_FORM_STRP:
+                    return this.strings.get(this.strings.debugStr, this.readOffset());
+                case DW_FORM_LINE_STRP:
+                    return this.strings.get(this.strings.debugLineStr, this.readOffset());
+                default:
+                    this.skip(form);
+                    return null;
+            }
+        }
+
+        /**
+         * Reads an unsigned constant or section offset value.
+         * @return the value, -1 if the form is not a constant
+         */
+        long readConstant(int form, long implicitConst) {
+            switch (form) {
+                case DW_FORM_DATA1:
+                    return Byte.toUnsignedLong(this.in.get());
+                case DW_FORM_DATA2:
+                    return Short.toUnsignedLong(this.in.getShort());
+                case DW_FORM_DATA4:
+                    return Integer.toUnsignedLong(this.in.getInt());
+                case DW_FORM_DATA8:
+                    return this.in.getLong();
+                case DW_FORM_UDATA:
+                    return readUnsigned(this.in);
+                case DW_FORM_SEC_OFFSET:
+                    return this.readOffset();
+                case DW_FORM_IMPLICIT_CONST:
+                    return implicitConst;
+                default:
+                    this.skip(form);
+                    return -1;
+            }
+        }
+
+        /**
+         * Skips a value.
+         */
+        void skip(int form) {
+            int size;
+            switch (form) {
+                case DW_FORM_FLAG_PRESENT:
+                case DW_FORM_IMPLICIT_CONST:
+                    return;
+                case DW_FORM_DATA1:
+                case DW_FORM_REF1:
+                case DW_FORM_FLAG:
+                case DW_FORM_STRX1:
+                case DW_FORM_ADDRX1:
+                    size = 1;
+                    break;
+                case DW_FORM_DATA2:
+                case DW_FORM_REF2:
+                case DW_FORM_STRX2:
+                case DW_FORM_ADDRX2:
+                    size = 2;
+                    break;
+                case DW_FORM_STRX3:
+                case DW_FORM_ADDRX3:
+                    size = 3;
+                    break;
+                case DW_FORM_DATA4:
+                case DW_FORM_REF4:
+                case DW_FORM_REF_SUP4:
+                case DW_FORM_STRX4:
+                case DW_FORM_ADDRX4:
+                    size = 4;
+                    break;
+                case DW_FORM_DATA8:
+                case DW_FORM_REF8:
+                case DW_FORM_REF_SIG8:
+                case DW_FORM_REF_SUP8:
+                    size = 8;
+                    break;
+                case DW_FORM_DATA16:
+                    size = 16;
+                    break;
+                case DW_FORM_ADDR:
+                    size = this.addressSize;
+                    break;
+                case DW_FORM_REF_ADDR:
+                    size = this.version <= 2 ? this.addressSize : this.offsetSize;
+                    break;
+                case DW_FORM_STRP:
+                case DW_FORM_LINE_STRP:
+                case DW_FORM_SEC_OFFSET:
+                case DW_FORM_STRP_SUP:
+                case DW_FORM_GNU_REF_ALT:
+                case DW_FORM_GNU_STRP_ALT:
+                    size = this.offsetSize;
+                    break;
+                case DW_FORM_SDATA:
+                    readSigned(this.in);
+                    return;
+                case DW_FORM_UDATA:
+                case DW_FORM_REF_UDATA:
+                case DW_FORM_STRX:
+                case DW_FORM_ADDRX:
+                case DW_FORM_LOCLISTX:
+                case DW_FORM_RNGLISTX:
+                    readUnsigned(this.in);
+                    return;
+                case DW_FORM_STRING:
+                    readCString(this.in);
+                    return;
+                case DW_FORM_BLOCK1:
+                    size = Byte.toUnsignedInt(this.in.get());
+                    break;
+                case DW_FORM_BLOCK2:
+                    size = Short.toUnsignedInt(this.in.getShort());
+                    break;
+                case DW_FORM_BLOCK4:
+                    size = this.in.getInt();
+                    break;
+                case DW_FORM_BLOCK:
+                case DW_FORM_EXPRLOC:
+                    size = (int) readUnsigned(this.in);
+                    break;
+                case DW_FORM_INDIRECT:
+                    this.skip((int) readUnsigned(this.in));
+                    return;
+                default:
+                    throw new IllegalArgumentException("unknown form " + form);
+            }
+            this.in.position(this.in.position() + size);
+        }
+    }
+
+    /**
+     * Collects the rows of all line number programs and sorts them.
+     */
+    private static final class Builder {
+
+        private long[] addresses = new long[1024];
+        private int[] files = new int[1024];
+        private int[] lines = new int[1024];
+        private int size = 0;
+        private final List<String> fileNames = new ArrayList<>();
+        private final Map<String, Integer> fileIndices = new HashMap<>();
+
+        void add(long address, String file, int line) {
+            var name = file != null ? file : "??";
+            var index = this.fileIndices.computeIfAbsent(name, f -> {
+                this.fileNames.add(f);
+                return this.fileNames.size() - 1;
+            });
+            this.append(address, index, line);
+        }
+
+        void addEnd(long address) {
+            this.append(address, -1, 0);
+        }
+
+        private void append(long address, int file, int line) {
+            if (this.size == this.addresses.length) {
+                this.addresses = Arrays.copyOf(this.addresses, this.size * 2);
+                this.files = Arrays.copyOf(this.files, this.size * 2);
+                this.lines = Arrays.copyOf(this.lines, this.size * 2);
+            }
+            this.addresses[this.size] = address;
+            this.files[this.size] = file;
+            this.lines[this.size] = line;
+            this.size++;
+        }
+
+        DwarfLineTable build() {
+            // sort by address, the end of a sequence before rows of another sequence at the same address, otherwise
+            // keep the program order (stable sort)
+            var order = new Integer[this.size];
+            for (int i = 0; i < this.size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int c = Long.compare(this.addresses[a], this.addresses[b]);
+                if (c != 0) {
+                    return c;
+                }
+                return Boolean.compare(this.files[a] >= 0, this.files[b] >= 0);
+            });
+
+            // of several rows at the same address, the last one covers the address
+            var addresses = new long[this.size];
+            var files = new int[this.size];
+            var lines = new int[this.size];
+            int n = 0;
+            for (int i = 0; i < this.size; i++) {
+                int row = order[i];
+                if (n > 0 && addresses[n - 1] == this.addresses[row]) {
+                    n--;
+                }
+                addresses[n] = this.addresses[row];
+                files[n] = this.files[row];
+                lines[n] = this.lines[row];
+                n++;
+            }
+            return new DwarfLineTable(LongBuffer.wrap(addresses, 0, n).slice(), IntBuffer.wrap(files, 0, n).slice(),
+                    IntBuffer.wrap(lines, 0, n).slice(), this.fileNames.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package tracing.backend.source.elf;
+
+import net.fornwall.jelf.ElfException;
+import net.fornwall.jelf.ElfFile;
+import net.fornwall.jelf.ElfSymbol;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Symbol and line number information of an ELF file: the function address ranges, the object symbols and the DWARF
+ * line table. Parsed from the ELF file or loaded from the {@link ElfIndexCache}.
+ */
+public class ElfIndex {
+
+    private static final short EM_ARM = 40;
+    private static final byte ELFDATA2MSB = 2;
+    private static final long SHF_COMPRESSED = 0x800;
+
+    private final FunctionIndex functions;
+    // null if the file has no line number information
+    private final DwarfLineTable lineTable;
+    private final List<Symbol> objects;
+    // containing-symbol lookup over the objects
+    private final SymbolIndex objectIndex;
+    // ARM Thumb code, bit 0 of function addresses is set
+    private final boolean thumb;
+
+    private ElfIndex(FunctionIndex functions, DwarfLineTable lineTable, List<Symbol> objects, boolean thumb) {
+        this.functions = functions;
+        this.lineTable = lineTable;
+        this.objects = objects;
+        this.objectIndex = new SymbolIndex(objects);
+        this.thumb = thumb;
+    }
+
+    /**
+     * An index without any information, used if the ELF file cannot be parsed.
+     */
+    public static ElfIndex empty() {
+        return new ElfIndex(FunctionIndex.of(new long[0], new long[0], new String[0]), null, List.of(), false);
+    }
+
+    /**
+     * Parses the symbol table and the line number information of the ELF file.
+     * @param elfPath the ELF file path
+     * @return the index
+     */
+    public static ElfIndex parse(Path elfPath) throws IOException, ElfException {
+        var elfFile = ElfFile.from(elfPath.toFile());
+        var thumb = elfFile.e_machine == EM_ARM;
+
+        var objects = new ArrayList<Symbol>();
+        var functions = parseSymbols(elfFile, elfPath, thumb, objects);
+
+        DwarfLineTable lineTable = null;
+        try (var channel = FileChannel.open(elfPath, StandardOpenOption.READ)) {
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var order = elfFile.ei_data == ELFDATA2MSB ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            var debugLine = section(elfFile, mapped, order, ".debug_line");
+            if (debugLine != null) {
+                lineTable = DwarfLineTable.parse(debugLine,
+                        section(elfFile, mapped, order, ".debug_info"),
+                        section(elfFile, mapped, order, ".debug_abbrev"),
+                        section(elfFile, mapped, order, ".debug_str"),
+                        section(elfFile, mapped, order, ".debug_line_str"));
+            } else {
+                System.out.println("[ElfParser] No line number information in elf file " + elfPath + ".");
+            }
+        }
+
+        return new ElfIndex(functions, lineTable, objects, thumb);
+    }
+
+    /**
+     * Get the content of a section.
+     * @return the section content, null if the file has no such section
+     */
+    private static ByteBuffer section(ElfFile elfFile, MappedByteBuffer mapped, ByteOrder order, String name) {
+        var section = elfFile.firstSectionByName(name);
+        if (section == null) {
+            return null;
+        }
+        if ((section.header.sh_flags & SHF_COMPRESSED) != 0) {
+            System.out.println("[ElfParser] Compressed section " + name + " is not supported.");
+            return null;
+        }
+        var offset = Math.toIntExact(section.header.sh_offset);
+        var size = Math.toIntExact(section.header.sh_size);
+        return mapped.duplicate().position(offset).limit(offset + size).slice().order(order);
+    }
+
+    /**
+     * Parse all relevant symbols from the symbol table.
+     * @param objects receives the object symbols
+     * @return the function index
+     */
+    private static FunctionIndex parseSymbols(ElfFile elfFile, Path elfPath, boolean thumb, List<Symbol> objects) {
+        var symbolTable = elfFile.getSymbolTableSection();
+        if (symbolTable == null) {
+            System.out.println("[ElfParser] No symbol table in elf file " + elfPath + ".");
+            return FunctionIndex.of(new long[0], new long[0], new String[0]);
+        }
+
+        List<ElfSymbol> functions = new ArrayList<>();
+        for (var elfSymbol : symbolTable.symbols) {
+            if (elfSymbol.getType() == ElfSymbol.STT_FUNC && elfSymbol.st_value != 0) {
+                functions.add(elfSymbol);
+            } else if (elfSymbol.getType() == ElfSymbol.STT_OBJECT) {
+                objects.add(new Symbol(elfSymbol.st_value, elfSymbol.st_size, elfSymbol.getName()));
+            }
+        }
+
+        // sort by address, of several symbols at the same address (aliases) the first one is used
+        functions.sort(Comparator.comparingLong(elfSymbol -> codeAddress(elfSymbol, thumb)));
+        var starts = new long[functions.size()];
+        var ends = new long[functions.size()];
+        var names = new String[functions.size()];
+        int n = 0;
+        for (var elfSymbol : functions) {
+            var start = codeAddress(elfSymbol, thumb);
+            if (n > 0 && starts[n - 1] == start) {
+                continue;
+            }
+            starts[n] = start;
+            ends[n] = start + elfSymbol.st_size;
+            names[n] = elfSymbol.getName();
+            n++;
+        }
+        for (int i = 0; i < n; i++) {
+            // functions without size extend to the next function
+            if (ends[i] == starts[i]) {
+                ends[i] = i + 1 < n ? starts[i + 1] : Long.MAX_VALUE;
+            }
+        }
+        return FunctionIndex.of(Arrays.copyOf(starts, n), Arrays.copyOf(ends, n), Arrays.copyOf(names, n));
+    }
+
+    private static long codeAddress(ElfSymbol elfSymbol, boolean thumb) {
+        return thumb ? elfSymbol.st_value & ~1L : elfSymbol.st_value;
+    }
+
+    /**
+     * Address of the code at a function or return address, without the Thumb bit.
+     */
+    public long codeAddress(long address) {
+        return this.thumb ? address & ~1L : address;
+    }
+
+    public FunctionIndex getFunctions() {
+        return functions;
+    }
+
+    public DwarfLineTable getLineTable() {
+        return lineTable;
+    }
+
+    public List<Symbol> getObjects() {
+        return objects;
+    }
+
+    public SymbolIndex getObjectIndex() {
+        return objectIndex;
+    }
+
+    /**
+     * Writes the index in the cache file format.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeBoolean(this.thumb);
+        out.writeBoolean(this.lineTable != null);
+        ElfIndexCache.align(out);
+        this.functions.writeTo(out);
+        if (this.lineTable != null) {
+            this.lineTable.writeTo(out);
+        }
+        out.writeInt(this.objects.size());
+        for (var symbol : this.objects) {
+            out.writeLong(symbol.getAddress());
+            out.writeLong(symbol.getSize());
+            ElfIndexCache.writeString(out, symbol.getName());
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}, functions and line table are backed by the buffer.
+     */
+    static ElfIndex readFrom(ByteBuffer in) {
+        var thumb = in.get() != 0;
+        var hasLineTable = in.get() != 0;
+        ElfIndexCache.align(in);
+        var functions = FunctionIndex.readFrom(in);
+        var lineTable = hasLineTable ? DwarfLineTable.readFrom(in) : null;
+        int objectCount = in.getInt();
+        var objects = new ArrayList<Symbol>(objectCount);
+        for (int i = 0; i < objectCount; i++) {
+            var address = in.getLong();
+            var size = in.getLong();
+            objects.add(new Symbol(address, size, ElfIndexCache.readString(in)));
+        }
+        return new ElfIndex(functions, lineTable, objects, thumb);
+    }
+}
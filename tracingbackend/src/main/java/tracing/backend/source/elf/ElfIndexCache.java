@@ -0,0 +1,149 @@
+package tracing.backend.source.elf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of parsed {@link ElfIndex}es, so a restart with unchanged binaries does not parse the ELF files again.
+ * <p>
+ * Every index is stored in its own file named by the SHA-256 hash of the ELF file content, a changed binary gets a new
+ * cache file. Cache files are memory-mapped on load, functions and line table are used directly from the mapping.
+ * All values are big-endian, arrays are aligned to 8 bytes.
+ */
+public class ElfIndexCache {
+
+    public static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "tracing", "elf-cache");
+
+    // "ELFI"
+    private static final int MAGIC = 0x454C4649;
+    // increment when the file format changes
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".idx";
+
+    private ElfIndexCache() {
+    }
+
+    /**
+     * Path of the cache file of an ELF file.
+     * @param directory the cache directory
+     * @param elfPath the ELF file path
+     * @return the cache file path, named by the content hash of the ELF file
+     */
+    public static Path cacheFile(Path directory, Path elfPath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (var in = new DigestInputStream(Files.newInputStream(elfPath), digest)) {
+            var buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // digest the whole file
+            }
+        }
+
+        var hash = new StringBuilder();
+        for (var b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return directory.resolve(hash + SUFFIX);
+    }
+
+    /**
+     * Loads an index from a cache file.
+     * @param cacheFile the cache file
+     * @return the index, null if there is no valid cache file
+     */
+    public static ElfIndex load(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        try (var channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            var in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                System.out.println("[ElfParser] Ignoring cache file " + cacheFile + " of another version.");
+                return null;
+            }
+            return ElfIndex.readFrom(in);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.out.println("[ElfParser] Ignoring invalid cache file " + cacheFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores an index in a cache file, replacing it atomically.
+     * @param cacheFile the cache file
+     * @param index the index
+     */
+    public static void store(Path cacheFile, ElfIndex index) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            var temp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    index.writeTo(out);
+                }
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.out.println("[ElfParser] Cannot write cache file " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes zeros up to the next multiple of 8 bytes.
+     */
+    static void align(DataOutputStream out) throws IOException {
+        while (out.size() % 8 != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Skips to the next multiple of 8 bytes.
+     */
+    static void align(ByteBuffer in) {
+        in.position((in.position() + 7) & ~7);
+    }
+
+    /**
+     * Returns the next bytes as own buffer and skips them.
+     */
+    static ByteBuffer slice(ByteBuffer in, int length) {
+        var slice = in.duplicate().limit(in.position() + length).slice().order(in.order());
+        in.position(in.position() + length);
+        return slice;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        var bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
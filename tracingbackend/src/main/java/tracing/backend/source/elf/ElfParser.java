@@ -1,34 +1,56 @@
 package tracing.backend.source.elf;
 
+import net.fornwall.jelf.ElfException;
+
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Parses (lazily and cached) an ELF-file at the given path and provides information about functions and variables.
+ * <p>
+ * The symbol table and the DWARF line number information are read in-process on first use (no addr2line or readelf
+ * processes), functions and variables are looked up by binary search over their sorted address ranges. With a cache
+ * directory, the parsed {@link ElfIndex} is stored in the {@link ElfIndexCache} and loaded from there while the ELF
+ * file is unchanged.
+ * <p>
+ * Thread-safe: the index is loaded once and read-only afterwards, the caches are concurrent maps that are read without
+ * locking.
  */
 public class ElfParser {
 
-    private static final Pattern SYMBOL_PATTERN = Pattern.compile("\\s+\\d+:\\s([\\dabcdef]+)\\s+(\\d+)\\s+(\\w+)\\s+\\w+\\s+\\w+\\s+\\w+\\s(.*)");
+    private static final String UNKNOWN = "??";
 
     private final Path elfPath;
+    // directory of the index cache, null to always parse the ELF file
+    private final Path cacheDirectory;
 
     /**
      * Parse ELF-file at the given path.
      * @param elfPath the ELF file path
      */
     public ElfParser(Path elfPath) {
+        this(elfPath, null);
+    }
+
+    /**
+     * Parse ELF-file at the given path, or load it from the index cache.
+     * @param elfPath the ELF file path
+     * @param cacheDirectory directory of the index cache, null to always parse the ELF file
+     */
+    public ElfParser(Path elfPath, Path cacheDirectory) {
         this.elfPath = elfPath;
+        this.cacheDirectory = cacheDirectory;
     }
 
     // caches
-    private final Map<Long, Function> addressToFunctionMap = new HashMap<>();
-    private final Map<String, Symbol> nameToSymbolMap = new HashMap<>();
-    private final Map<Long, Symbol> addressToSymbolMap = new HashMap<>();
+    private final Map<Long, Function> addressToFunctionMap = new ConcurrentHashMap<>();
+    private final Map<String, Symbol> nameToSymbolMap = new ConcurrentHashMap<>();
+
+    // set once loaded, the symbol maps are filled before
+    private volatile ElfIndex index;
 
     /**
      * Get information about the function at the address.
@@ -36,60 +58,30 @@ public class ElfParser {
      * @return function object
      */
     public Optional<Function> getFunction(long address) {
-        if (addressToFunctionMap.containsKey(address)) {
-            return Optional.of(addressToFunctionMap.get(address));
+        var cached = addressToFunctionMap.get(address);
+        if (cached != null) {
+            return Optional.of(cached);
         }
 
-        ProcessBuilder builder = new ProcessBuilder(
-                "addr2line",
-                "-f",
-                "-e", elfPath.toAbsolutePath().toString(),
-                "0x" + String.format("%08x", address)
-        ).redirectErrorStream(true);
-
-        try {
-            Process process = builder.start();
-
-            try (var in = process.getInputStream();
-                 var scanner = new Scanner(in)) {
-
-                if (scanner.hasNextLine()) {
-                    var name = scanner.nextLine();
-                    if (scanner.hasNextLine()) {
-                        var s = scanner.nextLine().split(":");
-                        var path = s[0];
-                        var lineNum = Integer.parseInt(s[1].split(" ")[0]);
-                        var function = new Function(name, path, lineNum, address);
-                        addressToFunctionMap.put(address, function);
-                        return Optional.of(function);
-                    } else {
-                        return Optional.empty();
-                    }
-                } else {
-                    return Optional.empty();
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace(System.out);
-        }
-        return Optional.empty();
+        var index = getIndex();
+        var codeAddress = index.codeAddress(address);
+        var lineTable = index.getLineTable();
+        var name = index.getFunctions().find(codeAddress);
+        var file = lineTable != null ? lineTable.getFile(codeAddress) : null;
+        var lineNum = lineTable != null ? lineTable.getLine(codeAddress) : 0;
+        var function = new Function(name != null ? name : UNKNOWN, file != null ? file : UNKNOWN, lineNum, address);
+        // another thread may have resolved the address in the meantime, keep the first result
+        var previous = addressToFunctionMap.putIfAbsent(address, function);
+        return Optional.of(previous != null ? previous : function);
     }
 
     /**
-     * Get information about the symbol at the address.
-     * @param address the symbol address
+     * Get information about the symbol that contains the address, e.g. the struct of a field or the array of an element.
+     * @param address the address
      * @return symbol object
      */
     public Optional<Symbol> getSymbol(long address) {
-        if (addressToSymbolMap.isEmpty()) {
-            parseSymbols();
-        }
-
-        if (addressToSymbolMap.containsKey(address)) {
-            return Optional.of(addressToSymbolMap.get(address));
-        } else {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(getIndex().getObjectIndex().find(address));
     }
 
     /**
@@ -98,53 +90,64 @@ public class ElfParser {
      * @return symbol object
      */
     public Optional<Symbol> getSymbol(String name) {
-        if (nameToSymbolMap.isEmpty()) {
-            parseSymbols();
-        }
+        getIndex();
 
-        if (nameToSymbolMap.containsKey(name)) {
-            return Optional.of(nameToSymbolMap.get(name));
-        } else {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(nameToSymbolMap.get(name));
     }
 
     /**
-     * Parse all relevant symbols using readelf.
+     * Get the index, loads it on first use.
      */
-    private void parseSymbols() {
-        ProcessBuilder builder = new ProcessBuilder(
-                "readelf",
-                "-s",
-                elfPath.toAbsolutePath().toString()
-        ).redirectErrorStream(true);
-
-        try {
-            Process process = builder.start();
-
-            try (var in = process.getInputStream();
-                 var scanner = new Scanner(in)) {
-
-                while (scanner.hasNextLine()) {
-                    var line = scanner.nextLine();
-                    var matcher = SYMBOL_PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        var name = matcher.group(4);
-                        var address = Long.parseLong(matcher.group(1), 16);
-                        var size = Long.parseLong(matcher.group(2));
-                        var type = matcher.group(3);
-                        if (type.equals("OBJECT")) {
-                            var symbol = new Symbol(address, size, name);
-                            nameToSymbolMap.put(name, symbol);
-                            addressToSymbolMap.put(address, symbol);
-                        }
-                    }
+    private ElfIndex getIndex() {
+        var index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = load();
+                    this.index = index;
                 }
+            }
+        }
+        return index;
+    }
 
-                System.out.println("[ElfParser] Loaded elf file with " + nameToSymbolMap.size() + " object symbols.");
+    /**
+     * Load the index from the cache or parse the ELF file, and fill the symbol maps.
+     */
+    private ElfIndex load() {
+        ElfIndex index = null;
+        Path cacheFile = null;
+        if (cacheDirectory != null) {
+            try {
+                cacheFile = ElfIndexCache.cacheFile(cacheDirectory, elfPath);
+                index = ElfIndexCache.load(cacheFile);
+            } catch (IOException e) {
+                e.printStackTrace(System.out);
             }
-        } catch (IOException e) {
-            e.printStackTrace(System.out);
         }
+
+        var cached = index != null;
+        if (!cached) {
+            try {
+                index = ElfIndex.parse(elfPath);
+                if (cacheFile != null) {
+                    ElfIndexCache.store(cacheFile, index);
+                }
+            } catch (IOException | ElfException e) {
+                e.printStackTrace(System.out);
+                index = ElfIndex.empty();
+            }
+        }
+
+        for (var symbol : index.getObjects()) {
+            nameToSymbolMap.put(symbol.getName(), symbol);
+        }
+
+        var lineTable = index.getLineTable();
+        System.out.println("[ElfParser] Loaded elf file" + (cached ? " from cache" : "") + " with "
+                + index.getFunctions().size() + " function symbols, " + nameToSymbolMap.size() + " object symbols and "
+                + (lineTable != null ? lineTable.size() : 0) + " line table rows.");
+        return index;
     }
 }
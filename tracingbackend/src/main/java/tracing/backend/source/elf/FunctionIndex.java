@@ -0,0 +1,132 @@
+package tracing.backend.source.elf;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Address ranges of the functions in the symbol table, sorted by start address, a lookup is a binary search.
+ * <p>
+ * Backed by buffers, so an index can be used directly from a memory-mapped {@link ElfIndexCache} file. The names are
+ * stored UTF-8 encoded in one pool and only decoded when looked up.
+ */
+public class FunctionIndex {
+
+    // start addresses, sorted
+    private final LongBuffer starts;
+    // end addresses, exclusive
+    private final LongBuffer ends;
+    // offsets of the names in the pool, the name i ends at offset i + 1
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+
+    private FunctionIndex(LongBuffer starts, LongBuffer ends, IntBuffer nameOffsets, ByteBuffer names) {
+        this.starts = starts;
+        this.ends = ends;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+    }
+
+    /**
+     * Creates an index.
+     * @param starts start addresses, sorted
+     * @param ends end addresses, exclusive
+     * @param names function names
+     */
+    public static FunctionIndex of(long[] starts, long[] ends, String[] names) {
+        var nameOffsets = new int[names.length + 1];
+        var encoded = new byte[names.length][];
+        int length = 0;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            nameOffsets[i] = length;
+            length += encoded[i].length;
+        }
+        nameOffsets[names.length] = length;
+        var pool = ByteBuffer.allocate(length);
+        for (var name : encoded) {
+            pool.put(name);
+        }
+        return new FunctionIndex(LongBuffer.wrap(starts), LongBuffer.wrap(ends), IntBuffer.wrap(nameOffsets), pool.flip());
+    }
+
+    /**
+     * Name of the function whose address range contains the address.
+     * @param address the code address
+     * @return the function name, null if not found
+     */
+    public String find(long address) {
+        int low = 0;
+        int high = this.size() - 1;
+        // index of the last function starting at or before the address
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.starts.get(mid) <= address) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (index >= 0 && address < this.ends.get(index)) {
+            return this.getName(index);
+        }
+        return null;
+    }
+
+    private String getName(int index) {
+        int offset = this.nameOffsets.get(index);
+        var bytes = new byte[this.nameOffsets.get(index + 1) - offset];
+        this.names.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Number of functions.
+     */
+    public int size() {
+        return this.starts.limit();
+    }
+
+    /**
+     * Writes the index in the cache file format.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int size = this.size();
+        out.writeInt(size);
+        out.writeInt(this.names.limit());
+        ElfIndexCache.align(out);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(this.starts.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeLong(this.ends.get(i));
+        }
+        for (int i = 0; i <= size; i++) {
+            out.writeInt(this.nameOffsets.get(i));
+        }
+        for (int i = 0; i < this.names.limit(); i++) {
+            out.writeByte(this.names.get(i));
+        }
+        ElfIndexCache.align(out);
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}, the index is backed by the buffer.
+     */
+    static FunctionIndex readFrom(ByteBuffer in) {
+        int size = in.getInt();
+        int namesLength = in.getInt();
+        ElfIndexCache.align(in);
+        var starts = ElfIndexCache.slice(in, size * 8).asLongBuffer();
+        var ends = ElfIndexCache.slice(in, size * 8).asLongBuffer();
+        var nameOffsets = ElfIndexCache.slice(in, (size + 1) * 4).asIntBuffer();
+        var names = ElfIndexCache.slice(in, namesLength);
+        ElfIndexCache.align(in);
+        return new FunctionIndex(starts, ends, nameOffsets, names);
+    }
+}
@@ -0,0 +1,84 @@
+package tracing.backend.source.elf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Interval index over the object symbols (variables), finds the symbol that contains an address, e.g. a struct field or
+ * array element, by binary search.
+ * <p>
+ * The symbols are sorted by start address, of symbols with the same start address the largest first. Besides the end of
+ * every symbol, the maximum end of all symbols up to it is kept, so a lookup only walks back over symbols that still
+ * reach the address (nested or overlapping symbols), usually none.
+ */
+public class SymbolIndex {
+
+    private final Symbol[] symbols;
+    // start addresses, sorted
+    private final long[] starts;
+    // end addresses, exclusive
+    private final long[] ends;
+    // maximum end address of the symbols up to each index
+    private final long[] maxEnds;
+
+    /**
+     * Creates an index.
+     * @param symbols the object symbols
+     */
+    public SymbolIndex(Collection<Symbol> symbols) {
+        var sorted = new ArrayList<>(symbols);
+        sorted.sort(Comparator.comparingLong(Symbol::getAddress)
+                .thenComparing(Comparator.comparingLong(Symbol::getSize).reversed()));
+
+        this.symbols = sorted.toArray(new Symbol[0]);
+        this.starts = new long[this.symbols.length];
+        this.ends = new long[this.symbols.length];
+        this.maxEnds = new long[this.symbols.length];
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < this.symbols.length; i++) {
+            var symbol = this.symbols[i];
+            this.starts[i] = symbol.getAddress();
+            // symbols without size only match their address
+            this.ends[i] = symbol.getAddress() + Math.max(1, symbol.getSize());
+            maxEnd = Math.max(maxEnd, this.ends[i]);
+            this.maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * Finds the innermost symbol that contains the address.
+     * @param address the address
+     * @return the symbol, null if no symbol contains the address
+     */
+    public Symbol find(long address) {
+        int low = 0;
+        int high = this.starts.length - 1;
+        // index of the last symbol starting at or before the address
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.starts[mid] <= address) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // walk back while earlier symbols may still reach the address
+        for (int i = index; i >= 0 && this.maxEnds[i] > address; i--) {
+            if (address < this.ends[i]) {
+                return this.symbols[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of symbols.
+     */
+    public int size() {
+        return this.symbols.length;
+    }
+}
@@ -7,17 +7,41 @@ import com.hivemq.embedded.EmbeddedHiveMQBuilder;
 import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
 import com.hivemq.migration.meta.PersistenceType;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Embedded MQTT broker (server).
  */
 public class MQTTBroker {
 
+    public static final int DEFAULT_MAX_QUEUED_MESSAGES = 1000;
+
+    /**
+     * Where the broker keeps messages, sessions and queues.
+     */
+    public enum Profile {
+        FILE, // on disk, survives broker restarts
+        MEMORY // in memory only, for high trace rates
+    }
+
     private final EmbeddedHiveMQ hiveMQ;
     private final PublishInboundInterceptorExtension publishInboundInterceptorExtension;
 
     public MQTTBroker() {
+        this(Profile.FILE, DEFAULT_MAX_QUEUED_MESSAGES);
+    }
+
+    /**
+     * Creates the broker with the given persistence profile.
+     * @param profile where the broker keeps its state
+     * @param maxQueuedMessages maximum number of messages queued per client, used by the memory profile
+     * @throws UncheckedIOException if the configuration of the memory profile cannot be written
+     */
+    public MQTTBroker(Profile profile, int maxQueuedMessages) {
 
         final EmbeddedHiveMQBuilder embeddedHiveMQBuilder = EmbeddedHiveMQ.builder();
 
@@ -35,10 +59,65 @@ public class MQTTBroker {
 
         embeddedHiveMQBuilder.withEmbeddedExtension(embeddedExtension);
 
+        if (profile == Profile.MEMORY) {
+            embeddedHiveMQBuilder.withConfigurationFolder(writeMemoryConfig(maxQueuedMessages));
+        }
+
         hiveMQ = embeddedHiveMQBuilder.build();
 
-        InternalConfigurations.PAYLOAD_PERSISTENCE_TYPE.set(PersistenceType.FILE);
-        InternalConfigurations.RETAINED_MESSAGE_PERSISTENCE_TYPE.set(PersistenceType.FILE);
+        if (profile == Profile.FILE) {
+            InternalConfigurations.PAYLOAD_PERSISTENCE_TYPE.set(PersistenceType.FILE);
+            InternalConfigurations.RETAINED_MESSAGE_PERSISTENCE_TYPE.set(PersistenceType.FILE);
+        }
+    }
+
+    /**
+     * Writes the configuration of the memory profile to a temporary folder, deleted when the server exits.
+     * @param maxQueuedMessages maximum number of messages queued per client
+     * @return the configuration folder
+     * @throws UncheckedIOException if the configuration cannot be written, the broker must not fall back to the disk
+     *     profile silently
+     */
+    private static Path writeMemoryConfig(int maxQueuedMessages) {
+        try {
+            var configFolder = Files.createTempDirectory("hivemq-config");
+            configFolder.toFile().deleteOnExit();
+            var configFile = configFolder.resolve("config.xml");
+            // registered after the folder, so it is deleted before the folder
+            configFile.toFile().deleteOnExit();
+            Files.writeString(configFile, memoryConfig(maxQueuedMessages));
+            return configFolder;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the broker configuration of the memory profile", e);
+        }
+    }
+
+    /**
+     * HiveMQ configuration that keeps all persistent data in memory and bounds the number of queued messages per
+     * client, discarding the oldest when the queue is full. Sessions and queued config/ready messages are still kept
+     * for the lifetime of the broker, which is the lifetime of the server.
+     * @param maxQueuedMessages maximum number of messages queued per client
+     * @return the content of config.xml
+     */
+    private static String memoryConfig(int maxQueuedMessages) {
+        return "<?xml version=\"1.0\"?>\n"
+                + "<hivemq>\n"
+                + "    <listeners>\n"
+                + "        <tcp-listener>\n"
+                + "            <port>1883</port>\n"
+                + "            <bind-address>0.0.0.0</bind-address>\n"
+                + "        </tcp-listener>\n"
+                + "    </listeners>\n"
+                + "    <persistence>\n"
+                + "        <mode>in-memory</mode>\n"
+                + "    </persistence>\n"
+                + "    <mqtt>\n"
+                + "        <queued-messages>\n"
+                + "            <max-queue-size>" + maxQueuedMessages + "</max-queue-size>\n"
+                + "            <strategy>discard-oldest</strategy>\n"
+                + "        </queued-messages>\n"
+                + "    </mqtt>\n"
+                + "</hivemq>\n";
     }
 
     public void start() {
@@ -10,12 +10,10 @@ import tracing.backend.configuration.JsonTargetProvider;
 import tracing.backend.configuration.TargetProvider;
 import tracing.backend.metrics.Metrics;
 import tracing.backend.output.TraceOutput;
+import tracing.backend.source.TraceReceiver;
 import tracing.backend.source.TraceSource;
-import tracing.backend.trace.TraceEvent;
-import tracing.backend.trace.TracePacket;
 
 import java.net.InetAddress;
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 /**
@@ -27,9 +25,11 @@ public class MQTTSource implements TraceSource {
     public static final String READY_TOPIC = "ready";
     private static final String TRACE_TOPIC = "trace";
 
-    private final MQTTBroker mqttBroker = new MQTTBroker();
+    private final MQTTBroker mqttBroker;
     private Mqtt5AsyncClient mqttClient;
     private final Gson gson = new Gson();
+    // decodes trace payloads outside of the broker threads
+    private TraceReceiver traceReceiver;
 
     private final JsonTargetProvider configLoader;
     private TraceOutput traceOutput;
@@ -38,11 +38,17 @@ public class MQTTSource implements TraceSource {
         this.traceOutput = traceOutput;
         // load json config
         this.configLoader = JsonTargetProvider.getInstance();
+
+        var config = this.configLoader.getConfig();
+        System.out.println("Broker profile: " + config.getBrokerProfile().name().toLowerCase());
+        this.mqttBroker = new MQTTBroker(config.getBrokerProfile(), config.getBrokerMaxQueuedMessages());
     }
 
     @Override
     public void init() {
 
+        this.traceReceiver = new TraceReceiver(this.configLoader.getTargets().size(), this.traceOutput);
+
         // start broker
         this.mqttBroker.setPublishListener(this::onPublish);
         this.mqttBroker.setDisconnectListener(this::onDisconnect);
@@ -92,22 +98,26 @@ public class MQTTSource implements TraceSource {
             var targetId = topic[1];
             if (message.getPayload().isPresent()) {
 
-                var data = StandardCharsets.UTF_8.decode(message.getPayload().get()).toString();
-                var tracePacket = gson.fromJson(data, TracePacket.class);
-
-                // put out raw trace packet for debugging etc.
-                this.traceOutput.putRaw(tracePacket);
-
                 // get target definition
                 var target = this.configLoader.getTarget(targetId);
-                // parse trace event from packet
-                var traceEvent = TraceEvent.from(target, tracePacket);
+                if (target == null) {
+                    System.err.println("Trace packet from unknown target " + targetId);
+                    return;
+                }
+                if (!target.isConnected()) {
+                    // traffic resumed after a disconnect, before the ready message of the reconnected observer
+                    target.setConnected(true);
+                }
 
-                Metrics.markInputEvent(targetId, traceEvent.uuid);
-                Metrics.updateQueueSize(targetId, target.getTraceQueue().size());
+                // only copy the payload on the broker thread, decode on the lane of the target
+                var payload = message.getPayload().get();
+                var data = new byte[payload.remaining()];
+                payload.duplicate().get(data);
 
-                // add trace event to output queue
-                target.getTraceQueue().add(traceEvent);
+                // never block the broker thread for a target that is behind, the sequence gap marks the loss
+                if (!this.traceReceiver.offer(target, data)) {
+                    System.err.println("Trace payload of " + targetId + " discarded: decode queue is full");
+                }
             }
 
         } else if (topic[0].equals(READY_TOPIC)) { // ready notification
@@ -118,6 +128,7 @@ public class MQTTSource implements TraceSource {
                 Metrics.registerInputQueue(targetId, d.getTraceQueue());
 
                 d.setReady(true);
+                d.setConnected(true);
                 if (host != null) {
                     d.setHost(host.getHostName());
                 }
@@ -141,6 +152,7 @@ public class MQTTSource implements TraceSource {
     private void onDisconnect(String host) {
         this.configLoader.getTargets().stream().filter(device -> device.getHost().equals(host)).findAny().ifPresent(target -> {
             target.setReady(false);
+            target.setConnected(false);
             System.out.println("Target " + target.getTargetId() + " disconnected.");
         });
     }
@@ -148,6 +160,7 @@ public class MQTTSource implements TraceSource {
     @Override
     public void close() {
         this.mqttClient.disconnect();
+        this.traceReceiver.close();
     }
 
     @Override
@@ -0,0 +1,179 @@
+package tracing.backend.source.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer single-consumer ring buffer in a memory-mapped file, shared with the observer of one target.
+ * The server creates the file and consumes records, the observer maps it and produces records.
+ * <p>
+ * Layout (native byte order, must match with the observer):
+ * <pre>
+ *   0: magic (int), version (int), capacity of the data region (int), generation (int), incremented by every reset
+ *  64: write position (long), bytes ever written, only changed by the observer
+ * 128: read position (long), bytes ever read, only changed by the server
+ * 192: state of the observer (int): 0 not ready, 1 ready, 2 closed
+ * 196: length of the config (int), 0 until the server wrote the config
+ * 256: config as JSON
+ * DATA_OFFSET: data region
+ * </pre>
+ * Every record is its length (int) followed by the payload, padded to 8 bytes. A record never wraps around the end of
+ * the data region, a length of -1 marks that the rest of the region is skipped. Positions are published with
+ * release/acquire semantics, so the payload of a record is visible once its write position is.
+ * <p>
+ * When a restarted server resets the ring, the observer notices the new generation on its next write. It may have
+ * published a stale write position meanwhile, so it starts over at position 0 and marks itself as ready again; the
+ * server does not read the ring before.
+ */
+public class SharedMemoryRing {
+
+    public static final int MAGIC = 0x54524331;
+    public static final int VERSION = 2;
+
+    public static final int STATE_NOT_READY = 0;
+    public static final int STATE_READY = 1;
+    public static final int STATE_CLOSED = 2;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int GENERATION_OFFSET = 12;
+    private static final int WRITE_OFFSET = 64;
+    private static final int READ_OFFSET = 128;
+    private static final int STATE_OFFSET = 192;
+    private static final int CONFIG_LENGTH_OFFSET = 196;
+    private static final int CONFIG_OFFSET = 256;
+    private static final int CONFIG_CAPACITY = 64 * 1024;
+    private static final int DATA_OFFSET = CONFIG_OFFSET + CONFIG_CAPACITY;
+    private static final int PADDING = -1;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // read position, only changed by the consumer
+    private long readPosition;
+    // size of the record returned by the last peek, 0 if none
+    private int pending;
+
+    private SharedMemoryRing(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates the ring file or resets an existing one. An observer that already mapped the file sees the reset.
+     * @param path path of the ring file
+     * @param capacity size of the data region in bytes, a power of two
+     * @return the ring
+     */
+    public static SharedMemoryRing create(Path path, int capacity) throws IOException {
+        if (Integer.bitCount(capacity) != 1 || capacity < 4096) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two >= 4096: " + capacity);
+        }
+        path.getParent().toFile().mkdirs();
+
+        MappedByteBuffer buffer;
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() != DATA_OFFSET + capacity) {
+                file.setLength(DATA_OFFSET + capacity);
+            }
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        // 0 for a new file
+        int generation = buffer.getInt(GENERATION_OFFSET) + 1;
+
+        INT.setVolatile(buffer, 0, 0);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        LONG.setVolatile(buffer, WRITE_OFFSET, 0L);
+        LONG.setVolatile(buffer, READ_OFFSET, 0L);
+        INT.setVolatile(buffer, STATE_OFFSET, STATE_NOT_READY);
+        INT.setVolatile(buffer, CONFIG_LENGTH_OFFSET, 0);
+        // an observer that mapped the ring before sees the reset on its next write
+        INT.setRelease(buffer, GENERATION_OFFSET, generation);
+        // the observer waits for the magic before it uses the ring
+        INT.setRelease(buffer, 0, MAGIC);
+
+        return new SharedMemoryRing(buffer, capacity);
+    }
+
+    public int getGeneration() {
+        return (int) INT.getAcquire(this.buffer, GENERATION_OFFSET);
+    }
+
+    public int getState() {
+        return (int) INT.getAcquire(this.buffer, STATE_OFFSET);
+    }
+
+    /**
+     * Writes the config for the observer.
+     * @param config the config as JSON
+     */
+    public void writeConfig(byte[] config) {
+        if (config.length > CONFIG_CAPACITY) {
+            throw new IllegalArgumentException("Config too large for the shared memory ring: " + config.length);
+        }
+        this.buffer.duplicate().position(CONFIG_OFFSET).put(config);
+        INT.setRelease(this.buffer, CONFIG_LENGTH_OFFSET, config.length);
+    }
+
+    /**
+     * Returns the payload of the next record without consuming it. The payload is valid until {@link #advance()}.
+     * @return the payload (a view of the mapped file), null if the ring is empty
+     */
+    public ByteBuffer peek() {
+        while (true) {
+            long writePosition = (long) LONG.getAcquire(this.buffer, WRITE_OFFSET);
+            if (this.readPosition == writePosition) {
+                return null;
+            }
+
+            int offset = (int) (this.readPosition & (this.capacity - 1));
+            int length = this.buffer.getInt(DATA_OFFSET + offset);
+            if (length == PADDING) {
+                // skip to the start of the data region
+                this.readPosition += this.capacity - offset;
+                LONG.setRelease(this.buffer, READ_OFFSET, this.readPosition);
+                continue;
+            }
+
+            var payload = this.buffer.duplicate();
+            payload.position(DATA_OFFSET + offset + 4);
+            payload.limit(DATA_OFFSET + offset + 4 + length);
+            this.pending = (4 + length + 7) & ~7;
+            return payload.slice();
+        }
+    }
+
+    /**
+     * Consumes the record returned by the last {@link #peek()}, the observer may then overwrite it.
+     */
+    public void advance() {
+        this.readPosition += this.pending;
+        this.pending = 0;
+        LONG.setRelease(this.buffer, READ_OFFSET, this.readPosition);
+    }
+
+    /**
+     * Waits a bit while a ring is empty, spinning first and parking after a while.
+     * @param idleCount number of times the caller found the ring empty in a row
+     */
+    static void idle(int idleCount) {
+        if (idleCount < 100) {
+            Thread.onSpinWait();
+        } else if (idleCount < 1000) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+}
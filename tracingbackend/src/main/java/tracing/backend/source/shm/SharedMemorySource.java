@@ -0,0 +1,182 @@
+package tracing.backend.source.shm;
+
+import com.google.gson.Gson;
+import tracing.backend.Target;
+import tracing.backend.configuration.Config;
+import tracing.backend.configuration.JsonTargetProvider;
+import tracing.backend.configuration.TargetProvider;
+import tracing.backend.metrics.Metrics;
+import tracing.backend.output.TraceOutput;
+import tracing.backend.source.TraceReceiver;
+import tracing.backend.source.TraceSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TraceSource for observers running on the same machine, exchanges trace payloads through a memory-mapped ring file
+ * per target ({@link SharedMemoryRing}) instead of the network.
+ * Uses the same JSON configuration file as the MQTTSource to provide target definitions.
+ * <p>
+ * The source creates the ring files on init, one reader thread per target decodes the records in place, without
+ * copying them. The handshake is the same as over MQTT: an observer marks its ring as ready, as soon as all targets
+ * are ready the server writes the configs into the rings.
+ */
+public class SharedMemorySource implements TraceSource {
+
+    public static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "tracing");
+    public static final int DEFAULT_RING_SIZE = 8 * 1024 * 1024;
+
+    private final Gson gson = new Gson();
+    private final JsonTargetProvider configLoader;
+    private final TraceOutput traceOutput;
+    private TraceReceiver traceReceiver;
+
+    // ring of every target
+    private final Map<String, SharedMemoryRing> rings = new HashMap<>();
+    private final List<Thread> readers = new ArrayList<>();
+    // configs sent, tracing started?
+    private boolean started = false;
+    private volatile boolean running = true;
+
+    public SharedMemorySource(TraceOutput traceOutput) {
+        this.traceOutput = traceOutput;
+        // load json config
+        this.configLoader = JsonTargetProvider.getInstance();
+    }
+
+    /**
+     * Path of the ring file of a target, the observer maps the same file.
+     * @param directory directory of the ring files
+     * @param targetId name of the target
+     * @return the path
+     */
+    public static Path ringPath(Path directory, String targetId) {
+        return directory.resolve(targetId + ".ring");
+    }
+
+    @Override
+    public void init() {
+        var config = this.configLoader.getConfig();
+        this.traceReceiver = new TraceReceiver(this.configLoader.getTargets().size(), this.traceOutput);
+
+        for (var target : this.configLoader.getTargets()) {
+            var path = ringPath(config.getShmDirectory(), target.getTargetId());
+            try {
+                this.rings.put(target.getTargetId(), SharedMemoryRing.create(path, config.getShmRingSize()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create shared memory ring " + path, e);
+            }
+        }
+
+        for (var target : this.configLoader.getTargets()) {
+            var reader = new Thread(() -> this.read(target), "shm-" + target.getTargetId());
+            reader.start();
+            this.readers.add(reader);
+        }
+
+        System.out.println("Waiting for " + configLoader.getTargetConfigs().size() + " targets to connect to shared memory in " + config.getShmDirectory() + "...");
+    }
+
+    /**
+     * Reader loop of a target, follows the state of the observer and decodes its records until the source is closed.
+     * @param target the target
+     */
+    private void read(Target target) {
+        var ring = this.rings.get(target.getTargetId());
+        int state = SharedMemoryRing.STATE_NOT_READY;
+        int idleCount = 0;
+
+        while (this.running) {
+            var newState = ring.getState();
+            if (newState != state) {
+                state = newState;
+                if (state == SharedMemoryRing.STATE_READY) {
+                    this.onReady(target);
+                } else if (state == SharedMemoryRing.STATE_CLOSED) {
+                    target.setReady(false);
+                    target.setConnected(false);
+                    System.out.println("Target " + target.getTargetId() + " disconnected.");
+                }
+            }
+
+            if (state == SharedMemoryRing.STATE_NOT_READY) {
+                // an observer that did not see the reset of the ring yet may still publish a stale write position
+                SharedMemoryRing.idle(idleCount++);
+                continue;
+            }
+
+            var payload = ring.peek();
+            if (payload == null) {
+                SharedMemoryRing.idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            this.traceReceiver.decode(target, payload);
+            ring.advance();
+        }
+    }
+
+    /**
+     * Called when an observer is ready, writes the configs as soon as all targets are ready.
+     * @param target the target
+     */
+    private synchronized void onReady(Target target) {
+        Metrics.registerInputQueue(target.getTargetId(), target.getTraceQueue());
+
+        target.setReady(true);
+        target.setConnected(true);
+        target.setHost("localhost");
+
+        if (this.started) {
+            // restarted observer, tracing already runs
+            System.out.println("Target " + target.getTargetId() + " reconnected.");
+            return;
+        }
+
+        var readyCnt = this.configLoader.getTargets().stream().filter(Target::isReady).count();
+        if (readyCnt == this.configLoader.getTargets().size()) {
+            System.out.println("All targets are ready, go!");
+            this.started = true;
+            this.sendClientConfigs();
+            Metrics.startReport();
+        } else {
+            System.out.println(readyCnt + " targets are ready, waiting for " + (this.configLoader.getTargets().size() - readyCnt) + " more...");
+        }
+    }
+
+    /**
+     * Writes the client configs into the rings of the observers.
+     */
+    private void sendClientConfigs() {
+        System.out.println("Sending configs to targets: " + configLoader.getTargetConfigs().toString());
+
+        for (Config.TargetConfig targetConfig : this.configLoader.getTargetConfigs()) {
+            var payload = this.gson.toJson(targetConfig).getBytes(StandardCharsets.UTF_8);
+            this.rings.get(targetConfig.getName()).writeConfig(payload);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        for (var reader : this.readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.traceReceiver.close();
+    }
+
+    @Override
+    public TargetProvider getTargetProvider() {
+        return this.configLoader;
+    }
+}
@@ -4,6 +4,7 @@ import tracing.backend.Target;
 import tracing.backend.metrics.Metrics;
 import tracing.backend.trace.InternalEvent;
 import tracing.backend.trace.MessageEvent;
+import tracing.backend.trace.TraceEvent;
 import tracing.backend.trace.TracePacket;
 
 import java.util.List;
@@ -46,14 +47,10 @@ public class TargetSimulation implements Runnable {
                     r.setTimestamp(System.currentTimeMillis());
 
                     var receiveEvent = new MessageEvent(target, r);
-                    this.target.getTraceQueue().add(receiveEvent);
 
-                    Metrics.markInputEvent(target.getTargetId(), receiveEvent.uuid);
-                    Metrics.updateQueueSize(target.getTargetId(), target.getTraceQueue().size());
-
-                    // decide if immediate reply should be sent
+                    // decide if immediate reply should be sent, only to traced messages
                     var reply = rand(0, 3);
-                    if (reply == 1) {
+                    if (this.trace(receiveEvent) && reply == 1) {
                         this.sendMessageTo(msg.sender);
                     }
                 }
@@ -68,11 +65,7 @@ public class TargetSimulation implements Runnable {
                     }
 
                 } else { // local action
-                    var event = new InternalEvent(this.target, System.currentTimeMillis());
-                    this.target.getTraceQueue().add(event);
-
-                    Metrics.markInputEvent(target.getTargetId(), event.uuid);
-                    Metrics.updateQueueSize(target.getTargetId(), target.getTraceQueue().size());
+                    this.trace(new InternalEvent(this.target, System.currentTimeMillis()));
                 }
 
                 // wait random time
@@ -106,13 +99,23 @@ public class TargetSimulation implements Runnable {
         r.setMessageId(id);
         r.setTimestamp(System.currentTimeMillis());
 
-        var sendEvent = new MessageEvent(target, r);
-        this.target.getTraceQueue().add(sendEvent);
+        // a message whose send event was not traced is not sent, its receive event could never be scheduled
+        if (this.trace(new MessageEvent(target, r))) {
+            receiver.receiveMessage(new Message(this, id));
+        }
+    }
+
+    /**
+     * Adds an event to the trace queue of the target.
+     * @param event the event
+     * @return false if the queue rejected the event or the simulation was interrupted while waiting for space
+     */
+    private boolean trace(TraceEvent event) {
+        Metrics.markInputEvent(target.getTargetId(), event);
+        var added = this.target.getTraceQueue().add(event);
 
-        Metrics.markInputEvent(target.getTargetId(), sendEvent.uuid);
         Metrics.updateQueueSize(target.getTargetId(), target.getTraceQueue().size());
-
-        receiver.receiveMessage(new Message(this, id));
+        return added;
     }
 
     /**
@@ -0,0 +1,411 @@
+package tracing.backend.source.tcp;
+
+import com.google.gson.Gson;
+import tracing.backend.Target;
+import tracing.backend.configuration.Config;
+import tracing.backend.configuration.JsonTargetProvider;
+import tracing.backend.configuration.TargetProvider;
+import tracing.backend.metrics.Metrics;
+import tracing.backend.output.TraceOutput;
+import tracing.backend.source.TraceReceiver;
+import tracing.backend.source.TraceSource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TraceSource that communicates with observers over plain TCP connections, without a broker.
+ * Uses the same JSON configuration file as the MQTTSource to provide target definitions.
+ * <p>
+ * All connections are served by a single thread using a selector. Messages are sent as frames: the length of the rest
+ * of the frame (4 bytes, big endian), the frame kind (1 byte) and the payload. The handshake is the same as over MQTT:
+ * an observer sends a ready frame with its name, as soon as all targets are ready the server sends every observer its
+ * config, then the observers send trace frames with the same payload as the trace messages over MQTT.
+ * <p>
+ * Trace payloads are decoded on the lanes of the {@link TraceReceiver}, the selector thread never waits for them. If
+ * the payload queue of a target is full, only the connection of that target stops reading until the queue has room
+ * again, TCP flow control then slows down that observer.
+ */
+public class TCPSource implements TraceSource {
+
+    public static final int DEFAULT_PORT = 1885;
+
+    // frame kinds, must match with the observer
+    public static final byte FRAME_READY = 1;
+    public static final byte FRAME_CONFIG = 2;
+    public static final byte FRAME_TRACE = 3;
+    public static final byte FRAME_INFO = 4;
+    // upper bound for the length of a frame, longer frames are considered corrupt
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Gson gson = new Gson();
+    private final JsonTargetProvider configLoader;
+    private final TraceOutput traceOutput;
+    private final int port;
+    // decodes trace payloads outside of the selector thread
+    private TraceReceiver traceReceiver;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    // connection of every ready target, only accessed by the selector thread
+    private final Map<String, Connection> connections = new HashMap<>();
+    // configs sent, tracing started?
+    private boolean started = false;
+    private volatile boolean running = true;
+    // targets whose payload queue has room again, added by the decode lanes
+    private final ConcurrentLinkedQueue<Target> resumable = new ConcurrentLinkedQueue<>();
+
+    public TCPSource(TraceOutput traceOutput) {
+        // load json config
+        this(traceOutput, JsonTargetProvider.getInstance());
+    }
+
+    TCPSource(TraceOutput traceOutput, JsonTargetProvider configLoader) {
+        this.traceOutput = traceOutput;
+        this.configLoader = configLoader;
+        this.port = this.configLoader.getConfig().getTcpPort();
+    }
+
+    @Override
+    public void init() {
+        this.traceReceiver = new TraceReceiver(this.configLoader.getTargets().size(), this.traceOutput, target -> {
+            this.resumable.add(target);
+            this.selector.wakeup();
+        });
+
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.bind(new InetSocketAddress(this.port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot listen on TCP port " + this.port, e);
+        }
+
+        this.selectorThread = new Thread(this::serve, "tcp-source");
+        this.selectorThread.start();
+
+        System.out.println("Waiting for " + configLoader.getTargetConfigs().size() + " targets to connect on TCP port " + this.port + "...");
+    }
+
+    /**
+     * Selector loop, accepts connections and reads and writes frames until the source is closed.
+     */
+    private void serve() {
+        while (this.running) {
+            try {
+                this.selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                break;
+            }
+            this.resume();
+
+            var keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                var key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        this.accept();
+                    } else {
+                        if (key.isReadable()) {
+                            this.read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.flush(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Connection error: " + e.getMessage());
+                    this.disconnect(key);
+                }
+            }
+        }
+
+        for (var key : this.selector.keys()) {
+            this.disconnect(key);
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void accept() throws IOException {
+        var channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(this.selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Reads from a connection and handles all complete frames.
+     * @param key key of the connection
+     */
+    private void read(SelectionKey key) throws IOException {
+        var connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            this.disconnect(key);
+            return;
+        }
+        this.handleFrames(key, connection);
+    }
+
+    /**
+     * Handles the complete frames received from a connection, until the connection is paused.
+     * @param key key of the connection
+     * @param connection the connection
+     */
+    private void handleFrames(SelectionKey key, Connection connection) throws IOException {
+        var in = connection.in;
+        in.flip();
+        while (in.remaining() >= 4 && connection.paused == null) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > MAX_FRAME_LENGTH) {
+                System.err.println("Invalid frame length " + length + ", closing connection.");
+                this.disconnect(key);
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                break; // incomplete frame
+            }
+            in.getInt();
+            var kind = in.get();
+            var payload = new byte[length - 1];
+            in.get(payload);
+            this.onFrame(key, connection, kind, payload);
+            if (!key.isValid()) {
+                return;
+            }
+        }
+
+        // keep the rest of an incomplete frame, grow the buffer if the frame does not fit
+        if (in.remaining() >= 4 && in.getInt(in.position()) + 4 > in.capacity()) {
+            var larger = ByteBuffer.allocate(in.getInt(in.position()) + 4);
+            larger.put(in);
+            connection.in = larger;
+        } else {
+            in.compact();
+        }
+    }
+
+    /**
+     * Called for every frame received from an observer.
+     * @param key key of the connection
+     * @param connection the connection
+     * @param kind kind of the frame
+     * @param payload payload of the frame
+     */
+    private void onFrame(SelectionKey key, Connection connection, byte kind, byte[] payload) throws IOException {
+        switch (kind) {
+            case FRAME_TRACE:
+                if (connection.target == null) {
+                    System.err.println("Trace frame before ready frame, ignored.");
+                    return;
+                }
+                if (!this.traceReceiver.offer(connection.target, payload)) {
+                    // the target is behind, stop reading from its observer until its payload queue has room again
+                    connection.paused = payload;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                break;
+            case FRAME_READY:
+                this.onReady(key, connection, new String(payload, StandardCharsets.UTF_8));
+                break;
+            case FRAME_INFO:
+                System.err.println("ITM_OVERFLOW");
+                break;
+            default:
+                System.err.println("Unknown frame kind " + kind + ", ignored.");
+        }
+    }
+
+    /**
+     * Called when an observer is ready, sends the configs as soon as all targets are ready.
+     * @param key key of the connection
+     * @param connection the connection
+     * @param targetId name of the target
+     */
+    private void onReady(SelectionKey key, Connection connection, String targetId) throws IOException {
+        if (!this.configLoader.hasTarget(targetId)) {
+            System.err.println("Ready notification from unknown target " + targetId);
+            return;
+        }
+        var target = this.configLoader.getTarget(targetId);
+        connection.target = target;
+        this.connections.put(targetId, connection);
+
+        Metrics.registerInputQueue(targetId, target.getTraceQueue());
+
+        target.setReady(true);
+        target.setConnected(true);
+        target.setHost(((InetSocketAddress) connection.channel.getRemoteAddress()).getHostString());
+
+        if (this.started) {
+            // reconnected observer, tracing already runs
+            System.out.println("Target " + targetId + " reconnected.");
+            this.sendClientConfigs(key.selector(), targetId);
+            return;
+        }
+
+        var readyCnt = this.configLoader.getTargets().stream().filter(Target::isReady).count();
+        if (readyCnt == this.configLoader.getTargets().size()) {
+            System.out.println("All targets are ready, go!");
+            this.started = true;
+            this.sendClientConfigs(key.selector(), null);
+            Metrics.startReport();
+        } else {
+            System.out.println(readyCnt + " targets are ready, waiting for " + (this.configLoader.getTargets().size() - readyCnt) + " more...");
+        }
+    }
+
+    /**
+     * Hands the refused payloads of paused connections to the receiver again and resumes reading from the
+     * connections whose targets have room again.
+     */
+    private void resume() {
+        Target target;
+        while ((target = this.resumable.poll()) != null) {
+            var connection = this.connections.get(target.getTargetId());
+            if (connection == null || connection.paused == null) {
+                continue;
+            }
+            var key = connection.channel.keyFor(this.selector);
+            if (key == null || !key.isValid() || !this.traceReceiver.offer(target, connection.paused)) {
+                continue; // still full, notified again when there is room
+            }
+            connection.paused = null;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            try {
+                // frames received before the connection was paused
+                this.handleFrames(key, connection);
+            } catch (IOException e) {
+                System.err.println("Connection error: " + e.getMessage());
+                this.disconnect(key);
+            }
+        }
+    }
+
+    /**
+     * Sends the client configs to observers.
+     * @param selector the selector
+     * @param targetId target to send the config to, null for all targets
+     */
+    private void sendClientConfigs(Selector selector, String targetId) {
+        System.out.println("Sending configs to targets: " + configLoader.getTargetConfigs().toString());
+
+        for (Config.TargetConfig targetConfig : this.configLoader.getTargetConfigs()) {
+            if (targetId != null && !targetId.equals(targetConfig.getName())) {
+                continue;
+            }
+            var connection = this.connections.get(targetConfig.getName());
+            if (connection == null) {
+                continue;
+            }
+
+            var payload = this.gson.toJson(targetConfig).getBytes(StandardCharsets.UTF_8);
+            var frame = ByteBuffer.allocate(5 + payload.length);
+            frame.putInt(1 + payload.length).put(FRAME_CONFIG).put(payload).flip();
+            connection.out.add(frame);
+            var key = connection.channel.keyFor(selector);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes pending frames of a connection.
+     * @param key key of the connection
+     */
+    private void flush(SelectionKey key) throws IOException {
+        var connection = (Connection) key.attachment();
+        while (!connection.out.isEmpty()) {
+            var frame = connection.out.peek();
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                return; // socket buffer full, wait for the next write event
+            }
+            connection.out.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes a connection and marks its target as disconnected.
+     * @param key key of the connection
+     */
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (!(key.attachment() instanceof Connection)) {
+            return;
+        }
+        var target = ((Connection) key.attachment()).target;
+        if (target != null && this.connections.get(target.getTargetId()) == key.attachment()) {
+            this.connections.remove(target.getTargetId());
+            target.setReady(false);
+            target.setConnected(false);
+            System.out.println("Target " + target.getTargetId() + " disconnected.");
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.traceReceiver.close();
+    }
+
+    @Override
+    public TargetProvider getTargetProvider() {
+        return this.configLoader;
+    }
+
+    /**
+     * State of a connection to an observer.
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        // received bytes not handled yet
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // frames to send
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        // target of the observer, null until it sent its ready frame
+        private Target target;
+        // trace payload refused by the full payload queue of the target, no frames are read while set
+        private byte[] paused;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
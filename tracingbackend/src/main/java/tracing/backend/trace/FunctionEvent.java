@@ -17,10 +17,12 @@ public class FunctionEvent extends TraceEvent {
     // whether this is the enter or exit event
     private final Boolean isEnter;
 
-    // called function
+    // called function, resolved on first access
     private Function calleeFunction;
-    // calling function
+    private boolean calleeResolved = false;
+    // calling function, resolved on first access
     private Function callerFunction;
+    private boolean callerResolved = false;
 
     /**
      * Creates a new function event on the given target from the trace packet.
@@ -35,20 +37,46 @@ public class FunctionEvent extends TraceEvent {
         this.isEnter = (tracePacket.getSubType() == TracePacket.SUBTYPE_ENTER);
     }
 
+    /**
+     * The called function, resolved from the ELF file of the target on first access.
+     * @return the function, null if the target has no ELF file
+     */
     public Function getCalleeFunction() {
+        if (!calleeResolved) {
+            calleeFunction = resolveFunction(functionAddress);
+            calleeResolved = true;
+        }
         return calleeFunction;
     }
 
     public void setCalleeFunction(Function calleeFunction) {
         this.calleeFunction = calleeFunction;
+        this.calleeResolved = true;
     }
 
+    /**
+     * The calling function, resolved from the ELF file of the target on first access.
+     * @return the function, null if the target has no ELF file
+     */
     public Function getCallerFunction() {
+        if (!callerResolved) {
+            callerFunction = resolveFunction(callSiteAddress);
+            callerResolved = true;
+        }
         return callerFunction;
     }
 
+    /**
+     * Resolves an address, the parser caches the result per address.
+     */
+    private Function resolveFunction(long address) {
+        var elfParser = getTarget().getElfParser();
+        return elfParser != null ? elfParser.getFunction(address).orElse(null) : null;
+    }
+
     public void setCallerFunction(Function callerFunction) {
         this.callerFunction = callerFunction;
+        this.callerResolved = true;
     }
 
     public long getFunctionAddress() {
@@ -68,10 +96,13 @@ public class FunctionEvent extends TraceEvent {
         super.serialize(jsonMap);
         jsonMap.put("type", isEnter() ? "FUNCTION_ENTER" : "FUNCTION_EXIT");
         jsonMap.put("enter", isEnter());
-        jsonMap.put("function", getCalleeFunction().getName());
-        jsonMap.put("file", getCalleeFunction().getFile());
-        jsonMap.put("line", getCalleeFunction().getLineNumber());
-        jsonMap.put("address", getCalleeFunction().getAddress());
+        var callee = getCalleeFunction();
+        if (callee != null) {
+            jsonMap.put("function", callee.getName());
+            jsonMap.put("file", callee.getFile());
+            jsonMap.put("line", callee.getLineNumber());
+        }
+        jsonMap.put("address", getFunctionAddress());
     }
 
     @Override
@@ -80,8 +111,17 @@ public class FunctionEvent extends TraceEvent {
     }
 
     public String getString() {
-        var callee = calleeFunction.getFileAndLineNumber().split("/");
-        var caller = callerFunction.getFileAndLineNumber().split("/");
-        return (isEnter ? "ENTER " : "EXIT  ") + "function " + calleeFunction.getName() + " (" + callee[callee.length - 1] + "), called from " + callerFunction.getName() + " (" + caller[caller.length - 1] + ")";
+        return (isEnter ? "ENTER " : "EXIT  ") + "function " + describe(getCalleeFunction(), functionAddress) + ", called from " + describe(getCallerFunction(), callSiteAddress);
+    }
+
+    /**
+     * Name and file of the function, the address if it is not resolved.
+     */
+    private static String describe(Function function, long address) {
+        if (function == null) {
+            return String.format("0x%08x", address);
+        }
+        var file = function.getFileAndLineNumber().split("/");
+        return function.getName() + " (" + file[file.length - 1] + ")";
     }
 }
@@ -23,6 +23,8 @@ public class LogEvent extends TraceEvent {
             logMessage = tracePacket.getLogMessage();
         } else if (tracePacket.getI() == TracePacket.TYPE_OVERFLOW) {
             logMessage = "ITM_OVERFLOW";
+        } else if (tracePacket.getI() == TracePacket.TYPE_LOSS) {
+            logMessage = "PACKET_LOSS: " + tracePacket.getLogMessage();
         } else {
             logMessage = "";
         }
@@ -15,8 +15,9 @@ public class MemoryEvent extends TraceEvent {
     // whether this is a write or read
     private final boolean isWrite;
 
-    // the symbol at the address
+    // the symbol that contains the address, resolved on first access
     private Symbol symbol;
+    private boolean symbolResolved = false;
 
     /**
      * Creates a new memory event on the given target from the trace packet.
@@ -31,12 +32,33 @@ public class MemoryEvent extends TraceEvent {
         this.isWrite = (tracePacket.getSubType() == TracePacket.SUBTYPE_WRITE);
     }
 
+    /**
+     * The symbol that contains the address, resolved from the ELF file of the target on first access.
+     * @return the symbol, null if no symbol contains the address or the target has no ELF file
+     */
     public Symbol getSymbol() {
+        if (!symbolResolved) {
+            var elfParser = getTarget().getElfParser();
+            if (elfParser != null) {
+                symbol = elfParser.getSymbol(address).orElse(null);
+            }
+            symbolResolved = true;
+        }
         return symbol;
     }
 
     public void setSymbol(Symbol symbol) {
         this.symbol = symbol;
+        this.symbolResolved = true;
+    }
+
+    /**
+     * Offset of the address in the symbol, e.g. of a struct field or array element.
+     * @return the offset, 0 if the symbol is not resolved
+     */
+    public long getSymbolOffset() {
+        var symbol = getSymbol();
+        return symbol != null ? address - symbol.getAddress() : 0;
     }
 
     public long getAddress() {
@@ -56,9 +78,15 @@ public class MemoryEvent extends TraceEvent {
         super.serialize(jsonMap);
         jsonMap.put("type", isWrite() ? "MEMORY_WRITE" : "MEMORY_READ");
         jsonMap.put("write", isWrite());
-        jsonMap.put("variable", getSymbol().getName());
-        jsonMap.put("size", getSymbol().getSize());
-        jsonMap.put("address", getSymbol().getAddress());
+        if (getSymbol() != null) {
+            jsonMap.put("variable", getSymbol().getName());
+            jsonMap.put("size", getSymbol().getSize());
+            jsonMap.put("address", getSymbol().getAddress());
+            jsonMap.put("offset", getSymbolOffset());
+        } else {
+            // not resolved, no symbol contains the address
+            jsonMap.put("address", getAddress());
+        }
         jsonMap.put("value", getValue());
     }
 
@@ -68,6 +96,20 @@ public class MemoryEvent extends TraceEvent {
     }
 
     public String getString() {
-        return (isWrite ? "WRITE " : "READ  ") + "variable " + symbol.getName() + ": 0x" + String.format("%0" + symbol.getSize() * 2 + "x", value).toUpperCase();
+        var symbol = getSymbol();
+        String variable;
+        // digits of the value, the size of the variable if the whole variable is accessed, otherwise a word
+        long digits = 8;
+        if (symbol == null) {
+            variable = String.format("0x%08x", address);
+        } else if (getSymbolOffset() != 0) {
+            variable = symbol.getName() + "+" + getSymbolOffset();
+        } else {
+            variable = symbol.getName();
+            if (symbol.getSize() > 0 && symbol.getSize() <= 8) {
+                digits = symbol.getSize() * 2;
+            }
+        }
+        return (isWrite ? "WRITE " : "READ  ") + "variable " + variable + ": 0x" + String.format("%0" + digits + "x", value).toUpperCase();
     }
 }
@@ -1,17 +1,19 @@
 package tracing.backend.trace;
 
 import tracing.backend.Target;
-import tracing.backend.scheduler.vectorclock.VectorClock;
+import tracing.backend.scheduler.vectorclock.DenseVectorClock;
 
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Base class for all events.
  */
 public abstract class TraceEvent {
 
-    public final String uuid = UUID.randomUUID().toString();
+    // unique ID of the event, assigned when the event is created (see Target.nextEventId())
+    private final long id;
+    // time in ns when the event entered the server, 0 if not measured
+    private long ingestTime;
 
     // the target that the event happened on
     private final Target target;
@@ -23,7 +25,9 @@ public abstract class TraceEvent {
     private final Long localTimestamp;
 
     // vector clock value of this event
-    private VectorClock<String> vectorClock;
+    private DenseVectorClock vectorClock;
+    // hybrid logical clock value of this event, 0 if not set (see HybridLogicalClock)
+    private long hybridTimestamp;
     // global event ID
     private Long globalEventId;
 
@@ -37,6 +41,7 @@ public abstract class TraceEvent {
      * @param localTimestamp timestamp captured at observer
      */
     protected TraceEvent(Target target, EventType eventType, long localTimestamp) {
+        this.id = target.nextEventId();
         this.target = target;
         this.targetId = target.getTargetId();
         this.eventType = eventType;
@@ -61,12 +66,25 @@ public abstract class TraceEvent {
                 return new MessageEvent(target, tracePacket);
             case TracePacket.TYPE_LOG:
             case TracePacket.TYPE_OVERFLOW:
+            case TracePacket.TYPE_LOSS:
                 return new LogEvent(target, tracePacket);
             default:
                 throw new IllegalStateException("Unexpected value: " + tracePacket.getI());
         }
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public long getIngestTime() {
+        return ingestTime;
+    }
+
+    public void setIngestTime(long ingestTime) {
+        this.ingestTime = ingestTime;
+    }
+
     public EventType getEventType() {
         return eventType;
     }
@@ -83,14 +101,22 @@ public abstract class TraceEvent {
         return localTimestamp;
     }
 
-    public VectorClock<String> getVectorClock() {
+    public DenseVectorClock getVectorClock() {
         return vectorClock;
     }
 
-    public void setVectorClock(VectorClock<String> vectorClock) {
+    public void setVectorClock(DenseVectorClock vectorClock) {
         this.vectorClock = vectorClock;
     }
 
+    public long getHybridTimestamp() {
+        return hybridTimestamp;
+    }
+
+    public void setHybridTimestamp(long hybridTimestamp) {
+        this.hybridTimestamp = hybridTimestamp;
+    }
+
     public void setGlobalEventId(Long globalEventId) {
         this.globalEventId = globalEventId;
     }
@@ -100,10 +126,14 @@ public abstract class TraceEvent {
     }
 
     public void serialize(Map<String, Object> jsonMap) {
+        jsonMap.put("event_id", getId());
         jsonMap.put("targetId", getTargetId());
         if (getVectorClock() != null) {
             jsonMap.put("vector_clock", getVectorClock().toMap());
         }
+        if (getHybridTimestamp() != 0) {
+            jsonMap.put("hlc", getHybridTimestamp());
+        }
         jsonMap.put("timestamp", getLocalTimestamp());
     }
 
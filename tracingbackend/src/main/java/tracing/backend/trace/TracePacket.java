@@ -10,6 +10,8 @@ public class TracePacket {
     public static final transient int TYPE_MESSAGE = 2;
     public static final transient int TYPE_OVERFLOW = 3;
     public static final transient int TYPE_LOG = 4;
+    // created by the server when packets of a target were lost
+    public static final transient int TYPE_LOSS = 5;
 
     public static final transient int SUBTYPE_WRITE = 0;
     public static final transient int SUBTYPE_READ = 1;
@@ -42,6 +44,9 @@ public class TracePacket {
     // timestamp
     private Long t;
 
+    // sequence number, assigned by the observer transport
+    private Long s;
+
     public TracePacket() {}
 
     public Integer getI() {
@@ -100,6 +105,14 @@ public class TracePacket {
         this.t = t;
     }
 
+    public Long getS() {
+        return s;
+    }
+
+    public void setSequenceNumber(Long s) {
+        this.s = s;
+    }
+
     public String getM() {
         return m;
     }
@@ -128,6 +141,7 @@ public class TracePacket {
                 ", m='" + m + '\'' +
                 ", l='" + l + '\'' +
                 ", t=" + t +
+                ", s=" + s +
                 '}';
     }
 }
@@ -0,0 +1,143 @@
+package tracing.backend.trace;
+
+import com.google.gson.Gson;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Decodes trace packets sent by the observers, either in the compact binary format or as JSON.
+ * <p>
+ * A binary frame starts with the magic byte and the format version. Since version 2, the sequence number of the first
+ * packet follows as varint (0 if the packets are not numbered, the packets of a frame are numbered consecutively).
+ * Then one or more packets follow. Every packet
+ * consists of its type (0xFF if none, e.g. heartbeats), a byte with one bit per present field (j, f, c, a, v, m, l, t)
+ * and the present fields in this order. Numbers are varints, memory values and timestamps zigzag-encoded varints,
+ * strings a varint length followed by UTF-8 bytes. The timestamp is stored as difference to the timestamp of the
+ * previous packet in the frame. Payloads that do not start with the magic byte are parsed as JSON, which the
+ * observers send for debugging, either a single packet object or an array of packets.
+ */
+public class TracePacketDecoder {
+
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte VERSION = 2;
+
+    private static final int NO_TYPE = 0xFF;
+
+    private static final int FIELD_J = 1;
+    private static final int FIELD_F = 1 << 1;
+    private static final int FIELD_C = 1 << 2;
+    private static final int FIELD_A = 1 << 3;
+    private static final int FIELD_V = 1 << 4;
+    private static final int FIELD_M = 1 << 5;
+    private static final int FIELD_L = 1 << 6;
+    private static final int FIELD_T = 1 << 7;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Decodes all packets of the payload. The payload is read in place, its position is not changed.
+     * @param payload binary frame or JSON
+     * @param consumer called for every decoded packet
+     * @throws IllegalArgumentException if the payload is malformed or of an unknown version
+     */
+    public void decode(ByteBuffer payload, Consumer<TracePacket> consumer) {
+        var buffer = payload.duplicate();
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+
+        if (buffer.get(buffer.position()) != MAGIC) {
+            var json = StandardCharsets.UTF_8.decode(buffer).toString().strip();
+            if (json.startsWith("[")) {
+                for (var packet : this.gson.fromJson(json, TracePacket[].class)) {
+                    consumer.accept(packet);
+                }
+            } else {
+                consumer.accept(this.gson.fromJson(json, TracePacket.class));
+            }
+            return;
+        }
+
+        buffer.get();
+        var version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported trace packet version: " + version);
+        }
+
+        try {
+            long sequenceNumber = version >= 2 ? readVarint(buffer) : 0;
+            long lastTimestamp = 0;
+            while (buffer.hasRemaining()) {
+                var packet = new TracePacket();
+                if (sequenceNumber != 0) {
+                    packet.setSequenceNumber(sequenceNumber++);
+                }
+
+                int type = buffer.get() & 0xFF;
+                int fields = buffer.get() & 0xFF;
+                if (type != NO_TYPE) {
+                    packet.setType(type);
+                }
+                if ((fields & FIELD_J) != 0) {
+                    packet.setSubType((int) readVarint(buffer));
+                }
+                if ((fields & FIELD_F) != 0) {
+                    packet.setFunctionAddress(readVarint(buffer));
+                }
+                if ((fields & FIELD_C) != 0) {
+                    packet.setCallSiteAddress(readVarint(buffer));
+                }
+                if ((fields & FIELD_A) != 0) {
+                    packet.setMemoryAddress(readVarint(buffer));
+                }
+                if ((fields & FIELD_V) != 0) {
+                    packet.setMemoryValue(unzigzag(readVarint(buffer)));
+                }
+                if ((fields & FIELD_M) != 0) {
+                    packet.setMessageId(readString(buffer));
+                }
+                if ((fields & FIELD_L) != 0) {
+                    packet.setLogMessage(readString(buffer));
+                }
+                if ((fields & FIELD_T) != 0) {
+                    lastTimestamp += unzigzag(readVarint(buffer));
+                    packet.setTimestamp(lastTimestamp);
+                }
+
+                consumer.accept(packet);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated trace packet frame", e);
+        }
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = (int) readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        var slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
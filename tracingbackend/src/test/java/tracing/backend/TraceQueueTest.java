@@ -0,0 +1,193 @@
+package tracing.backend;
+
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.internal;
+
+public class TraceQueueTest {
+
+    private Target target;
+
+    @Before
+    public void setUp() {
+        target = new Target("a", new VectorClockIndex(List.of("a")));
+    }
+
+    private TraceEvent event(long timestamp) {
+        return internal(target, timestamp);
+    }
+
+    private static TraceEvent poll(TraceQueue queue) {
+        var event = queue.peek();
+        if (event != null) {
+            queue.remove();
+        }
+        return event;
+    }
+
+    @Test
+    public void testCapacityIsRoundedUp() {
+        assertEquals(4, new TraceQueue(3, TraceQueue.FullPolicy.BLOCK).capacity());
+        assertEquals(4, new TraceQueue(4, TraceQueue.FullPolicy.BLOCK).capacity());
+        assertEquals(1, new TraceQueue(1, TraceQueue.FullPolicy.BLOCK).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new TraceQueue(0, TraceQueue.FullPolicy.BLOCK);
+    }
+
+    @Test
+    public void testFifoOrder() {
+        var queue = new TraceQueue(4, TraceQueue.FullPolicy.BLOCK);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.add(event(round * 4 + i)));
+            }
+            assertEquals(4, queue.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(round * 4 + i, (long) poll(queue).getLocalTimestamp());
+            }
+            assertTrue(queue.isEmpty());
+        }
+        assertNull(queue.peek());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveWithoutPeek() {
+        var queue = new TraceQueue(4, TraceQueue.FullPolicy.BLOCK);
+        queue.add(event(0));
+        queue.remove();
+    }
+
+    @Test
+    public void testSignalRejectsWhenFull() {
+        var queue = new TraceQueue(2, TraceQueue.FullPolicy.SIGNAL);
+        assertTrue(queue.add(event(0)));
+        assertTrue(queue.add(event(1)));
+        assertFalse(queue.add(event(2)));
+        assertFalse(queue.add(event(3)));
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(2, queue.size());
+
+        // the queued events are kept, new events are accepted again once there is room
+        assertEquals(0, (long) poll(queue).getLocalTimestamp());
+        assertTrue(queue.add(event(4)));
+        assertEquals(1, (long) poll(queue).getLocalTimestamp());
+        assertEquals(4, (long) poll(queue).getLocalTimestamp());
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testDropOldestWhenFull() {
+        var queue = new TraceQueue(2, TraceQueue.FullPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.add(event(i)));
+        }
+        assertEquals(3, queue.getDroppedCount());
+        assertEquals(2, queue.size());
+        assertEquals(3, (long) poll(queue).getLocalTimestamp());
+        assertEquals(4, (long) poll(queue).getLocalTimestamp());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDropOldestAfterPeek() {
+        var queue = new TraceQueue(2, TraceQueue.FullPolicy.DROP_OLDEST);
+        queue.add(event(0));
+        queue.add(event(1));
+        assertEquals(0, (long) queue.peek().getLocalTimestamp());
+
+        // the producer drops the peeked event, removing it must not remove the next one
+        queue.add(event(2));
+        queue.remove();
+        assertEquals(1, (long) poll(queue).getLocalTimestamp());
+        assertEquals(2, (long) poll(queue).getLocalTimestamp());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDropOfPeekedEventIsNotCounted() {
+        var queue = new TraceQueue(2, TraceQueue.FullPolicy.DROP_OLDEST);
+        queue.add(event(0));
+        queue.add(event(1));
+        var peeked = queue.peek();
+
+        // the producer drops the event the consumer is already outputting
+        queue.add(event(2));
+        assertEquals(1, queue.getDroppedCount());
+        queue.remove();
+        assertEquals(0, (long) peeked.getLocalTimestamp());
+        assertEquals(0, queue.getDroppedCount());
+
+        // events dropped before they were peeked stay counted
+        queue.add(event(3));
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, (long) poll(queue).getLocalTimestamp());
+        assertEquals(3, (long) poll(queue).getLocalTimestamp());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testBlockWaitsForConsumer() throws InterruptedException {
+        var queue = new TraceQueue(2, TraceQueue.FullPolicy.BLOCK);
+        queue.add(event(0));
+        queue.add(event(1));
+
+        var added = new CountDownLatch(1);
+        var producer = new Thread(() -> {
+            if (queue.add(event(2))) {
+                added.countDown();
+            }
+        });
+        producer.start();
+        assertFalse(added.await(100, TimeUnit.MILLISECONDS));
+
+        assertEquals(0, (long) poll(queue).getLocalTimestamp());
+        assertTrue(added.await(5, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals(1, (long) poll(queue).getLocalTimestamp());
+        assertEquals(2, (long) poll(queue).getLocalTimestamp());
+    }
+
+    @Test
+    public void testBlockReturnsFalseWhenInterrupted() throws InterruptedException {
+        var queue = new TraceQueue(1, TraceQueue.FullPolicy.BLOCK);
+        queue.add(event(0));
+
+        var result = new AtomicBoolean(true);
+        var producer = new Thread(() -> result.set(queue.add(event(1))));
+        producer.start();
+        producer.interrupt();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertFalse(result.get());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testBlockingPeekWaitsForProducer() throws InterruptedException {
+        var queue = new TraceQueue(4, TraceQueue.FullPolicy.BLOCK);
+        var producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.add(event(7));
+        });
+        producer.start();
+        assertEquals(7, (long) queue.blockingPeek().getLocalTimestamp());
+        producer.join();
+    }
+}
@@ -0,0 +1,115 @@
+package tracing.backend.post_processing;
+
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.QueueSpliterator;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.internal;
+
+public class ParallelStageTest {
+
+    private final Target target = new Target("a", new VectorClockIndex(List.of("a")));
+
+    @Test
+    public void testOrderIsKept() {
+        var threads = ConcurrentHashMap.<Thread>newKeySet();
+        PostProcessingStep slowStep = event -> {
+            threads.add(Thread.currentThread());
+            // later events often finish first
+            if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        var stage = new ParallelStage(List.of(slowStep), 4, 16);
+
+        var input = LongStream.range(0, 2000).mapToObj(t -> (TraceEvent) internal(target, t));
+        var output = stage.apply(input).map(TraceEvent::getLocalTimestamp).collect(Collectors.toList());
+
+        assertEquals(2000, output.size());
+        for (int i = 0; i < output.size(); i++) {
+            assertEquals(i, (long) output.get(i));
+        }
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void testStepsRunInOrder() {
+        PostProcessingStep first = event -> event.setIngestTime(1);
+        PostProcessingStep second = event -> event.setIngestTime(event.getIngestTime() * 10);
+        var stage = new ParallelStage(List.of(first, second), 2, 4);
+
+        var output = stage.apply(LongStream.range(0, 10).mapToObj(t -> (TraceEvent) internal(target, t)))
+                .collect(Collectors.toList());
+        assertEquals(10, output.size());
+        for (var event : output) {
+            assertEquals(10, event.getIngestTime());
+        }
+    }
+
+    @Test
+    public void testFailingStepDoesNotDropEvents() {
+        PostProcessingStep failing = event -> {
+            throw new IllegalStateException("test");
+        };
+        var stage = new ParallelStage(List.of(failing), 2, 4);
+        assertEquals(5, stage.apply(LongStream.range(0, 5).mapToObj(t -> (TraceEvent) internal(target, t))).count());
+    }
+
+    @Test
+    public void testCloseEndsOutput() throws InterruptedException {
+        // input that never ends
+        var queue = new LinkedBlockingQueue<TraceEvent>();
+        var input = StreamSupport.stream(new QueueSpliterator<>(queue), false);
+        var stage = new ParallelStage(List.of(event -> { }), 2, 4);
+        var output = stage.apply(input);
+
+        for (int t = 0; t < 3; t++) {
+            queue.add(internal(target, t));
+        }
+        var result = Collections.synchronizedList(new ArrayList<TraceEvent>());
+        var error = new AtomicReference<Throwable>();
+        var consumer = new Thread(() -> {
+            try {
+                output.forEach(result::add);
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        consumer.start();
+
+        // wait until the events are output, then close while the feeder waits for input
+        long deadline = System.currentTimeMillis() + 5000;
+        while (result.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        stage.close();
+        consumer.join(5000);
+
+        assertFalse("output does not end", consumer.isAlive());
+        assertNull(error.get());
+        assertEquals(3, result.size());
+
+        // the input is not fed anymore
+        queue.add(internal(target, 3));
+        Thread.sleep(50);
+        assertEquals(1, queue.size());
+    }
+}
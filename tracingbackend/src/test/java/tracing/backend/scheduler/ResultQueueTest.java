@@ -0,0 +1,88 @@
+package tracing.backend.scheduler;
+
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.internal;
+import static tracing.backend.scheduler.TestEvents.take;
+
+public class ResultQueueTest {
+
+    private final VectorClockIndex clockIndex = new VectorClockIndex(List.of("a", "b"));
+    private final Target a = new Target("a", clockIndex);
+    private final Target b = new Target("b", clockIndex);
+
+    @Test
+    public void testFifoOrder() throws InterruptedException {
+        var queue = new ResultQueue();
+        queue.add(internal(a, 0));
+        queue.addAll(List.of(internal(a, 1), internal(a, 2)));
+        queue.put(internal(a, 3));
+        assertEquals(4, queue.size());
+        assertEquals(0, (long) queue.peek().getLocalTimestamp());
+        assertEquals(0, (long) queue.take().getLocalTimestamp());
+        assertEquals(1, (long) queue.poll().getLocalTimestamp());
+
+        var rest = new ArrayList<TraceEvent>();
+        assertEquals(2, queue.drainTo(rest));
+        assertEquals(3, (long) rest.get(1).getLocalTimestamp());
+        assertNull(queue.poll());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testTakeWaitsForEvent() throws InterruptedException {
+        var queue = new ResultQueue();
+        var producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.addAll(List.of(internal(a, 0), internal(a, 1)));
+        });
+        producer.start();
+        assertEquals(0, (long) queue.take().getLocalTimestamp());
+        assertEquals(1, (long) queue.take().getLocalTimestamp());
+        producer.join();
+    }
+
+    @Test(timeout = 30000)
+    public void testRunsAreNotInterleaved() throws InterruptedException {
+        int runs = 500;
+        int runLength = 64;
+        var queue = new ResultQueue();
+        var producers = new ArrayList<Thread>();
+        for (var target : List.of(a, b)) {
+            var producer = new Thread(() -> {
+                for (int r = 0; r < runs; r++) {
+                    var run = new ArrayList<TraceEvent>();
+                    for (int i = 0; i < runLength; i++) {
+                        run.add(internal(target, i));
+                    }
+                    queue.addAll(run);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        var events = take(queue, 2 * runs * runLength);
+        for (int i = 0; i < events.size(); i += runLength) {
+            for (int j = 0; j < runLength; j++) {
+                assertSame(events.get(i).getTarget(), events.get(i + j).getTarget());
+                assertEquals(j, (long) events.get(i + j).getLocalTimestamp());
+            }
+        }
+        for (var producer : producers) {
+            producer.join();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package tracing.backend.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.MessageEvent;
+import tracing.backend.trace.TracePacket;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SendMessageIndexTest {
+
+    private Target a;
+    private Target b;
+    private Target c;
+    private SendMessageIndex index;
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b", "c"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+        c = new Target("c", clockIndex);
+        index = new SendMessageIndex(List.of(a, b, c));
+    }
+
+    private static MessageEvent message(Target target, int subType, String msgId) {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_MESSAGE);
+        packet.setSubType(subType);
+        packet.setMessageId(msgId);
+        packet.setTimestamp(0L);
+        return new MessageEvent(target, packet);
+    }
+
+    private MessageEvent send(Target target, String msgId) {
+        var send = message(target, TracePacket.SUBTYPE_SEND, msgId);
+        send.setVectorClock(target.incrementVectorClock());
+        index.put(send);
+        return send;
+    }
+
+    private void receive(Target target, MessageEvent send) {
+        var receive = message(target, TracePacket.SUBTYPE_RECEIVE, send.getMsgId());
+        receive.setVectorClock(target.merge(send.getVectorClock()));
+    }
+
+    @Test
+    public void testRetireWhenAllTargetsPassed() {
+        var m1 = send(a, "m1");
+        var m2 = send(a, "m2");
+
+        index.retire(a.getOrdinal());
+        assertSame(m1, index.get("m1"));
+        assertSame(m2, index.get("m2"));
+
+        receive(b, m1);
+        index.retire(a.getOrdinal());
+        assertTrue(index.contains("m1"));
+
+        // c holds the minimum, the watermark advances to the first send
+        receive(c, m1);
+        index.retire(a.getOrdinal());
+        assertFalse(index.contains("m1"));
+        assertTrue(index.contains("m2"));
+
+        receive(c, m2);
+        receive(b, m2);
+        index.retire(a.getOrdinal());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testRetireAfterMinimumMoves() {
+        var m1 = send(a, "m1");
+        receive(b, m1);
+
+        // c holds the minimum, advancing b does not change the watermark
+        index.retire(a.getOrdinal());
+        assertTrue(index.contains("m1"));
+
+        // transitively passed: c receives from b after b received from a
+        var m2 = send(b, "m2");
+        receive(c, m2);
+        index.retire(a.getOrdinal());
+        assertFalse(index.contains("m1"));
+        assertTrue(index.contains("m2"));
+    }
+
+    @Test
+    public void testRetireOnlyGivenSender() {
+        var m1 = send(a, "m1");
+        var m2 = send(b, "m2");
+        receive(b, m1);
+        receive(c, m1);
+        receive(a, m2);
+        receive(c, m2);
+
+        index.retire(a.getOrdinal());
+        assertFalse(index.contains("m1"));
+        assertTrue(index.contains("m2"));
+
+        index.retire(b.getOrdinal());
+        assertFalse(index.contains("m2"));
+    }
+
+    @Test
+    public void testRetireWithPredicate() {
+        send(a, "m1");
+        send(a, "m2");
+        send(a, "m3");
+
+        // stops at the first send event that cannot be retired
+        index.retire(a.getOrdinal(), send -> !send.getMsgId().equals("m2"));
+        assertFalse(index.contains("m1"));
+        assertTrue(index.contains("m2"));
+        assertTrue(index.contains("m3"));
+    }
+
+    @Test
+    public void testReusedMessageId() {
+        var m1 = send(a, "m");
+        receive(b, m1);
+        receive(c, m1);
+        var m2 = send(a, "m");
+
+        // retiring the first send event keeps the later one with the same ID
+        index.retire(a.getOrdinal());
+        assertSame(m2, index.get("m"));
+    }
+}
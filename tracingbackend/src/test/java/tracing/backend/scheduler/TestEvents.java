@@ -0,0 +1,104 @@
+package tracing.backend.scheduler;
+
+import tracing.backend.Target;
+import tracing.backend.trace.EventType;
+import tracing.backend.trace.InternalEvent;
+import tracing.backend.trace.MessageEvent;
+import tracing.backend.trace.TraceEvent;
+import tracing.backend.trace.TracePacket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creates events for scheduler tests and collects scheduler output.
+ */
+public final class TestEvents {
+
+    private TestEvents() {
+    }
+
+    public static MessageEvent send(Target target, String msgId, long timestamp) {
+        return message(target, TracePacket.SUBTYPE_SEND, msgId, timestamp);
+    }
+
+    public static MessageEvent receive(Target target, String msgId, long timestamp) {
+        return message(target, TracePacket.SUBTYPE_RECEIVE, msgId, timestamp);
+    }
+
+    private static MessageEvent message(Target target, int subType, String msgId, long timestamp) {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_MESSAGE);
+        packet.setSubType(subType);
+        packet.setMessageId(msgId);
+        packet.setTimestamp(timestamp);
+        return new MessageEvent(target, packet);
+    }
+
+    public static InternalEvent internal(Target target, long timestamp) {
+        return new InternalEvent(target, timestamp);
+    }
+
+    /**
+     * Adds the events to the queues of their targets.
+     */
+    public static void enqueue(TraceEvent... events) {
+        for (var event : events) {
+            assertTrue(event.getTarget().getTraceQueue().add(event));
+        }
+    }
+
+    /**
+     * Takes the given number of events from the scheduler output, fails if they are not output within 5 seconds.
+     */
+    public static List<TraceEvent> take(BlockingQueue<TraceEvent> resultQueue, int count) throws InterruptedException {
+        var events = new ArrayList<TraceEvent>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < count) {
+            var event = resultQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (event == null) {
+                fail("only " + events.size() + " of " + count + " events scheduled: " + events);
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Checks that the events of every target are numbered in output order and that every receive event comes after
+     * its send event and depends on it.
+     */
+    public static void assertCausalOrder(List<TraceEvent> events) {
+        var sends = new HashMap<String, TraceEvent>();
+        var lastIds = new HashMap<Target, Long>();
+        for (var event : events) {
+            var lastId = lastIds.put(event.getTarget(), event.getGlobalEventId());
+            assertTrue("global IDs not increasing at " + event, lastId == null || event.getGlobalEventId() > lastId);
+            if (event instanceof MessageEvent) {
+                var message = (MessageEvent) event;
+                if (event.getEventType() == EventType.SEND) {
+                    sends.put(message.getMsgId(), event);
+                } else {
+                    var send = sends.get(message.getMsgId());
+                    assertNotNull("receive before send: " + event, send);
+                    assertEquals(send.getGlobalEventId(), event.getDependencies());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the global IDs of all events increase in output order, also across targets.
+     */
+    public static void assertGlobalOrder(List<TraceEvent> events) {
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue("global IDs not increasing at " + events.get(i),
+                    events.get(i).getGlobalEventId() > events.get(i - 1).getGlobalEventId());
+        }
+    }
+}
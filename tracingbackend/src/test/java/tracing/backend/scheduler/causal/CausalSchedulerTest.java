@@ -0,0 +1,237 @@
+package tracing.backend.scheduler.causal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.*;
+
+public class CausalSchedulerTest {
+
+    private Target a;
+    private Target b;
+    private Target c;
+    private CausalScheduler scheduler;
+    private Thread thread;
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b", "c"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+        c = new Target("c", clockIndex);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (thread != null) {
+            scheduler.stop();
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    private void start(long targetTimeoutMillis) {
+        scheduler = new CausalScheduler(targetTimeoutMillis);
+        scheduler.setTargets(List.of(a, b, c));
+        thread = scheduler.start();
+    }
+
+    @Test(timeout = 10000)
+    public void testOrderedByLocalTimestamp() throws InterruptedException {
+        var a1 = internal(a, 1);
+        var b2 = internal(b, 2);
+        var c3 = internal(c, 3);
+        var a4 = internal(a, 4);
+        var c4 = internal(c, 4);
+        var b6 = internal(b, 6);
+        enqueue(a1, a4, internal(a, 10));
+        enqueue(b2, b6, internal(b, 10));
+        enqueue(c3, c4, internal(c, 10));
+        start(0);
+
+        // equal timestamps are ordered by target
+        var events = take(scheduler.resultQueue, 6);
+        assertEquals(List.of(a1, b2, c3, a4, c4, b6), events);
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, (long) events.get(i).getGlobalEventId());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testVectorClocks() throws InterruptedException {
+        var send = send(a, "m", 1);
+        var other = internal(c, 1);
+        var receive = receive(b, "m", 2);
+        var after = internal(b, 3);
+        enqueue(send, internal(a, 10));
+        enqueue(receive, after, internal(b, 10));
+        enqueue(other, internal(c, 10));
+        start(0);
+
+        take(scheduler.resultQueue, 4);
+        assertTrue(send.getVectorClock().isBefore(receive.getVectorClock()));
+        assertTrue(receive.getVectorClock().isBefore(after.getVectorClock()));
+        assertTrue(send.getVectorClock().isConcurrent(other.getVectorClock()));
+        assertEquals(send.getGlobalEventId(), receive.getDependencies());
+    }
+
+    @Test(timeout = 10000)
+    public void testRunsOfInternalEventsKeepOrder() throws InterruptedException {
+        var expected = new ArrayList<TraceEvent>();
+        for (long t = 1; t <= 1000; t++) {
+            // a has long runs, b and c interrupt them
+            var target = t % 100 == 0 ? b : t % 150 == 0 ? c : a;
+            var event = internal(target, t);
+            enqueue(event);
+            expected.add(event);
+        }
+        enqueue(internal(a, 2000), internal(b, 2000), internal(c, 2000));
+        start(0);
+
+        var events = take(scheduler.resultQueue, expected.size());
+        assertEquals(expected, events);
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, (long) events.get(i).getGlobalEventId());
+        }
+        for (int i = 1; i < events.size(); i++) {
+            if (events.get(i).getTarget() == events.get(i - 1).getTarget()) {
+                assertTrue(events.get(i - 1).getVectorClock().isBefore(events.get(i).getVectorClock()));
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRunStopsAtMessageEvent() throws InterruptedException {
+        var a1 = internal(a, 1);
+        var a2 = internal(a, 2);
+        var send = send(a, "m", 3);
+        var a4 = internal(a, 4);
+        var receive = receive(b, "m", 2);
+        enqueue(a1, a2, send, a4, internal(a, 10));
+        enqueue(receive, internal(b, 10));
+        enqueue(internal(c, 10));
+        start(0);
+
+        var events = take(scheduler.resultQueue, 5);
+        assertEquals(List.of(a1, a2, send, receive, a4), events);
+        assertCausalOrder(events);
+    }
+
+    @Test(timeout = 10000)
+    public void testReceiveBeforeSendIsParked() throws InterruptedException {
+        // the receive event has the lower timestamp, it waits for its send event
+        var receive = receive(b, "m", 1);
+        var send = send(a, "m", 2);
+        var c3 = internal(c, 3);
+        enqueue(send, internal(a, 10));
+        enqueue(receive, internal(b, 10));
+        enqueue(c3, internal(c, 10));
+        start(0);
+
+        var events = take(scheduler.resultQueue, 3);
+        assertEquals(List.of(send, receive, c3), events);
+        assertCausalOrder(events);
+    }
+
+    @Test(timeout = 10000)
+    public void testMulticastReceivesAreReleased() throws InterruptedException {
+        var receiveB = receive(b, "m", 1);
+        var receiveC = receive(c, "m", 1);
+        var send = send(a, "m", 5);
+        enqueue(receiveB, internal(b, 10));
+        enqueue(receiveC, internal(c, 10));
+        enqueue(internal(a, 3), send, internal(a, 10));
+        start(0);
+
+        var events = take(scheduler.resultQueue, 4);
+        assertCausalOrder(events);
+        assertSame(send, events.get(1));
+        assertTrue(events.containsAll(List.of(receiveB, receiveC)));
+    }
+
+    @Test(timeout = 10000)
+    public void testParkedReceiveWaitsForSendToArrive() throws InterruptedException {
+        var receive = receive(b, "m", 1);
+        enqueue(receive, internal(b, 10));
+        enqueue(internal(c, 0), internal(c, 10));
+        enqueue(internal(a, 0));
+        start(60000);
+
+        // the receive event is parked, the scheduler waits until the send event arrives
+        take(scheduler.resultQueue, 2);
+        assertNull(scheduler.resultQueue.poll(200, TimeUnit.MILLISECONDS));
+
+        var send = send(a, "m", 2);
+        enqueue(send);
+        var events = take(scheduler.resultQueue, 2);
+        assertEquals(List.of(send, receive), events);
+        assertEquals(send.getGlobalEventId(), receive.getDependencies());
+    }
+
+    @Test(timeout = 10000)
+    public void testStrictModeWaitsForAllTargets() throws InterruptedException {
+        enqueue(internal(a, 1), internal(a, 2));
+        enqueue(internal(b, 1));
+        start(0);
+
+        // c may still deliver an older event
+        assertNull(scheduler.resultQueue.poll(300, TimeUnit.MILLISECONDS));
+
+        // b is empty after its first event, its next event may be older than a's second
+        enqueue(internal(c, 3), internal(c, 4));
+        var events = take(scheduler.resultQueue, 2);
+        assertEquals(1L, (long) events.get(0).getLocalTimestamp());
+        assertEquals(1L, (long) events.get(1).getLocalTimestamp());
+        assertNull(scheduler.resultQueue.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testSilentTargetIsExcludedAfterTimeout() throws InterruptedException {
+        enqueue(internal(a, 1), internal(a, 2));
+        enqueue(internal(b, 1), internal(b, 3));
+        start(200);
+
+        long started = System.nanoTime();
+        var events = take(scheduler.resultQueue, 3);
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertCausalOrder(events);
+        assertEquals(2L, (long) events.get(2).getLocalTimestamp());
+    }
+
+    @Test(timeout = 10000)
+    public void testDisconnectedTargetIsNotWaitedFor() throws InterruptedException {
+        c.setConnected(false);
+        enqueue(internal(a, 1), internal(a, 2));
+        enqueue(internal(b, 1), internal(b, 3));
+        start(60000);
+
+        // does not wait for the timeout of c
+        var events = take(scheduler.resultQueue, 3);
+        assertCausalOrder(events);
+    }
+
+    @Test(timeout = 10000)
+    public void testWatermarkOfIdleTarget() throws InterruptedException {
+        var a5 = internal(a, 5);
+        var b3 = internal(b, 3);
+        var b5 = internal(b, 5);
+        enqueue(a5);
+        enqueue(b3, b5, internal(b, 8));
+        enqueue(internal(c, 9));
+        start(60000);
+
+        // a was last seen at 5, b's event at 5 is scheduled without waiting for a's next event
+        var events = take(scheduler.resultQueue, 3);
+        assertEquals(List.of(b3, a5, b5), events);
+        assertNull(scheduler.resultQueue.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,185 @@
+package tracing.backend.scheduler.causal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.*;
+
+public class PartitionedSchedulerTest {
+
+    private Target a;
+    private Target b;
+    private Target c;
+    private Target d;
+    private PartitionedScheduler scheduler;
+    private Thread thread;
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b", "c", "d"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+        c = new Target("c", clockIndex);
+        d = new Target("d", clockIndex);
+        scheduler = new PartitionedScheduler();
+        scheduler.setTargets(List.of(a, b, c, d));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (thread != null) {
+            scheduler.stop();
+            thread.join(5000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMessageBetweenGroups() throws InterruptedException {
+        var send = send(a, "m", 1);
+        var receive = receive(b, "m", 2);
+        enqueue(internal(a, 0), send);
+        enqueue(receive);
+        enqueue(internal(c, 10));
+        enqueue(internal(d, 10));
+        thread = scheduler.start();
+
+        var events = take(scheduler.resultQueue, 5);
+        assertCausalOrder(events);
+        assertGlobalOrder(events);
+        assertTrue(events.indexOf(send) < events.indexOf(receive));
+        assertTrue(receive.getVectorClock().get(a.getOrdinal()) >= send.getVectorClock().get(a.getOrdinal()));
+    }
+
+    @Test(timeout = 10000)
+    public void testMulticastWaitersAreAllReleased() throws InterruptedException {
+        var receiveB = receive(b, "m", 2);
+        var receiveC = receive(c, "m", 2);
+        enqueue(receiveB);
+        enqueue(receiveC);
+        thread = scheduler.start();
+
+        // both workers park their receive event until the send event is scheduled by a third worker
+        Thread.sleep(200);
+        var send = send(a, "m", 1);
+        enqueue(send);
+
+        var events = take(scheduler.resultQueue, 3);
+        assertCausalOrder(events);
+        assertGlobalOrder(events);
+        assertSame(send, events.get(0));
+        assertTrue(events.contains(receiveB));
+        assertTrue(events.contains(receiveC));
+    }
+
+    @Test(timeout = 30000)
+    public void testIndependentGroupsRetireSends() throws InterruptedException {
+        // a and b, c and d communicate, but the two groups never do
+        int messages = 3 * PartitionedScheduler.RETAINED_SENDS;
+        var expected = new ArrayList<TraceEvent>();
+        for (int i = 0; i < messages; i++) {
+            var send1 = send(a, "ab" + i, 2 * i);
+            var receive1 = receive(b, "ab" + i, 2 * i + 1);
+            var send2 = send(c, "cd" + i, 2 * i);
+            var receive2 = receive(d, "cd" + i, 2 * i + 1);
+            enqueue(send1, receive1, send2, receive2);
+            expected.add(send1);
+            expected.add(receive1);
+            expected.add(send2);
+            expected.add(receive2);
+        }
+        thread = scheduler.start();
+
+        var events = take(scheduler.resultQueue, expected.size() - 4);
+        assertCausalOrder(events);
+        assertGlobalOrder(events);
+
+        // only the retained send events of a and c are left, the clocks of the other group do not hold them back
+        assertTrue("send index holds " + scheduler.sendIndex.size() + " events",
+                scheduler.sendIndex.size() <= 2 * PartitionedScheduler.RETAINED_SENDS + 2);
+    }
+
+    @Test(timeout = 30000)
+    public void testRunsArriveInOnePiece() throws InterruptedException {
+        // four groups schedule runs of internal events at the same time
+        int runs = 20;
+        var targets = List.of(a, b, c, d);
+        for (var target : targets) {
+            for (int t = 0; t < runs * CausalScheduler.MAX_RUN_LENGTH; t++) {
+                enqueue(internal(target, t));
+            }
+        }
+        thread = scheduler.start();
+
+        var events = take(scheduler.resultQueue, targets.size() * runs * CausalScheduler.MAX_RUN_LENGTH);
+        assertCausalOrder(events);
+        assertGlobalOrder(events);
+
+        // the output only switches between targets at the end of a run
+        int start = 0;
+        for (int i = 1; i <= events.size(); i++) {
+            if (i == events.size() || events.get(i).getTarget() != events.get(start).getTarget()) {
+                assertEquals("run interleaved at " + start, 0, (i - start) % CausalScheduler.MAX_RUN_LENGTH);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Running worker threads of the scheduler.
+     */
+    private static Set<Thread> workers() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("Scheduler worker ") && t.isAlive())
+                .collect(Collectors.toSet());
+    }
+
+    @Test(timeout = 10000)
+    public void testMergedGroupKeepsItsWorker() throws InterruptedException {
+        scheduler = new PartitionedScheduler(50);
+        scheduler.setTargets(List.of(a, b, c, d));
+        thread = scheduler.start();
+        while (workers().size() < 4) {
+            Thread.sleep(1);
+        }
+        var initialWorkers = workers();
+
+        // the links are found one by one: a to b, b to c, c to d
+        var targets = List.of(a, b, c, d);
+        for (int i = 0; i < 3; i++) {
+            enqueue(send(targets.get(i), "m" + i, 2 * i));
+            enqueue(receive(targets.get(i + 1), "m" + i, 2 * i + 1));
+            var events = take(scheduler.resultQueue, 2);
+            assertCausalOrder(events);
+        }
+
+        // no worker was started for the merged groups, one of the initial workers schedules all targets
+        long deadline = System.currentTimeMillis() + 5000;
+        while (workers().size() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        var workers = workers();
+        assertEquals(1, workers.size());
+        assertTrue(initialWorkers.containsAll(workers));
+
+        // the remaining worker schedules the events of all former groups
+        var events = new ArrayList<TraceEvent>();
+        for (int i = 0; i < 4; i++) {
+            var event = internal(targets.get(i), 10 + i);
+            enqueue(event);
+            events.add(event);
+        }
+        var output = take(scheduler.resultQueue, 4);
+        assertEquals(events, output);
+        assertGlobalOrder(output);
+    }
+}
@@ -0,0 +1,112 @@
+package tracing.backend.scheduler.hlc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.TraceEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static tracing.backend.scheduler.TestEvents.*;
+
+public class HybridClockSchedulerTest {
+
+    private Target a;
+    private Target b;
+    private Target c;
+    private HybridClockScheduler scheduler;
+    private Thread thread;
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b", "c"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+        c = new Target("c", clockIndex);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (thread != null) {
+            scheduler.stop();
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    private void start(long targetTimeoutMillis, long retentionMillis) {
+        scheduler = new HybridClockScheduler(targetTimeoutMillis, retentionMillis);
+        scheduler.setTargets(List.of(a, b, c));
+        thread = scheduler.start();
+    }
+
+    @Test
+    public void testClockOperations() {
+        long clock = HybridLogicalClock.tick(0, 100);
+        assertEquals(100, HybridLogicalClock.logicalTime(clock));
+        assertEquals(0, HybridLogicalClock.counter(clock));
+
+        // same physical time, the counter orders the events
+        long next = HybridLogicalClock.tick(clock, 100);
+        assertEquals(100, HybridLogicalClock.logicalTime(next));
+        assertEquals(1, HybridLogicalClock.counter(next));
+
+        // physical time behind the logical time
+        long receive = HybridLogicalClock.receive(HybridLogicalClock.tick(0, 50), next, 60);
+        assertTrue(receive > next);
+        assertEquals(100, HybridLogicalClock.logicalTime(receive));
+        assertEquals(2, HybridLogicalClock.counter(receive));
+    }
+
+    @Test(timeout = 10000)
+    public void testClocksFollowCausality() throws InterruptedException {
+        // b's clock is behind a's, the receive event still gets a higher clock than its send event
+        var send = send(a, "m", 100);
+        var receive = receive(b, "m", 50);
+        var after = internal(b, 51);
+        enqueue(internal(a, 1), send, internal(a, 1000));
+        enqueue(internal(b, 2), receive, after, internal(b, 1000));
+        enqueue(internal(c, 3), internal(c, 1000));
+        start(0, HybridClockScheduler.DEFAULT_RETENTION);
+
+        var events = take(scheduler.resultQueue, 6);
+        assertCausalOrder(events);
+        assertTrue(send.getHybridTimestamp() < receive.getHybridTimestamp());
+        assertTrue(receive.getHybridTimestamp() < after.getHybridTimestamp());
+
+        var last = new HashMap<Target, TraceEvent>();
+        for (var event : events) {
+            var previous = last.put(event.getTarget(), event);
+            assertNull(event.getVectorClock());
+            assertTrue(previous == null || previous.getHybridTimestamp() < event.getHybridTimestamp());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReceiveOfRetiredSendIsNotParked() throws InterruptedException {
+        // b is silent while a and c advance far beyond the retention time
+        var send = send(a, "m", 1);
+        enqueue(send);
+        for (int t = 2; t <= 1000; t++) {
+            enqueue(internal(a, t), internal(c, t));
+        }
+        start(100, 10);
+        take(scheduler.resultQueue, 1 + 2 * 999);
+
+        // the receive event arrives late, its send event was retired
+        var receive = receive(b, "m", 2);
+        var after = internal(b, 3);
+        enqueue(receive, after);
+        var events = take(scheduler.resultQueue, 2);
+        assertTrue(events.contains(receive));
+        assertTrue(events.contains(after));
+        assertNull(receive.getDependencies());
+        assertTrue(receive.getHybridTimestamp() < after.getHybridTimestamp());
+        assertNull(scheduler.resultQueue.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,127 @@
+package tracing.backend.scheduler.vectorclock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DenseVectorClockTest {
+
+    private final VectorClockIndex index = new VectorClockIndex(List.of("0", "1", "2", "3"));
+
+    /**
+     * Creates a clock by incrementing every component to the given value.
+     */
+    private DenseVectorClock clock(int... values) {
+        var clock = DenseVectorClock.create(this.index);
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values[i]; j++) {
+                clock = clock.increment(i);
+            }
+        }
+        return clock;
+    }
+
+    @Test
+    public void testIndex() {
+        assertEquals(4, index.size());
+        assertEquals(2, index.ordinalOf("2"));
+        assertEquals(-1, index.findOrdinal("4"));
+        assertEquals("3", index.keyOf(3));
+        assertEquals(List.of("0", "1", "2", "3"), index.keys());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexUnknownKey() {
+        index.ordinalOf("4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexDuplicateKey() {
+        new VectorClockIndex(List.of("0", "1", "0"));
+    }
+
+    @Test
+    public void testIncrementAndMerge() {
+        var zero = DenseVectorClock.create(index);
+        var v1 = zero.increment(1);
+        assertEquals(0, zero.get(1));
+        assertEquals(1, v1.get(1));
+        assertEquals(1, v1.get("1"));
+        assertEquals(0, v1.get("unknown"));
+
+        var merged = clock(3, 0, 1, 3).merge(clock(2, 1, 1, 4));
+        assertEquals(clock(3, 1, 1, 4), merged);
+
+        var received = clock(3, 0, 1, 3).incrementAndMerge(2, clock(2, 1, 1, 4));
+        assertEquals(clock(3, 1, 2, 4), received);
+    }
+
+    @Test
+    public void testOrder() {
+        // the cases of VectorClockTest
+        assertTrue(clock(3, 0, 1, 3).isBefore(clock(3, 1, 1, 3)));
+        assertTrue(clock(2, 1, 1, 2).isBefore(clock(3, 1, 1, 3)));
+        assertTrue(clock(3, 1, 1, 3).isAfter(clock(2, 1, 0, 3)));
+        assertTrue(clock(2, 0, 1, 3).isConcurrent(clock(2, 1, 0, 3)));
+        assertTrue(clock(2, 1, 1, 3).isConcurrent(clock(3, 1, 1, 2)));
+
+        var v = clock(1, 2, 3, 4);
+        assertFalse(v.isAfter(clock(1, 2, 3, 4)));
+        assertFalse(v.isBefore(clock(1, 2, 3, 4)));
+        assertFalse(v.isConcurrent(clock(1, 2, 3, 4)));
+        assertEquals(clock(1, 2, 3, 4), v);
+        assertEquals(clock(1, 2, 3, 4).hashCode(), v.hashCode());
+    }
+
+    @Test
+    public void testMapView() {
+        var map = clock(1, 0, 2, 0).toMap();
+        assertEquals(Map.of("0", 1, "1", 0, "2", 2, "3", 0), map);
+        assertEquals(Integer.valueOf(2), map.get("2"));
+        assertNull(map.get("4"));
+        assertEquals(List.of("0", "1", "2", "3"), new ArrayList<>(map.keySet()));
+        assertEquals("{0=1, 1=0, 2=2, 3=0}", clock(1, 0, 2, 0).toString());
+    }
+
+    @Test
+    public void testSameResultsAsVectorClock() {
+        // random histories of sends and receives, compared with the map-based vector clock
+        var random = new Random(42);
+        var keys = index.keys();
+        var dense = new ArrayList<DenseVectorClock>();
+        var maps = new ArrayList<VectorClock<String>>();
+        for (int i = 0; i < keys.size(); i++) {
+            dense.add(DenseVectorClock.create(index));
+            maps.add(VectorClock.create(keys));
+        }
+
+        var denseHistory = new ArrayList<DenseVectorClock>();
+        var mapHistory = new ArrayList<VectorClock<String>>();
+        for (int step = 0; step < 2000; step++) {
+            int target = random.nextInt(keys.size());
+            if (random.nextBoolean() && !denseHistory.isEmpty()) {
+                int other = random.nextInt(denseHistory.size());
+                dense.set(target, dense.get(target).incrementAndMerge(target, denseHistory.get(other)));
+                maps.set(target, maps.get(target).increment(keys.get(target)).merge(mapHistory.get(other)));
+            } else {
+                dense.set(target, dense.get(target).increment(target));
+                maps.set(target, maps.get(target).increment(keys.get(target)));
+            }
+            denseHistory.add(dense.get(target));
+            mapHistory.add(maps.get(target));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            int x = random.nextInt(denseHistory.size());
+            int y = random.nextInt(denseHistory.size());
+            assertEquals(mapHistory.get(x).toMap(), denseHistory.get(x).toMap());
+            assertEquals(mapHistory.get(x).isAfter(mapHistory.get(y)), denseHistory.get(x).isAfter(denseHistory.get(y)));
+            assertEquals(mapHistory.get(y).isAfter(mapHistory.get(x)), denseHistory.get(x).isBefore(denseHistory.get(y)));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tracing.backend.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.TestEvents;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class DecodePoolTest {
+
+    private Target a;
+    private Target b;
+    private DecodePool pool;
+
+    // payloads decoded per target, the first byte of a payload is its number
+    private final List<Integer> decodedA = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> decodedB = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean aBehind = new AtomicBoolean(false);
+    private CountDownLatch decoded;
+    private final CountDownLatch space = new CountDownLatch(1);
+
+    private final DecodePool.Decoder decoder = new DecodePool.Decoder() {
+        @Override
+        public void decode(Target target, byte[] payload) {
+            (target == a ? decodedA : decodedB).add((int) payload[0]);
+            decoded.countDown();
+        }
+
+        @Override
+        public boolean drain(Target target) {
+            return target != a || !aBehind.get();
+        }
+
+        @Override
+        public void onSpace(Target target) {
+            assertSame(a, target);
+            space.countDown();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPayloadsOfTargetAreDecodedInOrder() throws InterruptedException {
+        pool = new DecodePool(2, 2, 4, decoder);
+        decoded = new CountDownLatch(200);
+        for (int i = 0; i < 100; i++) {
+            pool.submit(a, new byte[]{(byte) i});
+            pool.submit(b, new byte[]{(byte) i});
+        }
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) decodedA.get(i));
+            assertEquals(i, (int) decodedB.get(i));
+        }
+    }
+
+    @Test
+    public void testTargetBehindDoesNotStallItsLane() throws InterruptedException {
+        // both targets on the same lane
+        pool = new DecodePool(1, 2, 2, decoder);
+        aBehind.set(true);
+        decoded = new CountDownLatch(2);
+        assertTrue(pool.offer(a, new byte[]{0}));
+        assertTrue(pool.offer(a, new byte[]{1}));
+        // only the target that is behind gets backpressure
+        assertFalse(pool.offer(a, new byte[]{2}));
+
+        assertTrue(pool.offer(b, new byte[]{0}));
+        assertTrue(pool.offer(b, new byte[]{1}));
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1), decodedB);
+        assertTrue(decodedA.isEmpty());
+
+        // the scheduler takes an event of the target, that wakes up the lane
+        decoded = new CountDownLatch(2);
+        aBehind.set(false);
+        var queue = a.getTraceQueue();
+        queue.add(TestEvents.internal(a, 1));
+        queue.peek();
+        queue.remove();
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1), decodedA);
+    }
+
+    @Test
+    public void testRefusedTargetIsNotifiedWhenQueueHasRoom() throws InterruptedException {
+        pool = new DecodePool(1, 2, 1, decoder);
+        aBehind.set(true);
+        decoded = new CountDownLatch(1);
+        assertTrue(pool.offer(a, new byte[]{0}));
+        assertFalse(pool.offer(a, new byte[]{1}));
+        assertFalse(space.await(100, TimeUnit.MILLISECONDS));
+
+        aBehind.set(false);
+        pool.offer(b, new byte[]{0}); // wakes up the lane
+        assertTrue(space.await(5, TimeUnit.SECONDS));
+        assertTrue(pool.offer(a, new byte[]{1}));
+    }
+
+    @Test
+    public void testSubmitWaitsWhenQueueOfTargetIsFull() throws InterruptedException {
+        pool = new DecodePool(1, 2, 1, decoder);
+        aBehind.set(true);
+        pool.submit(a, new byte[]{0});
+
+        var submitted = new CountDownLatch(1);
+        var producer = new Thread(() -> {
+            pool.submit(a, new byte[]{1});
+            submitted.countDown();
+        });
+        producer.start();
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+
+        decoded = new CountDownLatch(3);
+        aBehind.set(false);
+        pool.offer(b, new byte[]{0}); // wakes up the lane
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(List.of(0, 1), decodedA);
+    }
+
+    @Test
+    public void testSubmitAfterCloseIsRejected() {
+        pool = new DecodePool(1, 1, decoder);
+        pool.close();
+        try {
+            pool.submit(a, new byte[]{0});
+            fail("payload accepted by closed pool");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        try {
+            pool.offer(a, new byte[]{0});
+            fail("payload accepted by closed pool");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
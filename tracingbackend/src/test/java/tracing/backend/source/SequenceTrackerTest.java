@@ -0,0 +1,85 @@
+package tracing.backend.source;
+
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SequenceTrackerTest {
+
+    private Target a;
+    private Target b;
+    private SequenceTracker tracker;
+
+    @Before
+    public void setUp() {
+        var clockIndex = new VectorClockIndex(List.of("a", "b"));
+        a = new Target("a", clockIndex);
+        b = new Target("b", clockIndex);
+        tracker = new SequenceTracker(2);
+    }
+
+    @Test
+    public void testConsecutivePackets() {
+        for (long s = 1; s <= 5; s++) {
+            assertEquals(0, tracker.check(a, s));
+        }
+    }
+
+    @Test
+    public void testFirstPacketIsNoGap() {
+        // packets before the server started are not counted as lost
+        assertEquals(0, tracker.check(a, 100));
+        assertEquals(0, tracker.check(a, 101));
+    }
+
+    @Test
+    public void testGap() {
+        tracker.check(a, 1);
+        tracker.check(a, 2);
+        assertEquals(3, tracker.check(a, 6));
+        assertEquals(0, tracker.check(a, 7));
+    }
+
+    @Test
+    public void testDuplicates() {
+        tracker.check(a, 1);
+        tracker.check(a, 2);
+        tracker.check(a, 3);
+        assertEquals(SequenceTracker.DUPLICATE, tracker.check(a, 3));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.check(a, 2));
+        assertEquals(0, tracker.check(a, 4));
+    }
+
+    @Test
+    public void testLateAfterGapIsDuplicate() {
+        tracker.check(a, 1);
+        assertEquals(2, tracker.check(a, 4));
+        // reordered packet arriving after the gap was reported
+        assertEquals(SequenceTracker.DUPLICATE, tracker.check(a, 3));
+    }
+
+    @Test
+    public void testObserverRestart() {
+        tracker.check(a, 1);
+        tracker.check(a, 2);
+        tracker.check(a, 3);
+        assertEquals(0, tracker.check(a, 1));
+        assertEquals(0, tracker.check(a, 2));
+        assertEquals(1, tracker.check(a, 4));
+    }
+
+    @Test
+    public void testTargetsAreIndependent() {
+        tracker.check(a, 1);
+        tracker.check(a, 2);
+        assertEquals(0, tracker.check(b, 1));
+        assertEquals(0, tracker.check(a, 3));
+        assertEquals(5, tracker.check(b, 7));
+        assertEquals(0, tracker.check(a, 4));
+    }
+}
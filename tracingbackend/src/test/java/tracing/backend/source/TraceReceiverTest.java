@@ -0,0 +1,126 @@
+package tracing.backend.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.TraceQueue;
+import tracing.backend.metrics.Metrics;
+import tracing.backend.output.other.NullOutput;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.trace.LogEvent;
+import tracing.backend.trace.TraceEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceReceiverTest {
+
+    private Target target;
+    private TraceReceiver receiver;
+
+    @Before
+    public void setUp() {
+        target = new Target("receiver-test", new VectorClockIndex(List.of("receiver-test")),
+                new TraceQueue(4, TraceQueue.FullPolicy.SIGNAL));
+        Metrics.registerInputQueue(target.getTargetId(), target.getTraceQueue());
+        receiver = new TraceReceiver(1, new NullOutput());
+    }
+
+    @After
+    public void tearDown() {
+        receiver.close();
+    }
+
+    private static byte[] payload(long sequenceNumber) {
+        var json = "{\"i\":4,\"l\":\"" + sequenceNumber + "\",\"t\":" + sequenceNumber + ",\"s\":" + sequenceNumber + "}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void receive(long sequenceNumber) {
+        receiver.decode(target, ByteBuffer.wrap(payload(sequenceNumber)));
+    }
+
+    private List<String> drain() {
+        var messages = new ArrayList<String>();
+        TraceEvent event;
+        while ((event = target.getTraceQueue().peek()) != null) {
+            target.getTraceQueue().remove();
+            messages.add(((LogEvent) event).getLogMessage());
+        }
+        return messages;
+    }
+
+    @Test
+    public void testLostPacketsAreMarked() {
+        receive(1);
+        receive(4);
+        assertEquals(List.of("1", "PACKET_LOSS: 2 packets", "4"), drain());
+    }
+
+    @Test
+    public void testDuplicatesAreDropped() {
+        receive(1);
+        receive(2);
+        assertEquals(List.of("1", "2"), drain());
+        receive(2);
+        receive(3);
+        assertEquals(List.of("3"), drain());
+    }
+
+    @Test
+    public void testRejectedEventsAreMarked() {
+        for (long s = 1; s <= 6; s++) {
+            receive(s);
+        }
+        assertEquals(List.of("1", "2", "3", "4"), drain());
+        assertEquals(2, target.getTraceQueue().getDroppedCount());
+
+        receive(7);
+        assertEquals(List.of("PACKET_LOSS: 2 events rejected by full queue", "7"), drain());
+    }
+
+    @Test
+    public void testRejectedMarkerWaitsForRoom() {
+        for (long s = 1; s <= 5; s++) {
+            receive(s);
+        }
+        assertEquals(List.of("1", "2", "3", "4"), drain());
+
+        receive(6);
+        receive(7);
+        receive(8);
+        receive(9);
+        // still full, the marker is not added and the event counts as rejected too
+        receive(10);
+        assertEquals(List.of("PACKET_LOSS: 1 events rejected by full queue", "6", "7", "8"), drain());
+        receive(11);
+        assertEquals(List.of("PACKET_LOSS: 2 events rejected by full queue", "11"), drain());
+    }
+
+    @Test(timeout = 5000)
+    public void testLaneDoesNotBlockOnFullQueue() throws InterruptedException {
+        var blocking = new Target("receiver-test", new VectorClockIndex(List.of("receiver-test")),
+                new TraceQueue(2, TraceQueue.FullPolicy.BLOCK));
+        var queue = blocking.getTraceQueue();
+        Metrics.registerInputQueue(blocking.getTargetId(), queue);
+        for (long s = 1; s <= 5; s++) {
+            receiver.receive(blocking, payload(s));
+        }
+
+        // the events that do not fit are kept until the scheduler made room, none is lost
+        var messages = new ArrayList<String>();
+        while (messages.size() < 5) {
+            var event = queue.blockingPeek();
+            assertTrue(queue.size() <= 2);
+            queue.remove();
+            messages.add(((LogEvent) event).getLogMessage());
+        }
+        assertEquals(List.of("1", "2", "3", "4", "5"), messages);
+        assertEquals(0, queue.getDroppedCount());
+    }
+}
@@ -0,0 +1,45 @@
+package tracing.backend.source.elf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DwarfLineTableTest {
+
+    @Test
+    public void testMatchesAddr2line() throws Exception {
+        for (var binary : ElfFixtures.BINARIES) {
+            var lineTable = ElfIndex.parse(ElfFixtures.path(binary)).getLineTable();
+            assertNotNull(binary, lineTable);
+            assertTrue(binary, lineTable.size() > 0);
+
+            for (var expected : ElfFixtures.lines(binary)) {
+                var at = binary + " at " + Long.toHexString(expected.address);
+                assertEquals(at, expected.file, lineTable.getFile(expected.address));
+                assertEquals(at, expected.line, lineTable.getLine(expected.address));
+            }
+        }
+    }
+
+    @Test
+    public void testFilesOfAllCompileUnits() throws Exception {
+        for (var binary : ElfFixtures.BINARIES) {
+            var files = new java.util.HashSet<String>();
+            for (var expected : ElfFixtures.lines(binary)) {
+                files.add(expected.file);
+            }
+            // paths relative to the compilation directory are completed
+            assertTrue(binary, files.contains("/src/main.c"));
+            assertTrue(binary, files.contains("/src/sub/util.c"));
+        }
+    }
+
+    @Test
+    public void testAddressWithoutCode() throws Exception {
+        var lineTable = ElfIndex.parse(ElfFixtures.path("dwarf5")).getLineTable();
+        assertNull(lineTable.getFile(0));
+        assertEquals(0, lineTable.getLine(0));
+        assertNull(lineTable.getFile(Long.MAX_VALUE));
+        assertEquals(0, lineTable.getLine(Long.MAX_VALUE));
+    }
+}
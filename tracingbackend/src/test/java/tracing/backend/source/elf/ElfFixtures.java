@@ -0,0 +1,57 @@
+package tracing.backend.source.elf;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test binaries in the resources (elf/), built by elf/build.sh with DWARF 2, 4 and 5 line tables, and the source
+ * lines of their code addresses as printed by addr2line.
+ */
+final class ElfFixtures {
+
+    static final String[] BINARIES = {"dwarf2", "dwarf4", "dwarf5"};
+
+    private ElfFixtures() {
+    }
+
+    static Path path(String binary) {
+        try {
+            return Path.of(ElfFixtures.class.getResource("/elf/" + binary + ".elf").toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The addr2line output for every address of the functions main, twice and util_add of the binary.
+     */
+    static List<Line> lines(String binary) throws IOException {
+        var lines = new ArrayList<Line>();
+        for (var row : Files.readAllLines(path(binary).resolveSibling(binary + ".lines"))) {
+            var fields = row.split(" ");
+            var file = fields[1].equals("??") ? null : fields[1];
+            var line = fields[2].equals("?") ? 0 : Integer.parseInt(fields[2]);
+            lines.add(new Line(Long.decode(fields[0]), file, line));
+        }
+        return lines;
+    }
+
+    static final class Line {
+
+        final long address;
+        // null if unknown
+        final String file;
+        // 0 if unknown
+        final int line;
+
+        Line(long address, String file, int line) {
+            this.address = address;
+            this.file = file;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package tracing.backend.source.elf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static org.junit.Assert.*;
+
+public class ElfIndexCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("elf-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        for (var binary : ElfFixtures.BINARIES) {
+            var elfPath = ElfFixtures.path(binary);
+            var parsed = ElfIndex.parse(elfPath);
+            var cacheFile = ElfIndexCache.cacheFile(directory, elfPath);
+            ElfIndexCache.store(cacheFile, parsed);
+            var loaded = ElfIndexCache.load(cacheFile);
+            assertNotNull(binary, loaded);
+
+            assertEquals(binary, parsed.getLineTable().size(), loaded.getLineTable().size());
+            for (var expected : ElfFixtures.lines(binary)) {
+                var at = binary + " at " + Long.toHexString(expected.address);
+                assertEquals(at, expected.file, loaded.getLineTable().getFile(expected.address));
+                assertEquals(at, expected.line, loaded.getLineTable().getLine(expected.address));
+                assertEquals(at, parsed.getFunctions().find(expected.address),
+                        loaded.getFunctions().find(expected.address));
+            }
+
+            assertEquals(binary, parsed.getFunctions().size(), loaded.getFunctions().size());
+            assertEquals(binary, parsed.getObjects().size(), loaded.getObjects().size());
+            for (var symbol : parsed.getObjects()) {
+                var found = loaded.getObjectIndex().find(symbol.getAddress());
+                assertNotNull(binary + " " + symbol.getName(), found);
+                assertEquals(binary, symbol.getAddress(), found.getAddress());
+            }
+            assertEquals(binary, "counter", loaded.getObjectIndex().find(0x4024).getName());
+        }
+    }
+
+    @Test
+    public void testCacheFileIsNamedByContent() throws Exception {
+        var dwarf4 = ElfIndexCache.cacheFile(directory, ElfFixtures.path("dwarf4"));
+        var dwarf5 = ElfIndexCache.cacheFile(directory, ElfFixtures.path("dwarf5"));
+        assertEquals(directory, dwarf5.getParent());
+        assertNotEquals(dwarf4, dwarf5);
+
+        // a copy of the binary somewhere else shares the cache file
+        var copy = directory.resolve("copy.elf");
+        Files.copy(ElfFixtures.path("dwarf5"), copy);
+        assertEquals(dwarf5, ElfIndexCache.cacheFile(directory, copy));
+    }
+
+    @Test
+    public void testStoreReplacesCacheFile() throws Exception {
+        var cacheFile = directory.resolve("index.idx");
+        ElfIndexCache.store(cacheFile, ElfIndex.parse(ElfFixtures.path("dwarf4")));
+        ElfIndexCache.store(cacheFile, ElfIndex.parse(ElfFixtures.path("dwarf5")));
+        assertEquals("main", ElfIndexCache.load(cacheFile).getFunctions().find(0x113d));
+        // no temporary files left
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testMissingCacheFile() {
+        assertNull(ElfIndexCache.load(directory.resolve("missing.idx")));
+    }
+
+    @Test
+    public void testInvalidCacheFile() throws Exception {
+        var cacheFile = directory.resolve("invalid.idx");
+        Files.write(cacheFile, new byte[] {1, 2, 3});
+        assertNull(ElfIndexCache.load(cacheFile));
+
+        // valid header, truncated content
+        ElfIndexCache.store(cacheFile, ElfIndex.parse(ElfFixtures.path("dwarf5")));
+        var bytes = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(bytes, 64));
+        assertNull(ElfIndexCache.load(cacheFile));
+    }
+
+    @Test
+    public void testCacheFileOfOtherVersion() throws Exception {
+        var cacheFile = directory.resolve("other.idx");
+        ElfIndexCache.store(cacheFile, ElfIndex.parse(ElfFixtures.path("dwarf5")));
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+        bytes.putInt(4, bytes.getInt(4) + 1);
+        Files.write(cacheFile, bytes.array());
+        assertNull(ElfIndexCache.load(cacheFile));
+    }
+}
@@ -0,0 +1,69 @@
+package tracing.backend.source.elf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FunctionIndexTest {
+
+    private final FunctionIndex index = FunctionIndex.of(
+            new long[] {0x100, 0x110, 0x200},
+            new long[] {0x110, 0x120, 0x208},
+            new String[] {"first", "second", "gr\u00fc\u00dfe"});
+
+    @Test
+    public void testFind() {
+        assertEquals(3, index.size());
+        assertEquals("first", index.find(0x100));
+        assertEquals("first", index.find(0x10f));
+        // end address is exclusive
+        assertEquals("second", index.find(0x110));
+        assertEquals("second", index.find(0x11f));
+        assertEquals("gr\u00fc\u00dfe", index.find(0x207));
+    }
+
+    @Test
+    public void testNotFound() {
+        assertNull(index.find(0));
+        assertNull(index.find(0xff));
+        // between functions
+        assertNull(index.find(0x120));
+        assertNull(index.find(0x1ff));
+        assertNull(index.find(0x208));
+        assertNull(FunctionIndex.of(new long[0], new long[0], new String[0]).find(0x100));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+        var in = ByteBuffer.wrap(bytes.toByteArray());
+        var read = FunctionIndex.readFrom(in);
+        assertEquals(0, in.remaining());
+
+        assertEquals(index.size(), read.size());
+        for (long address = 0xf0; address < 0x210; address++) {
+            assertEquals(index.find(address), read.find(address));
+        }
+    }
+
+    @Test
+    public void testSymbolTable() throws Exception {
+        var functions = ElfIndex.parse(ElfFixtures.path("dwarf5")).getFunctions();
+        assertEquals("twice", functions.find(0x1139));
+        assertEquals("twice", functions.find(0x113c));
+        assertEquals("main", functions.find(0x113d));
+        assertEquals("main", functions.find(0x113d + 0x56));
+        assertEquals("util_add", functions.find(0x1194));
+        assertEquals("util_add", functions.find(0x1194 + 0x29));
+        assertNull(functions.find(0x1194 + 0x2a));
+        // functions without size extend to the next function
+        assertEquals("frame_dummy", functions.find(0x1138));
+    }
+}
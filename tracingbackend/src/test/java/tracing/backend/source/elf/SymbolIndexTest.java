@@ -0,0 +1,82 @@
+package tracing.backend.source.elf;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SymbolIndexTest {
+
+    private static String find(SymbolIndex index, long address) {
+        var symbol = index.find(address);
+        return symbol == null ? null : symbol.getName();
+    }
+
+    @Test
+    public void testFind() {
+        var index = new SymbolIndex(List.of(
+                new Symbol(0x20, 0x10, "b"),
+                new Symbol(0x10, 4, "a"),
+                new Symbol(0x40, 8, "c")));
+        assertEquals(3, index.size());
+        assertEquals("a", find(index, 0x10));
+        assertEquals("a", find(index, 0x13));
+        assertEquals("b", find(index, 0x2f));
+        assertEquals("c", find(index, 0x44));
+    }
+
+    @Test
+    public void testNotFound() {
+        var index = new SymbolIndex(List.of(new Symbol(0x10, 4, "a"), new Symbol(0x20, 4, "b")));
+        assertNull(index.find(0));
+        assertNull(index.find(0x14));
+        assertNull(index.find(0x24));
+        assertNull(new SymbolIndex(List.of()).find(0x10));
+    }
+
+    @Test
+    public void testNestedSymbols() {
+        var index = new SymbolIndex(List.of(
+                new Symbol(0x100, 0x100, "outer"),
+                new Symbol(0x100, 8, "first"),
+                new Symbol(0x140, 8, "inner"),
+                new Symbol(0x150, 4, "other")));
+        // the innermost symbol wins
+        assertEquals("first", find(index, 0x104));
+        assertEquals("inner", find(index, 0x147));
+        // walks back over the symbols ending before the address to the enclosing one
+        assertEquals("outer", find(index, 0x148));
+        assertEquals("outer", find(index, 0x160));
+        assertEquals("outer", find(index, 0x1ff));
+        assertNull(index.find(0x200));
+    }
+
+    @Test
+    public void testOverlappingSymbols() {
+        var index = new SymbolIndex(List.of(new Symbol(0x10, 0x10, "a"), new Symbol(0x18, 0x10, "b")));
+        assertEquals("a", find(index, 0x17));
+        assertEquals("b", find(index, 0x18));
+        assertEquals("b", find(index, 0x27));
+    }
+
+    @Test
+    public void testSymbolWithoutSize() {
+        var index = new SymbolIndex(List.of(new Symbol(0x10, 0, "marker"), new Symbol(0x20, 4, "a")));
+        assertEquals("marker", find(index, 0x10));
+        assertNull(index.find(0x11));
+    }
+
+    @Test
+    public void testSymbolTable() throws Exception {
+        var objects = ElfIndex.parse(ElfFixtures.path("dwarf5")).getObjectIndex();
+        assertEquals("table", find(objects, 0x4040));
+        // element of the array
+        assertEquals("table", find(objects, 0x4040 + 0x3f));
+        assertNull(objects.find(0x4040 + 0x40));
+        assertEquals("global_var", find(objects, 0x4018));
+        assertEquals("global_var", find(objects, 0x401b));
+        assertEquals("counter", find(objects, 0x4024));
+        assertNull(objects.find(0x4028));
+    }
+}
@@ -0,0 +1,47 @@
+package tracing.backend.source.shm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryRingTest {
+
+    // layout of the ring file, see SharedMemoryRing
+    private static final int WRITE_OFFSET = 64;
+    private static final int STATE_OFFSET = 192;
+    private static final int DATA_OFFSET = 256 + 64 * 1024;
+    private static final int CAPACITY = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResetIncrementsGeneration() throws Exception {
+        var path = folder.getRoot().toPath().resolve("a.ring");
+        var ring = SharedMemoryRing.create(path, CAPACITY);
+        assertEquals(1, ring.getGeneration());
+
+        // view of the observer, ready and one record written
+        try (var raf = new RandomAccessFile(path.toFile(), "rw")) {
+            var observer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            observer.order(ByteOrder.nativeOrder());
+            observer.putInt(DATA_OFFSET, 1);
+            observer.putLong(WRITE_OFFSET, 8);
+            observer.putInt(STATE_OFFSET, SharedMemoryRing.STATE_READY);
+        }
+        assertNotNull(ring.peek());
+
+        // restarted server
+        var restarted = SharedMemoryRing.create(path, CAPACITY);
+        assertEquals(2, restarted.getGeneration());
+        assertEquals(2, ring.getGeneration());
+        assertEquals(SharedMemoryRing.STATE_NOT_READY, restarted.getState());
+        assertNull(restarted.peek());
+    }
+}
@@ -0,0 +1,206 @@
+package tracing.backend.source.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tracing.backend.TraceQueue;
+import tracing.backend.configuration.JsonTargetProvider;
+import tracing.backend.output.other.NullOutput;
+import tracing.backend.trace.LogEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TCPSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JsonTargetProvider targets;
+    private TCPSource source;
+    private int port;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var elf = Path.of(getClass().getResource("/elf/dwarf4.elf").toURI()).toString();
+        var config = folder.newFile("trace_config.json").toPath();
+        var targetConfigs = new ArrayList<String>();
+        for (var name : List.of("a", "b", "c")) {
+            targetConfigs.add("{\"name\":\"" + name + "\",\"elf_path\":\"" + elf.replace("\\", "\\\\") + "\"}");
+        }
+        Files.writeString(config, "{\"targetConfigs\":[" + String.join(",", targetConfigs) + "],"
+                + "\"tcp_port\":" + port + ",\"queue_capacity\":4,\"queue_full_policy\":\"block\","
+                + "\"elf_cache_directory\":\"" + folder.newFolder("cache").toString().replace("\\", "\\\\") + "\"}");
+
+        targets = new JsonTargetProvider(config);
+        source = new TCPSource(new NullOutput(), targets);
+        source.init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (var socket : sockets) {
+            socket.close();
+        }
+        source.close();
+    }
+
+    private Socket connect() throws IOException {
+        var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(5000);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static byte[] frame(byte kind, byte[] payload) {
+        return ByteBuffer.allocate(5 + payload.length).putInt(1 + payload.length).put(kind).put(payload).array();
+    }
+
+    private static byte[] ready(String name) {
+        return frame(TCPSource.FRAME_READY, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] trace(long sequenceNumber) {
+        var json = "{\"i\":4,\"l\":\"" + sequenceNumber + "\",\"t\":" + sequenceNumber + ",\"s\":" + sequenceNumber + "}";
+        return frame(TCPSource.FRAME_TRACE, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] concat(byte[]... frames) {
+        var out = new ByteArrayOutputStream();
+        for (var frame : frames) {
+            out.writeBytes(frame);
+        }
+        return out.toByteArray();
+    }
+
+    private List<String> take(String targetId, int count) {
+        var queue = targets.getTarget(targetId).getTraceQueue();
+        var messages = new ArrayList<String>();
+        while (messages.size() < count) {
+            var event = queue.blockingPeek();
+            queue.remove();
+            messages.add(((LogEvent) event).getLogMessage());
+        }
+        return messages;
+    }
+
+    @Test(timeout = 10000)
+    public void testFrameSplitAcrossReads() throws Exception {
+        var out = connect().getOutputStream();
+        out.write(ready("a"));
+        var frame = trace(1);
+        out.write(frame, 0, 3); // not even the complete length
+        out.flush();
+        Thread.sleep(50);
+        out.write(frame, 3, 7);
+        out.flush();
+        Thread.sleep(50);
+        out.write(frame, 10, frame.length - 10);
+        out.flush();
+        assertEquals(List.of("1"), take("a", 1));
+    }
+
+    @Test(timeout = 10000)
+    public void testSeveralFramesInOneRead() throws Exception {
+        var out = connect().getOutputStream();
+        out.write(concat(ready("a"), trace(1), trace(2), trace(3)));
+        out.flush();
+        assertEquals(List.of("1", "2", "3"), take("a", 3));
+    }
+
+    @Test(timeout = 10000)
+    public void testTooLongFrameClosesConnection() throws Exception {
+        var socket = connect();
+        var out = socket.getOutputStream();
+        out.write(ready("a"));
+        out.write(ByteBuffer.allocate(5).putInt(16 * 1024 * 1024 + 1).put(TCPSource.FRAME_TRACE).array());
+        out.flush();
+        assertEquals(-1, socket.getInputStream().read());
+    }
+
+    @Test(timeout = 10000)
+    public void testTraceFrameBeforeReadyIsIgnored() throws Exception {
+        var out = connect().getOutputStream();
+        out.write(concat(trace(1), ready("a"), trace(2)));
+        out.flush();
+        assertEquals(List.of("2"), take("a", 1));
+        assertTrue(targets.getTarget("a").getTraceQueue().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testConfigIsSentWhenAllTargetsAreReady() throws Exception {
+        var sockets = new ArrayList<Socket>();
+        for (var name : List.of("a", "b", "c")) {
+            var socket = connect();
+            socket.getOutputStream().write(ready(name));
+            sockets.add(socket);
+        }
+        for (int i = 0; i < sockets.size(); i++) {
+            var in = new DataInputStream(sockets.get(i).getInputStream());
+            var payload = new byte[in.readInt() - 1];
+            assertEquals(TCPSource.FRAME_CONFIG, in.readByte());
+            in.readFully(payload);
+            var config = new String(payload, StandardCharsets.UTF_8);
+            assertTrue(config, config.contains("\"name\":\"" + List.of("a", "b", "c").get(i) + "\""));
+        }
+        assertTrue(targets.getTarget("a").isReady());
+    }
+
+    @Test(timeout = 20000)
+    public void testTargetBehindDoesNotStallOtherConnections() throws Exception {
+        // far more than the trace queue and the payload queue of the target can take
+        int count = 4000;
+        var a = connect().getOutputStream();
+        a.write(ready("a"));
+        var writer = new Thread(() -> {
+            try {
+                for (long s = 1; s <= count; s++) {
+                    a.write(trace(s));
+                }
+                a.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        writer.start();
+
+        // wait until the frames are sent or the socket buffers are full, the payload queue of a is full by then
+        writer.join(2000);
+        Thread.sleep(100);
+        var queueA = targets.getTarget("a").getTraceQueue();
+        assertEquals(queueA.capacity(), queueA.size());
+
+        // a is behind, b still gets through
+        var b = connect().getOutputStream();
+        b.write(concat(ready("b"), trace(1)));
+        b.flush();
+        assertEquals(List.of("1"), take("b", 1));
+
+        // a is read again as soon as the scheduler catches up, nothing is lost
+        var messages = take("a", count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.valueOf(i + 1), messages.get(i));
+        }
+        writer.join();
+        assertEquals(0, queueA.getDroppedCount());
+        assertEquals(TraceQueue.FullPolicy.BLOCK, queueA.getFullPolicy());
+    }
+}
@@ -0,0 +1,88 @@
+package tracing.backend.trace;
+
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.output.other.NullOutput;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.source.elf.ElfParser;
+import tracing.backend.source.elf.Function;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class FunctionEventTest {
+
+    private final Target target = new Target("a", new VectorClockIndex(List.of("a")));
+    // number of lookups, the ELF file is never read
+    private int lookups = 0;
+    private final ElfParser elfParser = new ElfParser(Path.of("missing.elf")) {
+        @Override
+        public Optional<Function> getFunction(long address) {
+            lookups++;
+            return Optional.of(new Function("fun" + Long.toHexString(address), "src/main.c", 7, address));
+        }
+    };
+
+    private FunctionEvent enter() {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_FUNCTION);
+        packet.setSubType(TracePacket.SUBTYPE_ENTER);
+        packet.setFunctionAddress(0x08000135L);
+        packet.setCallSiteAddress(0x080002A1L);
+        packet.setTimestamp(1L);
+        return (FunctionEvent) TraceEvent.from(target, packet);
+    }
+
+    @Test
+    public void testWithoutElfParser() {
+        var event = enter();
+        assertNull(event.getCalleeFunction());
+        assertEquals("ENTER function 0x08000135, called from 0x080002a1", event.getString());
+
+        var json = new HashMap<String, Object>();
+        event.serialize(json);
+        assertEquals(0x08000135L, json.get("address"));
+        assertFalse(json.containsKey("function"));
+    }
+
+    @Test
+    public void testNotResolvedUnlessAccessed() {
+        target.setElfParser(elfParser);
+        new NullOutput().put(enter());
+        assertEquals(0, lookups);
+    }
+
+    @Test
+    public void testResolvedOnce() {
+        target.setElfParser(elfParser);
+        var event = enter();
+        assertEquals("ENTER function fun8000135 (main.c:7), called from fun80002a1 (main.c:7)", event.getString());
+        assertEquals(2, lookups);
+
+        var json = new HashMap<String, Object>();
+        event.serialize(json);
+        event.getString();
+        assertEquals("fun8000135", json.get("function"));
+        assertEquals(2, lookups);
+    }
+
+    @Test
+    public void testUnresolvedAddressIsLookedUpOnce() {
+        target.setElfParser(new ElfParser(Path.of("missing.elf")) {
+            @Override
+            public Optional<Function> getFunction(long address) {
+                lookups++;
+                return Optional.empty();
+            }
+        });
+        var event = enter();
+        assertNull(event.getCalleeFunction());
+        assertNull(event.getCalleeFunction());
+        assertEquals("ENTER function 0x08000135, called from 0x080002a1", event.getString());
+        assertEquals(2, lookups);
+    }
+}
@@ -0,0 +1,73 @@
+package tracing.backend.trace;
+
+import org.junit.Test;
+import tracing.backend.Target;
+import tracing.backend.output.other.NullOutput;
+import tracing.backend.scheduler.vectorclock.VectorClockIndex;
+import tracing.backend.source.elf.ElfParser;
+import tracing.backend.source.elf.Symbol;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class MemoryEventTest {
+
+    private final Target target = new Target("a", new VectorClockIndex(List.of("a")));
+    // number of lookups, the ELF file is never read
+    private int lookups = 0;
+    private final ElfParser elfParser = new ElfParser(Path.of("missing.elf")) {
+        @Override
+        public Optional<Symbol> getSymbol(long address) {
+            lookups++;
+            return Optional.of(new Symbol(0x20000010L, 8, "counters"));
+        }
+    };
+
+    private MemoryEvent write() {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_MEMORY);
+        packet.setSubType(TracePacket.SUBTYPE_WRITE);
+        packet.setMemoryAddress(0x20000014L);
+        packet.setMemoryValue(0x2AL);
+        packet.setTimestamp(1L);
+        return (MemoryEvent) TraceEvent.from(target, packet);
+    }
+
+    @Test
+    public void testWithoutElfParser() {
+        var event = write();
+        assertNull(event.getSymbol());
+        assertEquals("WRITE variable 0x20000014: 0x0000002A", event.getString());
+
+        var json = new HashMap<String, Object>();
+        event.serialize(json);
+        assertEquals(0x20000014L, json.get("address"));
+        assertFalse(json.containsKey("variable"));
+    }
+
+    @Test
+    public void testNotResolvedUnlessAccessed() {
+        target.setElfParser(elfParser);
+        new NullOutput().put(write());
+        assertEquals(0, lookups);
+    }
+
+    @Test
+    public void testResolvedOnce() {
+        target.setElfParser(elfParser);
+        var event = write();
+        assertEquals("WRITE variable counters+4: 0x0000002A", event.getString());
+        assertEquals(1, lookups);
+
+        var json = new HashMap<String, Object>();
+        event.serialize(json);
+        event.getString();
+        assertEquals("counters", json.get("variable"));
+        assertEquals(4L, json.get("offset"));
+        assertEquals(1, lookups);
+    }
+}
@@ -0,0 +1,120 @@
+package tracing.backend.trace;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TracePacketDecoderTest {
+
+    /**
+     * Frame of three packets numbered from 41, as encoded by the observer (same bytes as in TracePacketEncoderTest):
+     * a memory write, a message receive 10 ms before it and a log message without timestamp.
+     */
+    private static final byte[] FRAME = {
+            (byte) 0xB7, 0x02, 0x29,
+            0x00, (byte) 0x99, 0x00, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x02, 0x09, (byte) 0xD0, 0x0F,
+            0x02, (byte) 0xA1, 0x01, 0x02, 0x6D, 0x31, 0x13,
+            0x04, 0x46, (byte) 0x81, (byte) 0x82, (byte) 0x80, 0x40, (byte) 0xAC, 0x02, 0x02, (byte) 0xC3, (byte) 0xBC
+    };
+
+    private final TracePacketDecoder decoder = new TracePacketDecoder();
+
+    private List<TracePacket> decode(byte[] payload) {
+        var packets = new ArrayList<TracePacket>();
+        decoder.decode(ByteBuffer.wrap(payload), packets::add);
+        return packets;
+    }
+
+    @Test
+    public void testDecodeFrame() {
+        var packets = decode(FRAME);
+        assertEquals(3, packets.size());
+
+        var memory = packets.get(0);
+        assertEquals(TracePacket.TYPE_MEMORY, (int) memory.getI());
+        assertEquals(TracePacket.SUBTYPE_WRITE, (int) memory.getSubType());
+        assertEquals(0x20000010L, (long) memory.getA());
+        assertEquals(-5L, (long) memory.getV());
+        assertEquals(1000L, (long) memory.getTimestamp());
+        assertEquals(41L, (long) memory.getS());
+        assertNull(memory.getF());
+        assertNull(memory.getM());
+
+        var message = packets.get(1);
+        assertEquals(TracePacket.TYPE_MESSAGE, (int) message.getI());
+        assertEquals(TracePacket.SUBTYPE_RECEIVE, (int) message.getSubType());
+        assertEquals("m1", message.getM());
+        assertEquals(990L, (long) message.getTimestamp());
+        assertEquals(42L, (long) message.getS());
+
+        var log = packets.get(2);
+        assertEquals(TracePacket.TYPE_LOG, (int) log.getI());
+        assertNull(log.getSubType());
+        assertEquals(0x8000101L, (long) log.getF());
+        assertEquals(300L, (long) log.getC());
+        assertEquals("\u00fc", log.getLogMessage());
+        assertNull(log.getTimestamp());
+        assertEquals(43L, (long) log.getS());
+    }
+
+    @Test
+    public void testPayloadPositionIsKept() {
+        var payload = ByteBuffer.wrap(FRAME);
+        decoder.decode(payload, packet -> { });
+        assertEquals(0, payload.position());
+    }
+
+    @Test
+    public void testUnnumberedHeartbeat() {
+        // version 2, no sequence number, packet without type and fields
+        var packets = decode(new byte[] {(byte) 0xB7, 0x02, 0x00, (byte) 0xFF, 0x00});
+        assertEquals(1, packets.size());
+        assertNull(packets.get(0).getI());
+        assertNull(packets.get(0).getS());
+        assertNull(packets.get(0).getTimestamp());
+    }
+
+    @Test
+    public void testVersion1WithoutSequenceNumber() {
+        var packets = decode(new byte[] {(byte) 0xB7, 0x01, 0x01, (byte) 0x83, 0x00, 0x14, 0x04});
+        assertEquals(1, packets.size());
+        assertEquals(TracePacket.TYPE_FUNCTION, (int) packets.get(0).getI());
+        assertEquals(TracePacket.SUBTYPE_ENTER, (int) packets.get(0).getSubType());
+        assertEquals(20L, (long) packets.get(0).getF());
+        assertEquals(2L, (long) packets.get(0).getTimestamp());
+        assertNull(packets.get(0).getS());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() {
+        decode(new byte[] {(byte) 0xB7, 0x03, 0x00});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedFrame() {
+        decode(Arrays.copyOf(FRAME, FRAME.length - 1));
+    }
+
+    @Test
+    public void testJson() {
+        var single = decode("{\"i\":2,\"j\":0,\"m\":\"m1\",\"t\":5,\"s\":7}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, single.size());
+        assertEquals("m1", single.get(0).getM());
+        assertEquals(7L, (long) single.get(0).getS());
+
+        var array = decode("[{\"i\":4,\"l\":\"a\"},{\"i\":4,\"l\":\"b\"}]".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, array.size());
+        assertEquals("b", array.get(1).getLogMessage());
+    }
+
+    @Test
+    public void testEmptyPayload() {
+        assertTrue(decode(new byte[0]).isEmpty());
+    }
+}
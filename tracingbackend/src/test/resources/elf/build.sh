@@ -0,0 +1,24 @@
+#!/bin/sh
+# Builds the test binaries from src/ and records the source file and line of every address of the functions main,
+# twice and util_add as printed by addr2line (gcc 12.2, binutils 2.40, x86-64).
+set -e
+cd "$(dirname "$0")"
+DIR=$(pwd)
+cd src
+gcc -gdwarf-2 -O0 -fdebug-prefix-map="$DIR/src"=/src -o ../dwarf2.elf main.c sub/util.c
+gcc -gdwarf-4 -O2 -fdebug-prefix-map="$DIR/src"=/src -o ../dwarf4.elf main.c sub/util.c
+gcc -gdwarf-5 -O1 -fdebug-prefix-map="$DIR/src"=/src -o ../dwarf5.elf main.c sub/util.c
+cd ..
+for v in 2 4 5; do
+    nm -S dwarf$v.elf | awk '$4 == "main" || $4 == "twice" || $4 == "util_add" { print $1, $2 }' \
+        | while read -r start size; do
+            a=$((0x$start))
+            while [ $a -lt $((0x$start + 0x$size)) ]; do
+                printf '0x%x\n' $a
+                a=$((a + 1))
+            done
+        done > addresses.tmp
+    addr2line -e dwarf$v.elf $(cat addresses.tmp) | sed 's/ (discriminator [0-9]*)//; s/:/ /' \
+        | paste -d' ' addresses.tmp - > dwarf$v.lines
+    rm addresses.tmp
+done
@@ -0,0 +1,15 @@
+#include <stdio.h>
+#include "sub/util.h"
+static int counter;
+int global_var = 3;
+int twice(int x) {
+    return x * 2;
+}
+int main(int argc, char **argv) {
+    for (int i = 0; i < argc; i++) {
+        counter += twice(i);
+        counter += util_add(counter, i);
+    }
+    printf("%d\n", counter);
+    return 0;
+}
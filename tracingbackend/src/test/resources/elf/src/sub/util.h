@@ -0,0 +1,2 @@
+int util_add(int a, int b);
+static inline int sq(int a) { return a * a; }
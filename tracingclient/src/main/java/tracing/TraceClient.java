@@ -1,16 +1,20 @@
 package tracing;
 
+import com.hivemq.client.mqtt.datatypes.MqttQos;
 import org.apache.commons.cli.*;
 import tracing.metrics.Metrics;
 import tracing.source.TraceSource;
 import tracing.source.orbuculum.OrbuculumITMSource;
-import tracing.transport.TracePacket;
+import tracing.transport.SpillingTraceQueue;
 import tracing.transport.TraceTransport;
 import tracing.transport.mqtt.MQTTTransport;
+import tracing.transport.shm.SharedMemoryTransport;
+import tracing.transport.tcp.TCPTransport;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Tracing observer. The client part to the tracing server.
@@ -21,8 +25,8 @@ public class TraceClient {
     private TraceSource traceSource;
     // the transport implementation
     private TraceTransport traceTransport;
-    // queue between source and transport
-    private final BlockingQueue<TracePacket> traceQueue = new LinkedBlockingQueue<>();
+    // queue between source and transport, bounded in memory, spills to disk when full
+    private SpillingTraceQueue traceQueue;
 
     private CommandLine cmd;
     private boolean metrics;
@@ -56,14 +60,51 @@ public class TraceClient {
         }
         metrics = cmd.hasOption("m");
 
+        // keep at most qc packets in memory, spill the rest to disk (e.g. while the server is unreachable)
+        var queueCapacity = Integer.parseInt(cmd.getOptionValue("qc", String.valueOf(SpillingTraceQueue.DEFAULT_CAPACITY)));
+        var spillDirectory = cmd.hasOption("spill")
+                ? Path.of(cmd.getOptionValue("spill"))
+                : Path.of(System.getProperty("java.io.tmpdir"), "tracing-spill", deviceName);
+        try {
+            this.traceQueue = new SpillingTraceQueue(queueCapacity, spillDirectory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create spill directory " + spillDirectory, e);
+        }
+
         // whether to use FPGA tracing instead of SWO
         boolean fpga = cmd.hasOption("fpga");
 
         // use orbuculum and the ITM as trace source
-        this.traceSource = new OrbuculumITMSource(traceQueue, device, fpga);
+        // optionally decode the ITM stream in Java (live or from a recorded capture) instead of using the trace tool
+        var itmCapture = cmd.hasOption("itmfile") ? new File(cmd.getOptionValue("itmfile")) : null;
+        this.traceSource = new OrbuculumITMSource(traceQueue, device, fpga, cmd.hasOption("itm"), itmCapture);
 
-        // use MQTT for transport
-        this.traceTransport = new MQTTTransport(traceQueue, deviceName, serverHost, this::onTraceStarted);
+        // use MQTT (default), TCP or shared memory for transport, binary trace packets unless JSON is requested for debugging
+        // optionally batch up to b packets or bt ms into one MQTT message
+        var batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+        var batchDelay = Long.parseLong(cmd.getOptionValue("bt", "10"));
+        switch (cmd.getOptionValue("t", "mqtt")) {
+            case "mqtt":
+                // QoS 1 by default, with QoS 0 lost packets are detected by the server
+                var traceQos = "0".equals(cmd.getOptionValue("q", "1")) ? MqttQos.AT_MOST_ONCE : MqttQos.AT_LEAST_ONCE;
+                this.traceTransport = new MQTTTransport(traceQueue, deviceName, serverHost, this::onTraceStarted,
+                        cmd.hasOption("json"), batchSize, batchDelay, traceQos);
+                break;
+            case "tcp":
+                // plain TCP connection to the server, without broker
+                var port = Integer.parseInt(cmd.getOptionValue("port", String.valueOf(TCPTransport.DEFAULT_PORT)));
+                this.traceTransport = new TCPTransport(traceQueue, deviceName, serverHost, port, this::onTraceStarted,
+                        cmd.hasOption("json"), batchSize, batchDelay);
+                break;
+            case "shm":
+                // memory-mapped ring files shared with a server on the same machine
+                var directory = cmd.hasOption("shm") ? Path.of(cmd.getOptionValue("shm")) : SharedMemoryTransport.DEFAULT_DIRECTORY;
+                this.traceTransport = new SharedMemoryTransport(traceQueue, deviceName, directory, this::onTraceStarted,
+                        cmd.hasOption("json"), batchSize, batchDelay);
+                break;
+            default:
+                throw new IllegalArgumentException(cmd.getOptionValue("t"));
+        }
         new Thread(this.traceTransport).start();
 
         // make sure to close/stop everything on exit
@@ -71,6 +112,7 @@ public class TraceClient {
             System.out.println("Shutting down...");
             this.traceSource.close();
             this.traceTransport.close();
+            this.traceQueue.close();
         }));
     }
 
@@ -102,6 +144,17 @@ public class TraceClient {
         options.addOption("fpga", false, "use FPGA for trace");
         options.addOption("s", true, "server IP address");
         options.addOption("m", false, "collect runtime metrics");
+        options.addOption("itm", false, "decode the ITM stream of orbuculum directly instead of using the trace tool");
+        options.addOption("itmfile", true, "decode a recorded raw ITM stream instead of live tracing");
+        options.addOption("json", false, "send trace packets as JSON instead of binary (debugging)");
+        options.addOption("b", true, "max. number of trace packets per message (default 1, no batching)");
+        options.addOption("bt", true, "max. time in ms to wait for a batch to fill up (default 10)");
+        options.addOption("q", true, "MQTT QoS of trace messages (0/1, default 1)");
+        options.addOption("t", true, "transport (mqtt/tcp/shm, default mqtt)");
+        options.addOption("qc", true, "max. number of trace packets kept in memory (default 65536)");
+        options.addOption("spill", true, "directory for trace packets spilled to disk");
+        options.addOption("port", true, "server port for the TCP transport (default 1885)");
+        options.addOption("shm", true, "directory of the ring files for the shared memory transport (same as on server)");
         options.addRequiredOption("d", "device", true, "device");
         CommandLineParser parser = new DefaultParser();
         try {
@@ -1,6 +1,7 @@
 package tracing.metrics;
 
 import com.codahale.metrics.*;
+import tracing.transport.SpillingTraceQueue;
 
 import java.io.File;
 import java.util.Queue;
@@ -16,6 +17,7 @@ public final class Metrics {
 
     private static final Meter outputEvents = metrics.meter("outputEvents");
     private static final Meter inputEvents = metrics.meter("inputEvents");
+    private static final Meter spilledBytes = metrics.meter("spilledBytes");
     private static final Histogram queueSizes = new Histogram(new UniformReservoir());
 
     public static void startReport() {
@@ -48,6 +50,10 @@ public final class Metrics {
         outputEvents.mark();
     }
 
+    public static void markOutputEvents(int n) {
+        outputEvents.mark(n);
+    }
+
     public static void markInputEvent() {
         inputEvents.mark();
     }
@@ -56,7 +62,14 @@ public final class Metrics {
         queueSizes.update(size);
     }
 
+    public static void markSpilledBytes(long n) {
+        spilledBytes.mark(n);
+    }
+
     public static void registerQueue(Queue<?> queue) {
         metrics.register("Queue", (Gauge<Integer>) queue::size);
+        if (queue instanceof SpillingTraceQueue) {
+            metrics.register("spillBacklogBytes", (Gauge<Long>) ((SpillingTraceQueue) queue)::spilledBytes);
+        }
     }
 }
@@ -0,0 +1,261 @@
+package tracing.source.orbuculum;
+
+import java.util.Arrays;
+
+/**
+ * Decoder for the raw ITM/DWT packet stream as served by orbuculum, a port of orbuculum's itmDecoder.c and
+ * msgDecoder.c (ARMv7-M Architecture Reference Manual, Appendix D4) without TPIU framing.
+ * <p>
+ * Bytes are pumped into the decoder one by one, decoded packets are reported to a listener. Only the packets the
+ * tracing uses are reported: software (instrumentation) packets, DWT data trace packets and overflows. Timestamps,
+ * exceptions, PC samples and other packets are decoded to stay in sync, but dropped. Not thread-safe.
+ */
+public class ITMDecoder {
+
+    /**
+     * Receives decoded packets.
+     */
+    public interface Listener {
+
+        /**
+         * Software packet written by the target to a stimulus port.
+         * @param channel the stimulus port
+         * @param value the written value, unsigned
+         */
+        void onSoftware(int channel, long value);
+
+        /**
+         * DWT data trace packet of a comparator (value of a watched variable on read or write).
+         * @param comparator the DWT comparator
+         * @param write whether it was a write access
+         * @param value the value, unsigned
+         */
+        void onDataTrace(int comparator, boolean write, long value);
+
+        /**
+         * The ITM dropped packets because the trace port was too slow.
+         */
+        void onOverflow();
+    }
+
+    private enum State { UNSYNCED, IDLE, SW, HW, TS, GTS1, GTS2, XTN, NISYNC, RSVD }
+
+    private enum PacketType { SW, HW, TS, XTN, NISYNC, RSVD }
+
+    // 5 zero bytes followed by 0x80
+    private static final long SYNC_MASK = 0xFFFFFFFFFFFFL;
+    private static final long SYNC_PATTERN = 0x000000000080L;
+    private static final int MAX_PACKET = 5;
+
+    private final Listener listener;
+    private State state;
+    // last 8 received bytes, to detect sync packets
+    private long syncStat = SYNC_MASK;
+    // payload of the current packet
+    private final int[] data = new int[MAX_PACKET + 2];
+    private int length;
+    // expected payload length of the current packet
+    private int targetCount;
+    // source address of the current packet
+    private int srcAddr;
+
+    private long overflowCount;
+    private long errorCount;
+
+    /**
+     * Creates a decoder.
+     * @param listener receives decoded packets
+     * @param startSynced whether the stream starts at a packet boundary, otherwise the decoder waits for a sync packet
+     */
+    public ITMDecoder(Listener listener, boolean startSynced) {
+        this.listener = listener;
+        this.state = startSynced ? State.IDLE : State.UNSYNCED;
+    }
+
+    /**
+     * Pumps received bytes into the decoder.
+     * @param buffer the bytes
+     * @param offset offset of the first byte
+     * @param count number of bytes
+     */
+    public void pump(byte[] buffer, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            this.pump(buffer[i]);
+        }
+    }
+
+    /**
+     * Pumps the next received byte into the decoder.
+     * @param b the byte
+     */
+    public void pump(byte b) {
+        int c = b & 0xFF;
+        var newState = this.state;
+
+        this.syncStat = (this.syncStat << 8) | c;
+        if ((this.syncStat & SYNC_MASK) == SYNC_PATTERN) {
+            this.state = State.IDLE;
+            return;
+        }
+
+        switch (this.state) {
+            case UNSYNCED:
+                break;
+
+            case IDLE:
+                Arrays.fill(this.data, 0);
+
+                if (c == 0) {
+                    // sync packet
+                    break;
+                }
+
+                if ((c & 0x03) != 0) {
+                    // source packet, instrumentation (SW) or hardware (HW)
+                    this.targetCount = (c & 0x03) == 3 ? 4 : c & 0x03;
+                    this.length = 0;
+                    this.srcAddr = (c & 0xF8) >> 3;
+                    newState = (c & 0x04) == 0 ? State.SW : State.HW;
+                    break;
+                }
+
+                if (c == 0x70) {
+                    this.overflowCount++;
+                    this.listener.onOverflow();
+                    break;
+                }
+
+                if ((c & 0x0F) == 0) {
+                    // local timestamp, format 1 has more bytes, format 2 is complete
+                    this.length = 1;
+                    this.data[0] = c;
+                    if ((c & 0x80) != 0) {
+                        newState = State.TS;
+                    } else {
+                        this.onPacket(PacketType.TS);
+                    }
+                    break;
+                }
+
+                if ((c & 0xDF) == 0x94) {
+                    // global timestamp
+                    newState = (c & 0x20) == 0 ? State.GTS1 : State.GTS2;
+                    break;
+                }
+
+                if (c == 0x08) {
+                    // I-sync packet
+                    newState = State.NISYNC;
+                    this.length = 0;
+                    this.targetCount = MAX_PACKET;
+                    break;
+                }
+
+                if ((c & 0x08) == 0x08) {
+                    // extension packet, a stimulus port page register setting if it has no continuation
+                    this.length = 1;
+                    this.data[0] = c;
+                    if ((c & 0x84) != 0) {
+                        newState = State.XTN;
+                    }
+                    break;
+                }
+
+                if ((c & 0x04) == 0x04 || (c & 0xF0) == 0xF0) {
+                    // reserved packet
+                    this.length = 1;
+                    this.data[0] = c;
+                    if ((c & 0x80) != 0) {
+                        newState = State.RSVD;
+                    } else {
+                        this.onPacket(PacketType.RSVD);
+                    }
+                    break;
+                }
+
+                // illegal packet, assume it's line noise
+                this.errorCount++;
+                break;
+
+            case GTS1:
+            case GTS2:
+                // wait for a zero continuation bit
+                if ((c & 0x80) == 0) {
+                    newState = State.IDLE;
+                }
+                break;
+
+            case SW:
+            case HW:
+                this.data[this.length++] = c;
+                if (this.length >= this.targetCount) {
+                    newState = State.IDLE;
+                    this.onPacket(this.state == State.SW ? PacketType.SW : PacketType.HW);
+                }
+                break;
+
+            case TS:
+            case RSVD:
+            case XTN:
+                this.data[this.length++] = c;
+                if ((c & 0x80) == 0 || this.length >= MAX_PACKET) {
+                    newState = State.IDLE;
+                    this.onPacket(this.state == State.TS ? PacketType.TS : this.state == State.XTN ? PacketType.XTN : PacketType.RSVD);
+                }
+                break;
+
+            case NISYNC:
+                this.data[this.length++] = c;
+                if (this.length > this.targetCount) {
+                    newState = State.IDLE;
+                    this.onPacket(PacketType.NISYNC);
+                }
+                break;
+        }
+
+        this.state = newState;
+    }
+
+    /**
+     * Dispatches a complete packet.
+     * @param type type of the packet
+     */
+    private void onPacket(PacketType type) {
+        switch (type) {
+            case SW:
+                this.listener.onSoftware(this.srcAddr, this.value());
+                break;
+
+            case HW:
+                if ((this.srcAddr & 0x18) == 0x10) {
+                    // data trace value packet, discriminator 0b10CCW of comparator CC, read or write access W
+                    this.listener.onDataTrace((this.srcAddr >> 1) & 0x03, (this.srcAddr & 0x01) != 0, this.value());
+                }
+                // DWT events, exceptions, PC samples, data trace address/offset packets are not used
+                break;
+
+            default:
+                // timestamps, synchronization, extension and reserved packets are not used
+                break;
+        }
+    }
+
+    /**
+     * Payload of the current packet as little-endian unsigned value.
+     */
+    private long value() {
+        return Integer.toUnsignedLong(this.data[0] | (this.data[1] << 8) | (this.data[2] << 16) | (this.data[3] << 24));
+    }
+
+    public boolean isSynced() {
+        return this.state != State.UNSYNCED;
+    }
+
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+}
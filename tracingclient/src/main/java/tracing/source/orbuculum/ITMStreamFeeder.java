@@ -0,0 +1,177 @@
+package tracing.source.orbuculum;
+
+import tracing.Config;
+import tracing.metrics.Metrics;
+import tracing.transport.TracePacket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads events directly from the raw ITM/DWT stream, e.g. served by orbuculum or recorded to a file, instead of the
+ * text output of the custom orbuculum trace tool.
+ * <p>
+ * The stimulus ports are used the same way as by the trace tool: 1/2 function enter (function and call site address),
+ * 3/4 function exit, 5/6 message send/receive and 10 log message characters.
+ */
+public class ITMStreamFeeder implements ITMDecoder.Listener {
+
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 3443;
+
+    private static final int CHANNEL_ENTER_1 = 1;
+    private static final int CHANNEL_ENTER_2 = 2;
+    private static final int CHANNEL_EXIT_1 = 3;
+    private static final int CHANNEL_EXIT_2 = 4;
+    private static final int CHANNEL_SEND = 5;
+    private static final int CHANNEL_RECEIVE = 6;
+    private static final int CHANNEL_LOG = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Queue<TracePacket> traceQueue;
+    private final AtomicLong lastEventTime;
+    private final Config config;
+    private final ITMDecoder decoder = new ITMDecoder(this, true);
+    // first part of a function event, completed by the second part
+    private TracePacket funPacket;
+    // characters of the current log message
+    private final ByteArrayOutputStream logMessage = new ByteArrayOutputStream();
+
+    public ITMStreamFeeder(Queue<TracePacket> traceQueue, AtomicLong lastEventTime, Config config) {
+        this.traceQueue = traceQueue;
+        this.lastEventTime = lastEventTime;
+        this.config = config;
+    }
+
+    /**
+     * Reads the stream on a new thread until it ends.
+     * @param in the raw ITM stream
+     * @param name name of the stream, for messages
+     */
+    public void start(InputStream in, String name) {
+        new Thread(() -> {
+            try (in) {
+                this.read(in);
+            } catch (IOException e) {
+                e.printStackTrace(System.out);
+            }
+
+            System.out.println("Exit trace (" + name + ").");
+        }).start();
+    }
+
+    /**
+     * Decodes the stream until it ends.
+     * @param in the raw ITM stream
+     */
+    public void read(InputStream in) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            this.decoder.pump(buffer, 0, n);
+        }
+    }
+
+    @Override
+    public void onSoftware(int channel, long value) {
+        switch (channel) {
+            case CHANNEL_ENTER_1:
+            case CHANNEL_EXIT_1:
+                this.funPacket = new TracePacket();
+                this.funPacket.setType(TracePacket.TYPE_FUNCTION);
+                this.funPacket.setSubType(channel == CHANNEL_ENTER_1 ? TracePacket.SUBTYPE_ENTER : TracePacket.SUBTYPE_EXIT);
+                this.funPacket.setTimestamp(System.currentTimeMillis());
+                this.funPacket.setFunctionAddress(value);
+                break;
+
+            case CHANNEL_ENTER_2:
+            case CHANNEL_EXIT_2:
+                if (this.funPacket != null) {
+                    this.funPacket.setCallSiteAddress(value);
+                    this.traceQueue.add(this.funPacket);
+                }
+                break;
+
+            case CHANNEL_SEND:
+            case CHANNEL_RECEIVE:
+                var packet = new TracePacket();
+                packet.setType(TracePacket.TYPE_MESSAGE);
+                packet.setSubType(channel == CHANNEL_SEND ? TracePacket.SUBTYPE_SEND : TracePacket.SUBTYPE_RECEIVE);
+                // same format as the trace tool, message IDs must match between targets
+                packet.setMessageId(Long.toHexString(value));
+                packet.setTimestamp(System.currentTimeMillis());
+                this.traceQueue.add(packet);
+                break;
+
+            case CHANNEL_LOG:
+                // one character per packet, a log message ends with a line break
+                var c = (int) (value & 0xFF);
+                if (c == '\n') {
+                    this.onLogMessage();
+                } else if (c != '\r') {
+                    this.logMessage.write(c);
+                }
+                return;
+
+            default:
+                System.out.println("[!] Unknown stimulus port: " + channel);
+                return;
+        }
+
+        Metrics.markInputEvent();
+        this.notifyEvent();
+    }
+
+    private void onLogMessage() {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_LOG);
+        packet.setLogMessage(new String(this.logMessage.toByteArray(), StandardCharsets.UTF_8));
+        packet.setTimestamp(System.currentTimeMillis());
+        this.logMessage.reset();
+
+        this.traceQueue.add(packet);
+        Metrics.markInputEvent();
+        this.notifyEvent();
+    }
+
+    @Override
+    public void onDataTrace(int comparator, boolean write, long value) {
+        var c = config.getWatchpoint(comparator);
+
+        if (c != null) {
+            var packet = new TracePacket();
+            packet.setType(TracePacket.TYPE_MEMORY);
+            packet.setSubType(write ? TracePacket.SUBTYPE_WRITE : TracePacket.SUBTYPE_READ);
+            packet.setMemoryAddress(c.getAddress());
+            packet.setMemoryValue(value);
+            packet.setTimestamp(System.currentTimeMillis());
+
+            this.traceQueue.add(packet);
+        }
+
+        Metrics.markInputEvent();
+        this.notifyEvent();
+    }
+
+    @Override
+    public void onOverflow() {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_OVERFLOW);
+        packet.setTimestamp(System.currentTimeMillis());
+        this.traceQueue.add(packet);
+
+        Metrics.markInputEvent();
+        this.notifyEvent();
+    }
+
+    /**
+     * Remember last event time to decide when to send heartbeat.
+     */
+    private void notifyEvent() {
+        this.lastEventTime.set(System.currentTimeMillis());
+    }
+}
@@ -5,7 +5,9 @@ import tracing.source.TraceSource;
 import tracing.transport.TracePacket;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.Socket;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -20,17 +22,50 @@ public class OrbuculumITMSource implements TraceSource {
     private final BlockingQueue<TracePacket> traceQueue;
     private final String device;
     private final boolean fpga;
+    // decode the raw ITM stream in Java instead of running the trace tool
+    private final boolean itmDecoder;
+    // recorded raw ITM stream to decode instead of the live stream, null for live tracing
+    private final File itmCapture;
 
     public OrbuculumITMSource(BlockingQueue<TracePacket> traceQueue, String device, boolean fpga) {
+        this(traceQueue, device, fpga, false, null);
+    }
+
+    /**
+     * Creates the source.
+     * @param traceQueue output queue
+     * @param device device type
+     * @param fpga whether to use FPGA tracing instead of SWO
+     * @param itmDecoder whether to decode the raw ITM stream of orbuculum in Java instead of running the trace tool
+     * @param itmCapture recorded raw ITM stream to decode instead of live tracing, null for live tracing
+     */
+    public OrbuculumITMSource(BlockingQueue<TracePacket> traceQueue, String device, boolean fpga, boolean itmDecoder, File itmCapture) {
         this.traceQueue = traceQueue;
         this.device = device;
         this.fpga = fpga;
+        this.itmDecoder = itmDecoder || itmCapture != null;
+        this.itmCapture = itmCapture;
     }
 
     @Override
     public void start(Config config) {
         var workingDir = new File(System.getProperty("user.dir"));
 
+        // remember last time an event happened
+        var lastEventTime = new AtomicLong(System.currentTimeMillis());
+
+        if (this.itmCapture != null) {
+            // replay a recorded stream, no target needed
+            System.out.println("Start decoding ITM capture " + this.itmCapture + "...");
+            try {
+                new ITMStreamFeeder(traceQueue, lastEventTime, config).start(new FileInputStream(this.itmCapture), this.itmCapture.getName());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.startHeartbeats(lastEventTime);
+            return;
+        }
+
         // create a gdb init script from a template
         System.out.println("Create swo.gdbinit...");
         InitFileHelper.writeGDBInitFile(workingDir, config);
@@ -47,17 +82,32 @@ public class OrbuculumITMSource implements TraceSource {
             e.printStackTrace();
         }
 
-        // remember last time an event happened
-        var lastEventTime = new AtomicLong(System.currentTimeMillis());
+        if (this.itmDecoder) {
+            // read the raw ITM stream from orbuculum, trace and log messages at once
+            System.out.println("Start trace capturing (ITM decoder)...");
+            try {
+                var socket = new Socket(ITMStreamFeeder.DEFAULT_HOST, ITMStreamFeeder.DEFAULT_PORT);
+                new ITMStreamFeeder(traceQueue, lastEventTime, config).start(socket.getInputStream(), "orbuculum");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            // start reading the orbuculum output
+            System.out.println("Start trace capturing...");
+            new OrbuculumTraceFeeder(traceQueue, lastEventTime, config, workingDir, false).start();
 
-        // start reading the orbuculum output
-        System.out.println("Start trace capturing...");
-        new OrbuculumTraceFeeder(traceQueue, lastEventTime, config, workingDir, false).start();
+            System.out.println("Start log message capturing...");
+            new OrbuculumTraceFeeder(traceQueue, lastEventTime, config, workingDir, true).start();
+        }
 
-        System.out.println("Start log message capturing...");
-        new OrbuculumTraceFeeder(traceQueue, lastEventTime, config, workingDir, true).start();
+        this.startHeartbeats(lastEventTime);
+    }
 
-        // send heartbeats if time between events is too long
+    /**
+     * Sends heartbeats if time between events is too long.
+     * @param lastEventTime time of the last event
+     */
+    private void startHeartbeats(AtomicLong lastEventTime) {
         new Thread(() -> {
             while (true) {
                 if ((System.currentTimeMillis() - lastEventTime.get()) > HEARTBEAT_INTERVAL) {
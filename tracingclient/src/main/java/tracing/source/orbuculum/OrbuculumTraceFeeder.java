@@ -6,8 +6,10 @@ import tracing.transport.TracePacket;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -15,11 +17,15 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class OrbuculumTraceFeeder {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final Queue<TracePacket> traceQueue;
     private final AtomicLong lastEventTime;
     private final Config config;
     private final File workingDir;
     private final boolean log;
+    // first part of a function event, completed by the second part
+    private TracePacket funPacket;
 
     public OrbuculumTraceFeeder(Queue<TracePacket> traceQueue, AtomicLong lastEventTime, Config config, File workingDir, boolean log) {
         this.traceQueue = traceQueue;
@@ -43,105 +49,226 @@ public class OrbuculumTraceFeeder {
                 // start trace tool
                 Process process = builder.start();
 
-                try (var in = process.getInputStream(); var scanner = new Scanner(in)) {
+                try (var in = process.getInputStream()) {
+                    this.read(in);
+                }
+            } catch (IOException e) {
+                e.printStackTrace(System.out);
+            }
 
-                    TracePacket funPacket = null;
+            System.out.println("Exit trace.");
+        }).start();
+    }
 
-                    while (scanner.hasNextLine()) {
-                        // get event from program output
-                        var event = scanner.nextLine();
+    /**
+     * Reads the output of the trace tool line by line directly from a byte buffer, without creating a string per line.
+     * @param in output of the trace tool
+     */
+    void read(InputStream in) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        // start of the current line, end of the data in the buffer and position up to which we searched for line ends
+        int lineStart = 0, end = 0, scanned = 0;
 
-                        Metrics.markInputEvent();
+        while (true) {
+            if (end == buffer.length) {
+                if (lineStart > 0) {
+                    // move the incomplete line to the start of the buffer
+                    System.arraycopy(buffer, lineStart, buffer, 0, end - lineStart);
+                    end -= lineStart;
+                    scanned -= lineStart;
+                    lineStart = 0;
+                } else {
+                    // the line is longer than the buffer (long log message)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
 
-                        // create log event, if we should listen for log messages
-                        if (log) {
-                            var packet = new TracePacket();
-                            packet.setType(TracePacket.TYPE_LOG);
-                            packet.setLogMessage(event);
-                            packet.setTimestamp(System.currentTimeMillis());
+            int n = in.read(buffer, end, buffer.length - end);
+            if (n < 0) {
+                if (end > lineStart) {
+                    this.onLine(buffer, lineStart, end);
+                }
+                return;
+            }
+            end += n;
 
-                            this.traceQueue.add(packet);
-                            this.notifyEvent();
+            for (; scanned < end; scanned++) {
+                if (buffer[scanned] == '\n') {
+                    this.onLine(buffer, lineStart, scanned);
+                    lineStart = scanned + 1;
+                }
+            }
+            if (lineStart == end) {
+                lineStart = end = scanned = 0;
+            }
+        }
+    }
 
-                            continue;
-                        }
+    /**
+     * Handles one line of output of the trace tool.
+     * @param line buffer containing the line
+     * @param from start of the line
+     * @param to end of the line (exclusive, without line break)
+     */
+    private void onLine(byte[] line, int from, int to) {
+        if (to > from && line[to - 1] == '\r') {
+            to--;
+        }
+
+        Metrics.markInputEvent();
+
+        // create log event, if we should listen for log messages
+        if (log) {
+            var packet = new TracePacket();
+            packet.setType(TracePacket.TYPE_LOG);
+            packet.setLogMessage(new String(line, from, to - from, StandardCharsets.UTF_8));
+            packet.setTimestamp(System.currentTimeMillis());
+
+            this.traceQueue.add(packet);
+            this.notifyEvent();
+            return;
+        }
+
+        if (to - from >= 3 && line[from] == 'I' && line[from + 1] == 'T' && line[from + 2] == 'M') {
+            // overflow
+            var packet = new TracePacket();
+            packet.setType(TracePacket.TYPE_OVERFLOW);
+            packet.setTimestamp(System.currentTimeMillis());
+            this.traceQueue.add(packet);
+            this.notifyEvent();
+            return;
+        }
+
+        // fields are separated by commas, the first one is the event kind
+        int f1 = nextField(line, from, to);
+        int f2 = nextField(line, f1, to);
+        int f3 = nextField(line, f2, to);
+        if (to == from || f2 > to) {
+            System.out.println("[!] Unknown event: " + new String(line, from, to - from, StandardCharsets.UTF_8));
+            return;
+        }
+
+        try {
+            if (line[from] == 'f') { // function enter or exit
+                var type = line[f1];
+                var fun = parseHex(line, f2, fieldEnd(f3, to));
 
-                        if (event.startsWith("ITM")) {
-                            // overflow
-                            var packet = new TracePacket();
-                            packet.setType(TracePacket.TYPE_OVERFLOW);
-                            packet.setTimestamp(System.currentTimeMillis());
-                            this.traceQueue.add(packet);
-
-                        } else {
-                            if (event.startsWith("f")) { // function enter or exit
-                                var parts = event.split(",");
-                                var type = parts[1];
-                                var fun = parts[2];
-
-                                switch (type) {
-                                    case "1": // enter #1
-                                    case "3": // exit #1
-                                        funPacket = new TracePacket();
-                                        funPacket.setType(TracePacket.TYPE_FUNCTION);
-                                        funPacket.setSubType(type.equals("1") ? TracePacket.SUBTYPE_ENTER : TracePacket.SUBTYPE_EXIT);
-                                        funPacket.setTimestamp(System.currentTimeMillis());
-                                        funPacket.setFunctionAddress(Long.parseLong(fun, 16));
-                                        break;
-
-                                    case "2": // enter #2
-                                    case "4": // exit #2
-                                        if (funPacket != null) {
-                                            funPacket.setCallSiteAddress(Long.parseLong(fun, 16));
-                                            this.traceQueue.add(funPacket);
-                                        }
-                                        break;
-                                }
-                            } else if (event.startsWith("d")) { // data event
-                                var parts = event.split(",");
-                                var comp = Integer.parseInt(parts[1]);
-                                var write = parts[2].equals("w");
-                                var value = parts[3];
-                                var c = config.getWatchpoint(comp);
-
-                                if (c != null) {
-                                    var packet = new TracePacket();
-                                    packet.setType(TracePacket.TYPE_MEMORY);
-                                    packet.setSubType(write ? TracePacket.SUBTYPE_WRITE : TracePacket.SUBTYPE_READ);
-                                    packet.setMemoryAddress(c.getAddress());
-                                    packet.setMemoryValue(Long.parseLong(value, 16));
-                                    packet.setTimestamp(System.currentTimeMillis());
-
-                                    this.traceQueue.add(packet);
-                                }
-
-                            } else if (event.startsWith("m")) { // message event
-                                var parts = event.split(",");
-                                var send = parts[1].equals("1");
-                                var msgId = parts[2];
-
-                                var packet = new TracePacket();
-                                packet.setType(TracePacket.TYPE_MESSAGE);
-                                packet.setSubType(send ? TracePacket.SUBTYPE_SEND : TracePacket.SUBTYPE_RECEIVE);
-                                packet.setMessageId(msgId);
-                                packet.setTimestamp(System.currentTimeMillis());
-
-                                this.traceQueue.add(packet);
-
-                            } else {
-                                // some other event
-                                System.out.println("[!] Unknown event: " + event);
-                            }
+                switch (type) {
+                    case '1': // enter #1
+                    case '3': // exit #1
+                        funPacket = new TracePacket();
+                        funPacket.setType(TracePacket.TYPE_FUNCTION);
+                        funPacket.setSubType(type == '1' ? TracePacket.SUBTYPE_ENTER : TracePacket.SUBTYPE_EXIT);
+                        funPacket.setTimestamp(System.currentTimeMillis());
+                        funPacket.setFunctionAddress(fun);
+                        break;
+
+                    case '2': // enter #2
+                    case '4': // exit #2
+                        if (funPacket != null) {
+                            funPacket.setCallSiteAddress(fun);
+                            this.traceQueue.add(funPacket);
                         }
-                        this.notifyEvent();
-                    }
+                        break;
                 }
-            } catch (IOException e) {
-                e.printStackTrace(System.out);
+            } else if (line[from] == 'd') { // data event
+                int f4 = nextField(line, f3, to);
+                var comp = (int) parseDecimal(line, f1, f2 - 1);
+                var write = f3 - f2 == 2 && line[f2] == 'w';
+                var value = parseHex(line, f3, fieldEnd(f4, to));
+                var c = config.getWatchpoint(comp);
+
+                if (c != null) {
+                    var packet = new TracePacket();
+                    packet.setType(TracePacket.TYPE_MEMORY);
+                    packet.setSubType(write ? TracePacket.SUBTYPE_WRITE : TracePacket.SUBTYPE_READ);
+                    packet.setMemoryAddress(c.getAddress());
+                    packet.setMemoryValue(value);
+                    packet.setTimestamp(System.currentTimeMillis());
+
+                    this.traceQueue.add(packet);
+                }
+
+            } else if (line[from] == 'm') { // message event
+                var send = f2 - f1 == 2 && line[f1] == '1';
+                var msgId = new String(line, f2, fieldEnd(f3, to) - f2, StandardCharsets.US_ASCII);
+
+                var packet = new TracePacket();
+                packet.setType(TracePacket.TYPE_MESSAGE);
+                packet.setSubType(send ? TracePacket.SUBTYPE_SEND : TracePacket.SUBTYPE_RECEIVE);
+                packet.setMessageId(msgId);
+                packet.setTimestamp(System.currentTimeMillis());
+
+                this.traceQueue.add(packet);
+
+            } else {
+                // some other event
+                System.out.println("[!] Unknown event: " + new String(line, from, to - from, StandardCharsets.UTF_8));
             }
+        } catch (NumberFormatException e) {
+            System.out.println("[!] Invalid event: " + new String(line, from, to - from, StandardCharsets.UTF_8));
+        }
+        this.notifyEvent();
+    }
 
-            System.out.println("Exit trace.");
-        }).start();
+    /**
+     * Finds the start of the next field.
+     * @param line the line
+     * @param from start of the current field
+     * @param to end of the line
+     * @return index after the next comma, to + 1 if there is none
+     */
+    private static int nextField(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == ',') {
+                return i + 1;
+            }
+        }
+        return to + 1;
+    }
+
+    /**
+     * End of a field given the start of the following field.
+     */
+    private static int fieldEnd(int nextField, int to) {
+        return Math.min(nextField - 1, to);
+    }
+
+    private static long parseHex(byte[] line, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int b = line[i];
+            int digit;
+            if (b >= '0' && b <= '9') {
+                digit = b - '0';
+            } else if (b >= 'a' && b <= 'f') {
+                digit = b - 'a' + 10;
+            } else if (b >= 'A' && b <= 'F') {
+                digit = b - 'A' + 10;
+            } else {
+                throw new NumberFormatException();
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static long parseDecimal(byte[] line, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 
     /**
@@ -0,0 +1,266 @@
+package tracing.transport;
+
+import tracing.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * FIFO store of trace packets in memory-mapped segment files, used by the {@link SpillingTraceQueue} when its memory
+ * is full. Segments are deleted as soon as they are read completely. Not thread-safe.
+ * <p>
+ * Every packet is stored as record: its length (int), a bitmask of the present fields (short) and the present
+ * fields (i, j as int, f, c, a, v, t, s as long, m, l as length-prefixed UTF-8).
+ */
+public class SpillStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".spill";
+
+    private static final int FIELD_I = 1;
+    private static final int FIELD_J = 1 << 1;
+    private static final int FIELD_F = 1 << 2;
+    private static final int FIELD_C = 1 << 3;
+    private static final int FIELD_A = 1 << 4;
+    private static final int FIELD_V = 1 << 5;
+    private static final int FIELD_T = 1 << 6;
+    private static final int FIELD_S = 1 << 7;
+    private static final int FIELD_M = 1 << 8;
+    private static final int FIELD_L = 1 << 9;
+
+    private final Path directory;
+    private final int segmentSize;
+    // segments in order, writes go to the last one, reads come from the first one
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSegment = 0;
+    // number of stored packets
+    private int count = 0;
+    // number of stored bytes
+    private long bytes = 0;
+
+    /**
+     * Creates a store, segments of a previous run in the directory are deleted.
+     * @param directory directory of the segment files
+     * @param segmentSize size of a segment file in bytes
+     */
+    public SpillStore(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        var stale = directory.toFile().listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    public int count() {
+        return this.count;
+    }
+
+    public long bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Appends a packet.
+     * @param tracePacket the packet
+     */
+    public void write(TracePacket tracePacket) throws IOException {
+        var m = tracePacket.getM() != null ? tracePacket.getM().getBytes(StandardCharsets.UTF_8) : null;
+        var l = tracePacket.getL() != null ? tracePacket.getL().getBytes(StandardCharsets.UTF_8) : null;
+
+        int mask = (tracePacket.getI() != null ? FIELD_I : 0)
+                | (tracePacket.getJ() != null ? FIELD_J : 0)
+                | (tracePacket.getF() != null ? FIELD_F : 0)
+                | (tracePacket.getC() != null ? FIELD_C : 0)
+                | (tracePacket.getA() != null ? FIELD_A : 0)
+                | (tracePacket.getV() != null ? FIELD_V : 0)
+                | (tracePacket.getT() != null ? FIELD_T : 0)
+                | (tracePacket.getS() != null ? FIELD_S : 0)
+                | (m != null ? FIELD_M : 0)
+                | (l != null ? FIELD_L : 0);
+        int size = 4 + 2
+                + 4 * Integer.bitCount(mask & (FIELD_I | FIELD_J))
+                + 8 * Integer.bitCount(mask & (FIELD_F | FIELD_C | FIELD_A | FIELD_V | FIELD_T | FIELD_S))
+                + (m != null ? 4 + m.length : 0)
+                + (l != null ? 4 + l.length : 0);
+        if (size > this.segmentSize) {
+            throw new IOException("Trace packet too large to spill: " + size + " bytes");
+        }
+
+        var segment = this.segments.peekLast();
+        if (segment == null || segment.buffer.capacity() - segment.writePosition < size) {
+            segment = this.newSegment();
+        }
+
+        var buffer = segment.buffer;
+        buffer.position(segment.writePosition);
+        buffer.putInt(size);
+        buffer.putShort((short) mask);
+        if (tracePacket.getI() != null) {
+            buffer.putInt(tracePacket.getI());
+        }
+        if (tracePacket.getJ() != null) {
+            buffer.putInt(tracePacket.getJ());
+        }
+        if (tracePacket.getF() != null) {
+            buffer.putLong(tracePacket.getF());
+        }
+        if (tracePacket.getC() != null) {
+            buffer.putLong(tracePacket.getC());
+        }
+        if (tracePacket.getA() != null) {
+            buffer.putLong(tracePacket.getA());
+        }
+        if (tracePacket.getV() != null) {
+            buffer.putLong(tracePacket.getV());
+        }
+        if (tracePacket.getT() != null) {
+            buffer.putLong(tracePacket.getT());
+        }
+        if (tracePacket.getS() != null) {
+            buffer.putLong(tracePacket.getS());
+        }
+        if (m != null) {
+            buffer.putInt(m.length).put(m);
+        }
+        if (l != null) {
+            buffer.putInt(l.length).put(l);
+        }
+        segment.writePosition += size;
+
+        this.count++;
+        this.bytes += size;
+        Metrics.markSpilledBytes(size);
+    }
+
+    /**
+     * Removes and returns the oldest packet.
+     * @return the packet, null if the store is empty
+     */
+    public TracePacket read() {
+        var segment = this.segments.peekFirst();
+        if (segment == null || this.count == 0) {
+            return null;
+        }
+        if (segment.readPosition == segment.writePosition) {
+            // segment read completely, continue with the next one
+            this.segments.pollFirst().delete();
+            segment = this.segments.peekFirst();
+        }
+
+        var buffer = segment.buffer;
+        buffer.position(segment.readPosition);
+        int size = buffer.getInt();
+        int mask = buffer.getShort();
+
+        var tracePacket = new TracePacket();
+        if ((mask & FIELD_I) != 0) {
+            tracePacket.setType(buffer.getInt());
+        }
+        if ((mask & FIELD_J) != 0) {
+            tracePacket.setSubType(buffer.getInt());
+        }
+        if ((mask & FIELD_F) != 0) {
+            tracePacket.setFunctionAddress(buffer.getLong());
+        }
+        if ((mask & FIELD_C) != 0) {
+            tracePacket.setCallSiteAddress(buffer.getLong());
+        }
+        if ((mask & FIELD_A) != 0) {
+            tracePacket.setMemoryAddress(buffer.getLong());
+        }
+        if ((mask & FIELD_V) != 0) {
+            tracePacket.setMemoryValue(buffer.getLong());
+        }
+        if ((mask & FIELD_T) != 0) {
+            tracePacket.setTimestamp(buffer.getLong());
+        }
+        if ((mask & FIELD_S) != 0) {
+            tracePacket.setSequenceNumber(buffer.getLong());
+        }
+        if ((mask & FIELD_M) != 0) {
+            tracePacket.setMessageId(readString(buffer));
+        }
+        if ((mask & FIELD_L) != 0) {
+            tracePacket.setLogMessage(readString(buffer));
+        }
+        segment.readPosition += size;
+
+        this.count--;
+        this.bytes -= size;
+        if (this.count == 0) {
+            // reuse the last segment from the start
+            while (this.segments.size() > 1) {
+                this.segments.pollFirst().delete();
+            }
+            segment.readPosition = segment.writePosition = 0;
+        }
+        return tracePacket;
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Segment newSegment() throws IOException {
+        var path = this.directory.resolve("segment-" + this.nextSegment++ + SEGMENT_SUFFIX);
+        MappedByteBuffer buffer;
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(this.segmentSize);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        }
+        var segment = new Segment(path, buffer);
+        this.segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * Deletes all segment files.
+     */
+    public void close() {
+        while (!this.segments.isEmpty()) {
+            this.segments.pollFirst().delete();
+        }
+        this.count = 0;
+        this.bytes = 0;
+    }
+
+    /**
+     * A segment file and its read and write positions.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        void delete() {
+            // the mapping is released by the GC, the file can be deleted before
+            this.path.toFile().delete();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package tracing.transport;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue between source and transport that keeps a bounded number of packets in memory and spills further packets to
+ * disk ({@link SpillStore}), e.g. while the server is unreachable and the transport does not consume packets.
+ * <p>
+ * Packets stay in order: while packets are spilled, new packets are spilled as well, and spilled packets are moved
+ * back into memory in batches as the transport consumes packets. Adding never blocks.
+ */
+public class SpillingTraceQueue extends AbstractQueue<TracePacket> implements BlockingQueue<TracePacket> {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // maximum number of packets moved from disk to memory at once
+    private static final int REFILL_BATCH = 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    // packets in memory, older than all spilled packets
+    private final ArrayDeque<TracePacket> memory = new ArrayDeque<>();
+    private final int capacity;
+    private final SpillStore spillStore;
+    // spilling failed, keep everything in memory
+    private boolean spillFailed = false;
+
+    /**
+     * Creates a queue.
+     * @param capacity maximum number of packets in memory
+     * @param spillDirectory directory of the spill files
+     */
+    public SpillingTraceQueue(int capacity, Path spillDirectory) throws IOException {
+        this.capacity = capacity;
+        this.spillStore = new SpillStore(spillDirectory, SpillStore.DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Override
+    public boolean offer(TracePacket tracePacket) {
+        this.lock.lock();
+        try {
+            if (this.spillFailed || (this.spillStore.isEmpty() && this.memory.size() < this.capacity)) {
+                this.memory.addLast(tracePacket);
+            } else {
+                try {
+                    this.spillStore.write(tracePacket);
+                } catch (IOException e) {
+                    System.err.println("Spilling trace packets failed, keeping them in memory: " + e.getMessage());
+                    this.spillFailed = true;
+                    this.memory.addLast(tracePacket);
+                }
+            }
+            this.notEmpty.signal();
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(TracePacket tracePacket) {
+        this.offer(tracePacket);
+    }
+
+    @Override
+    public boolean offer(TracePacket tracePacket, long timeout, TimeUnit unit) {
+        return this.offer(tracePacket);
+    }
+
+    /**
+     * Removes the oldest packet, the lock must be held.
+     * @return the packet, null if empty
+     */
+    private TracePacket dequeue() {
+        if (this.memory.isEmpty()) {
+            this.refill();
+        }
+        return this.memory.pollFirst();
+    }
+
+    /**
+     * Moves spilled packets back into memory, the lock must be held.
+     */
+    private void refill() {
+        for (int i = 0; i < REFILL_BATCH && this.memory.size() < this.capacity; i++) {
+            var tracePacket = this.spillStore.read();
+            if (tracePacket == null) {
+                return;
+            }
+            this.memory.addLast(tracePacket);
+        }
+    }
+
+    @Override
+    public TracePacket poll() {
+        this.lock.lock();
+        try {
+            return this.dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TracePacket take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.memory.isEmpty() && this.spillStore.isEmpty()) {
+                this.notEmpty.await();
+            }
+            return this.dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TracePacket poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            while (this.memory.isEmpty() && this.spillStore.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            return this.dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public TracePacket peek() {
+        this.lock.lock();
+        try {
+            if (this.memory.isEmpty()) {
+                this.refill();
+            }
+            return this.memory.peekFirst();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super TracePacket> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super TracePacket> c, int maxElements) {
+        this.lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements) {
+                var tracePacket = this.dequeue();
+                if (tracePacket == null) {
+                    break;
+                }
+                c.add(tracePacket);
+                n++;
+            }
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Number of packets in memory and on disk.
+     */
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.memory.size() + this.spillStore.count();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Number of bytes currently spilled to disk.
+     */
+    public long spilledBytes() {
+        this.lock.lock();
+        try {
+            return this.spillStore.bytes();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Iterates over a snapshot of the packets in memory, spilled packets are not included.
+     */
+    @Override
+    public Iterator<TracePacket> iterator() {
+        this.lock.lock();
+        try {
+            return new ArrayList<>(this.memory).iterator();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the spill files, spilled packets are lost.
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            this.spillStore.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
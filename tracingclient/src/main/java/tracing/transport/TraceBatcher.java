@@ -0,0 +1,95 @@
+package tracing.transport;
+
+import com.google.gson.Gson;
+import tracing.metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the trace packets of a transport from its queue in batches, numbers them and encodes every batch into a
+ * single payload (message, frame or record), binary or JSON.
+ */
+public class TraceBatcher {
+
+    private final Gson gson = new Gson();
+    private final TracePacketEncoder encoder = new TracePacketEncoder();
+    private final BlockingQueue<TracePacket> traceQueue;
+    // encode trace packets as JSON instead of the binary format, for debugging
+    private final boolean json;
+    // maximum number of packets per payload, 1 to disable batching
+    private final int batchSize;
+    // maximum time in ms to wait for more packets before a batch is encoded
+    private final long batchDelay;
+    // packets of the current batch
+    private final List<TracePacket> batch = new ArrayList<>();
+    // sequence number of the last taken packet
+    private long sequenceNumber = 0;
+
+    /**
+     * Creates a batcher.
+     * @param traceQueue queue of packets to send
+     * @param json whether to encode JSON instead of binary packets
+     * @param batchSize maximum number of packets per payload, 1 to encode every packet on its own
+     * @param batchDelay maximum time in ms to wait for more packets before a batch is encoded
+     */
+    public TraceBatcher(BlockingQueue<TracePacket> traceQueue, boolean json, int batchSize, long batchDelay) {
+        this.traceQueue = traceQueue;
+        this.json = json;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = Math.max(0, batchDelay);
+    }
+
+    /**
+     * Waits for the next packet, then adds packets to its batch until the batch is full or the batch delay passed
+     * since that first packet was taken. The packets are numbered in the order they are taken.
+     * @return the payload of the batch, a single packet if the batch has only one
+     */
+    public byte[] take() throws InterruptedException {
+        this.batch.add(this.traceQueue.take());
+        if (this.batchSize > 1) {
+            this.fillBatch();
+        }
+        Metrics.markOutputEvents(this.batch.size());
+        Metrics.updateQueueSize(this.traceQueue.size());
+
+        for (var tracePacket : this.batch) {
+            tracePacket.setSequenceNumber(++this.sequenceNumber);
+        }
+        byte[] payload;
+        if (this.batch.size() == 1) {
+            var tracePacket = this.batch.get(0);
+            payload = this.json
+                    ? this.gson.toJson(tracePacket).getBytes(StandardCharsets.UTF_8)
+                    : this.encoder.encode(tracePacket);
+        } else {
+            payload = this.json
+                    ? this.gson.toJson(this.batch).getBytes(StandardCharsets.UTF_8)
+                    : this.encoder.encode(this.batch);
+        }
+        this.batch.clear();
+        return payload;
+    }
+
+    /**
+     * Adds packets to the batch until it is full or the batch delay passed, counted from the call of this method.
+     */
+    private void fillBatch() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.batchDelay);
+        while (true) {
+            this.traceQueue.drainTo(this.batch, this.batchSize - this.batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (this.batch.size() >= this.batchSize || remaining <= 0) {
+                return;
+            }
+            var tracePacket = this.traceQueue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (tracePacket == null) {
+                return;
+            }
+            this.batch.add(tracePacket);
+        }
+    }
+}
@@ -43,6 +43,9 @@ public class TracePacket {
     // timestamp
     private Long t;
 
+    // sequence number, assigned by the transport
+    private Long s;
+
     public TracePacket() {}
 
     public Integer getI() {
@@ -101,6 +104,14 @@ public class TracePacket {
         this.t = t;
     }
 
+    public Long getS() {
+        return s;
+    }
+
+    public void setSequenceNumber(Long s) {
+        this.s = s;
+    }
+
     public String getM() {
         return m;
     }
@@ -129,6 +140,7 @@ public class TracePacket {
                 ", m='" + m + '\'' +
                 ", l='" + l + '\'' +
                 ", t=" + t +
+                ", s=" + s +
                 '}';
     }
 }
@@ -0,0 +1,149 @@
+package tracing.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes trace packets in the compact binary format understood by the server (TracePacketDecoder).
+ * <p>
+ * A frame starts with the magic byte, the format version and the sequence number of the first packet as varint (0 if
+ * the packets are not numbered, the packets of a frame are numbered consecutively), followed by one or more packets.
+ * Every packet consists
+ * of its type (0xFF if none, e.g. heartbeats), a byte with one bit per present field (j, f, c, a, v, m, l, t) and the
+ * present fields in this order. Numbers are varints, memory values and timestamps zigzag-encoded varints, strings
+ * a varint length followed by UTF-8 bytes. The timestamp is stored as difference to the timestamp of the previous
+ * packet in the frame, so only the first timestamp of a frame is absolute.
+ * <p>
+ * Not thread-safe, the encoder reuses its buffer.
+ */
+public class TracePacketEncoder {
+
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte VERSION = 2;
+
+    private static final int NO_TYPE = 0xFF;
+
+    private static final int FIELD_J = 1;
+    private static final int FIELD_F = 1 << 1;
+    private static final int FIELD_C = 1 << 2;
+    private static final int FIELD_A = 1 << 3;
+    private static final int FIELD_V = 1 << 4;
+    private static final int FIELD_M = 1 << 5;
+    private static final int FIELD_L = 1 << 6;
+    private static final int FIELD_T = 1 << 7;
+
+    private byte[] buffer = new byte[256];
+    private int position;
+    // timestamp of the previous packet in the frame
+    private long lastTimestamp;
+
+    /**
+     * Encodes a single packet as a frame.
+     * @param tracePacket the packet
+     * @return the frame
+     */
+    public byte[] encode(TracePacket tracePacket) {
+        this.startFrame(tracePacket.getS());
+        this.writePacket(tracePacket);
+        return Arrays.copyOf(this.buffer, this.position);
+    }
+
+    /**
+     * Encodes several packets as a single frame.
+     * @param tracePackets the packets
+     * @return the frame
+     */
+    public byte[] encode(List<TracePacket> tracePackets) {
+        var first = tracePackets.isEmpty() ? null : tracePackets.get(0).getS();
+        this.startFrame(first);
+        for (int i = 0; i < tracePackets.size(); i++) {
+            var tracePacket = tracePackets.get(i);
+            if (first != null && !Long.valueOf(first + i).equals(tracePacket.getS())) {
+                throw new IllegalArgumentException("Packets of a frame must be numbered consecutively");
+            }
+            this.writePacket(tracePacket);
+        }
+        return Arrays.copyOf(this.buffer, this.position);
+    }
+
+    private void startFrame(Long sequenceNumber) {
+        this.position = 0;
+        this.lastTimestamp = 0;
+        this.writeByte(MAGIC);
+        this.writeByte(VERSION);
+        this.writeVarint(sequenceNumber != null ? sequenceNumber : 0);
+    }
+
+    private void writePacket(TracePacket p) {
+        int fields = (p.getJ() != null ? FIELD_J : 0)
+                | (p.getF() != null ? FIELD_F : 0)
+                | (p.getC() != null ? FIELD_C : 0)
+                | (p.getA() != null ? FIELD_A : 0)
+                | (p.getV() != null ? FIELD_V : 0)
+                | (p.getM() != null ? FIELD_M : 0)
+                | (p.getL() != null ? FIELD_L : 0)
+                | (p.getT() != null ? FIELD_T : 0);
+
+        this.writeByte(p.getI() != null ? p.getI() : NO_TYPE);
+        this.writeByte(fields);
+
+        if (p.getJ() != null) {
+            this.writeVarint(p.getJ());
+        }
+        if (p.getF() != null) {
+            this.writeVarint(p.getF());
+        }
+        if (p.getC() != null) {
+            this.writeVarint(p.getC());
+        }
+        if (p.getA() != null) {
+            this.writeVarint(p.getA());
+        }
+        if (p.getV() != null) {
+            this.writeVarint(zigzag(p.getV()));
+        }
+        if (p.getM() != null) {
+            this.writeString(p.getM());
+        }
+        if (p.getL() != null) {
+            this.writeString(p.getL());
+        }
+        if (p.getT() != null) {
+            this.writeVarint(zigzag(p.getT() - this.lastTimestamp));
+            this.lastTimestamp = p.getT();
+        }
+    }
+
+    private void writeString(String s) {
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        this.writeVarint(bytes.length);
+        this.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+        this.ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    private void writeByte(int b) {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = (byte) b;
+    }
+
+    private void ensureCapacity(int n) {
+        if (this.position + n > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + n));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -9,6 +9,7 @@ import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAckReasonCo
 import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
 import tracing.Config;
 import tracing.metrics.Metrics;
+import tracing.transport.TraceBatcher;
 import tracing.transport.TracePacket;
 import tracing.transport.TraceStartListener;
 import tracing.transport.TraceTransport;
@@ -17,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Transport implementation that uses the MQTT protocol.
@@ -30,6 +32,16 @@ public class MQTTTransport implements TraceTransport {
 
     private Mqtt5AsyncClient mqttClient;
     private final Gson gson = new Gson();
+    // takes the packets of a MQTT message from the queue and encodes them
+    private final TraceBatcher batcher;
+    // QoS of trace messages, with QoS 0 the server detects lost packets by their sequence numbers
+    private final MqttQos traceQos;
+    // connected to the broker? packets are only taken from the queue while connected
+    private volatile boolean connected = false;
+    // connected at least once, later disconnects are handled by reconnecting automatically
+    private volatile boolean connectedOnce = false;
+    // config received, tracing started?
+    private volatile boolean started = false;
 
     private final String deviceName;
     private final String serverHost;
@@ -37,6 +49,24 @@ public class MQTTTransport implements TraceTransport {
     private final TraceStartListener traceStartListener;
 
     public MQTTTransport(BlockingQueue<TracePacket> traceQueue, String deviceName, String serverHost, TraceStartListener traceStartListener) {
+        this(traceQueue, deviceName, serverHost, traceStartListener, false, 1, 0, MqttQos.AT_LEAST_ONCE);
+    }
+
+    /**
+     * Creates a MQTT transport.
+     * @param traceQueue queue of packets to send
+     * @param deviceName name of the target/observer pair
+     * @param serverHost server host/IP
+     * @param traceStartListener notified when the server config is received
+     * @param json whether to send JSON instead of binary packets
+     * @param batchSize maximum number of packets per message, 1 to send every packet as its own message
+     * @param batchDelay maximum time in ms to wait for more packets before a batch is sent
+     * @param traceQos QoS of trace messages
+     */
+    public MQTTTransport(BlockingQueue<TracePacket> traceQueue, String deviceName, String serverHost, TraceStartListener traceStartListener,
+                         boolean json, int batchSize, long batchDelay, MqttQos traceQos) {
+        this.batcher = new TraceBatcher(traceQueue, json, batchSize, batchDelay);
+        this.traceQos = traceQos;
         this.traceQueue = traceQueue;
         this.traceStartListener = Objects.requireNonNull(traceStartListener);
         this.deviceName = deviceName;
@@ -49,6 +79,20 @@ public class MQTTTransport implements TraceTransport {
         this.mqttClient = MqttClient.builder()
                 .identifier(UUID.randomUUID().toString())
                 .serverHost(serverHost)
+                .addConnectedListener(context -> {
+                    this.connected = true;
+                    if (this.connectedOnce) {
+                        // the server marked the target as disconnected, announce it again
+                        this.publishReady();
+                    }
+                })
+                .addDisconnectedListener(context -> {
+                    this.connected = false;
+                    if (this.connectedOnce) {
+                        System.err.println("Connection to MQTT broker lost, reconnecting: " + context.getCause().getMessage());
+                        context.getReconnector().reconnect(true).delay(RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+                    }
+                })
                 .useMqttVersion5()
                 .buildAsync();
 
@@ -64,38 +108,48 @@ public class MQTTTransport implements TraceTransport {
     }
 
     /**
-     * Connect to server and send ready message.
+     * Connect to server and send ready message, retry until connected.
      */
     private void connect() {
-        System.out.println("Try connecting to MQTT broker...");
-
         var mqtt5Connect = Mqtt5Connect.builder()
                 .cleanStart(false) // persistent storage of messages in case of connection loss
                 .noSessionExpiry()
                 .build();
 
-        try {
-            var res = this.mqttClient.toBlocking().connect(mqtt5Connect);
-            if (res.getReasonCode() != Mqtt5ConnAckReasonCode.SUCCESS) {
-                Thread.sleep(RECONNECT_DELAY);
-                this.connect();
+        while (true) {
+            System.out.println("Try connecting to MQTT broker...");
+            try {
+                var res = this.mqttClient.toBlocking().connect(mqtt5Connect);
+                if (res.getReasonCode() == Mqtt5ConnAckReasonCode.SUCCESS) {
+                    break;
+                }
+                System.err.println("MQTT broker refused connection: " + res.getReasonCode());
+            } catch (Exception e) {
+                e.printStackTrace();
             }
 
-            System.out.println("Connected to MQTT broker.");
-
-            this.mqttClient.publishWith().topic(READY_TOPIC + "/"  + deviceName)
-                    .qos(MqttQos.AT_LEAST_ONCE)
-                    .send();
-
-        } catch (Exception e) {
-            e.printStackTrace();
             try {
                 Thread.sleep(RECONNECT_DELAY);
-            } catch (InterruptedException interruptedException) {
-                interruptedException.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-            this.connect();
         }
+
+        System.out.println("Connected to MQTT broker.");
+        this.connected = true;
+        this.connectedOnce = true;
+
+        this.publishReady();
+    }
+
+    /**
+     * Sends the ready message, after the first connect and after every automatic reconnect.
+     */
+    private void publishReady() {
+        this.mqttClient.publishWith().topic(READY_TOPIC + "/"  + deviceName)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .send();
     }
 
     /**
@@ -107,6 +161,12 @@ public class MQTTTransport implements TraceTransport {
             var payload = StandardCharsets.UTF_8.decode(byteBuffer).toString();
             var config = this.gson.fromJson(payload, Config.class);
 
+            if (this.started) {
+                // sent again to all observers when another one connected, we already trace
+                return;
+            }
+            this.started = true;
+
             System.out.println("[Config] Received config.");
 
             config.getWatchpoints().forEach(wp -> {
@@ -129,10 +189,13 @@ public class MQTTTransport implements TraceTransport {
     private void consumeTracePackets() {
         try {
             while (true) {
-                var tracePacket = this.traceQueue.take();
-                Metrics.markOutputEvent();
-                Metrics.updateQueueSize(this.traceQueue.size());
-                this.sendTracePacket(tracePacket);
+                // while the broker is unreachable, packets stay in the queue (and spill to disk)
+                this.awaitConnected();
+
+                this.mqttClient.publishWith().topic(TRACE_TOPIC + "/" + deviceName)
+                        .qos(this.traceQos)
+                        .payload(this.batcher.take())
+                        .send();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -140,16 +203,16 @@ public class MQTTTransport implements TraceTransport {
     }
 
     /**
-     * Sends a packet to the server.
-     * @param tracePacket the packet to send
+     * Waits until the client is connected to the broker.
      */
-    private void sendTracePacket(TracePacket tracePacket) {
-        var payload = this.gson.toJson(tracePacket);
-
-        this.mqttClient.publishWith().topic(TRACE_TOPIC + "/" + deviceName)
-                .qos(MqttQos.AT_LEAST_ONCE)
-                .payload(payload.getBytes())
-                .send();
+    private void awaitConnected() throws InterruptedException {
+        if (!this.connected) {
+            System.out.println("Waiting for connection to MQTT broker, " + this.traceQueue.size() + " packets queued...");
+            while (!this.connected) {
+                Thread.sleep(RECONNECT_DELAY / 10);
+            }
+            System.out.println("Connection to MQTT broker restored, " + this.traceQueue.size() + " packets queued.");
+        }
     }
 
     @Override
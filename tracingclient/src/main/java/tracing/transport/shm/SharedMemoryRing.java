@@ -0,0 +1,193 @@
+package tracing.transport.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer single-consumer ring buffer in a memory-mapped file, shared with the server.
+ * The server creates the file and consumes records, the observer maps it and produces records.
+ * <p>
+ * Layout (native byte order, must match with the server):
+ * <pre>
+ *   0: magic (int), version (int), capacity of the data region (int), generation (int), incremented by every reset
+ *  64: write position (long), bytes ever written, only changed by the observer
+ * 128: read position (long), bytes ever read, only changed by the server
+ * 192: state of the observer (int): 0 not ready, 1 ready, 2 closed
+ * 196: length of the config (int), 0 until the server wrote the config
+ * 256: config as JSON
+ * DATA_OFFSET: data region
+ * </pre>
+ * Every record is its length (int) followed by the payload, padded to 8 bytes. A record never wraps around the end of
+ * the data region, a length of -1 marks that the rest of the region is skipped.
+ * <p>
+ * A restarted server resets the ring in place and increments the generation. Every write checks the generation, on a
+ * reset the observer has to map the ring again and mark itself as ready.
+ */
+public class SharedMemoryRing {
+
+    public static final int MAGIC = 0x54524331;
+    public static final int VERSION = 2;
+
+    public static final int STATE_NOT_READY = 0;
+    public static final int STATE_READY = 1;
+    public static final int STATE_CLOSED = 2;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int GENERATION_OFFSET = 12;
+    private static final int WRITE_OFFSET = 64;
+    private static final int READ_OFFSET = 128;
+    private static final int STATE_OFFSET = 192;
+    private static final int CONFIG_LENGTH_OFFSET = 196;
+    private static final int CONFIG_OFFSET = 256;
+    private static final int CONFIG_CAPACITY = 64 * 1024;
+    private static final int DATA_OFFSET = CONFIG_OFFSET + CONFIG_CAPACITY;
+    private static final int PADDING = -1;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // generation of the ring when it was mapped
+    private final int generation;
+
+    private SharedMemoryRing(MappedByteBuffer buffer, int capacity, int generation) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.generation = generation;
+    }
+
+    /**
+     * Maps the ring file created by the server.
+     * @param path path of the ring file
+     * @return the ring, null if the server did not create it yet
+     */
+    public static SharedMemoryRing open(Path path) throws IOException {
+        var file = path.toFile();
+        if (!file.exists() || file.length() <= DATA_OFFSET) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        if ((int) INT.getAcquire(buffer, 0) != MAGIC) {
+            return null;
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported shared memory ring version: " + buffer.getInt(4));
+        }
+        return new SharedMemoryRing(buffer, buffer.getInt(CAPACITY_OFFSET), (int) INT.getAcquire(buffer, GENERATION_OFFSET));
+    }
+
+    public int getState() {
+        return (int) INT.getAcquire(this.buffer, STATE_OFFSET);
+    }
+
+    public void setState(int state) {
+        INT.setRelease(this.buffer, STATE_OFFSET, state);
+    }
+
+    /**
+     * Reads the config written by the server.
+     * @return the config as JSON, null if not written yet
+     */
+    public byte[] readConfig() {
+        int length = (int) INT.getAcquire(this.buffer, CONFIG_LENGTH_OFFSET);
+        if (length == 0) {
+            return null;
+        }
+        var config = new byte[length];
+        this.buffer.duplicate().position(CONFIG_OFFSET).get(config);
+        return config;
+    }
+
+    /**
+     * Checks whether the server reset the ring since it was mapped.
+     * @return true if the ring has to be mapped again
+     */
+    public boolean isReset() {
+        return (int) INT.getAcquire(this.buffer, GENERATION_OFFSET) != this.generation;
+    }
+
+    /**
+     * Appends a record, waits while the ring is full.
+     * @param payload the payload
+     * @return false if the server reset the ring, the record was not written and the ring has to be mapped again
+     */
+    public boolean write(byte[] payload) throws InterruptedException {
+        int size = (4 + payload.length + 7) & ~7;
+        if (size > this.capacity) {
+            throw new IllegalArgumentException("Record too large for the shared memory ring: " + payload.length);
+        }
+
+        if (this.isReset()) {
+            return this.abandon();
+        }
+
+        long writePosition = (long) LONG.getOpaque(this.buffer, WRITE_OFFSET);
+        int offset = (int) (writePosition & (this.capacity - 1));
+        int tail = this.capacity - offset;
+        if (size > tail) {
+            // a record that does not fit before the end of the region starts at the beginning, the skipped tail is
+            // published on its own, as tail and record together may exceed the capacity
+            if (!this.awaitSpace(writePosition, tail)) {
+                return this.abandon();
+            }
+            this.buffer.putInt(DATA_OFFSET + offset, PADDING);
+            writePosition += tail;
+            LONG.setRelease(this.buffer, WRITE_OFFSET, writePosition);
+            offset = 0;
+        }
+
+        if (!this.awaitSpace(writePosition, size)) {
+            return this.abandon();
+        }
+        this.buffer.putInt(DATA_OFFSET + offset, payload.length);
+        this.buffer.duplicate().position(DATA_OFFSET + offset + 4).put(payload);
+        LONG.setRelease(this.buffer, WRITE_OFFSET, writePosition + size);
+        return true;
+    }
+
+    /**
+     * Undoes a stale write position published after the reset, the server ignores the ring until the observer is
+     * ready again.
+     * @return false
+     */
+    private boolean abandon() {
+        LONG.setRelease(this.buffer, WRITE_OFFSET, 0L);
+        return false;
+    }
+
+    /**
+     * Waits until the server has read enough for the given number of bytes to be free after the write position.
+     * @return false if the server reset the ring meanwhile
+     */
+    private boolean awaitSpace(long writePosition, int required) throws InterruptedException {
+        int idleCount = 0;
+        while (this.capacity - (writePosition - (long) LONG.getAcquire(this.buffer, READ_OFFSET)) < required) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (this.isReset()) {
+                return false;
+            }
+            if (idleCount++ < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+        return true;
+    }
+}
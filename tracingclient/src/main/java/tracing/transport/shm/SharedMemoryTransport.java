@@ -0,0 +1,137 @@
+package tracing.transport.shm;
+
+import com.google.gson.Gson;
+import tracing.Config;
+import tracing.metrics.Metrics;
+import tracing.transport.TraceBatcher;
+import tracing.transport.TracePacket;
+import tracing.transport.TraceStartListener;
+import tracing.transport.TraceTransport;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Transport implementation for an observer running on the same machine as the server (SharedMemorySource).
+ * Writes trace payloads into the memory-mapped ring file of the target instead of sending them over the network.
+ * <p>
+ * The observer waits until the server created the ring, marks it as ready and waits for the config the server writes
+ * into the ring, then it writes records with the same payload as the trace messages over MQTT. If a restarted server
+ * resets the ring, the observer connects to it again and writes the record into the new ring.
+ */
+public class SharedMemoryTransport implements TraceTransport {
+
+    public static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "tracing");
+
+    private static final int RECONNECT_DELAY = 2000;
+    private static final int CONFIG_POLL_INTERVAL = 10;
+
+    private final Gson gson = new Gson();
+    // takes the packets of a record from the queue and encodes them
+    private final TraceBatcher batcher;
+
+    private final String deviceName;
+    private final Path ringPath;
+    private final BlockingQueue<TracePacket> traceQueue;
+    private final TraceStartListener traceStartListener;
+
+    private volatile SharedMemoryRing ring;
+
+    /**
+     * Creates a shared memory transport.
+     * @param traceQueue queue of packets to send
+     * @param deviceName name of the target/observer pair
+     * @param directory directory of the ring files, must match with the server
+     * @param traceStartListener notified when the server config is received
+     * @param json whether to send JSON instead of binary packets
+     * @param batchSize maximum number of packets per record, 1 to write every packet as its own record
+     * @param batchDelay maximum time in ms to wait for more packets before a batch is written
+     */
+    public SharedMemoryTransport(BlockingQueue<TracePacket> traceQueue, String deviceName, Path directory,
+                                 TraceStartListener traceStartListener, boolean json, int batchSize, long batchDelay) {
+        this.batcher = new TraceBatcher(traceQueue, json, batchSize, batchDelay);
+        this.traceQueue = traceQueue;
+        this.traceStartListener = Objects.requireNonNull(traceStartListener);
+        this.deviceName = deviceName;
+        this.ringPath = directory.resolve(deviceName + ".ring");
+    }
+
+    @Override
+    public void run() {
+        try {
+            var config = this.connect();
+            System.out.println("[Config] Received config.");
+
+            config.getWatchpoints().forEach(wp -> {
+                System.out.println("[Config] Watchpoint: " + String.format("%08x", wp.getAddress()) + ", " + wp.getSize() + " byte");
+            });
+
+            Metrics.registerQueue(traceQueue);
+
+            // notify that we can start tracing, as we got the config
+            this.traceStartListener.onTraceStarted(config);
+
+            // start consuming and writing trace packets
+            this.consumeTracePackets();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Maps the ring of the target, marks it as ready and waits for the config of the server.
+     * @return the config
+     */
+    private Config connect() throws InterruptedException {
+        System.out.println("Waiting for shared memory ring " + this.ringPath + "...");
+        while (this.ring == null) {
+            try {
+                this.ring = SharedMemoryRing.open(this.ringPath);
+            } catch (IOException e) {
+                System.err.println("Cannot map shared memory ring: " + e.getMessage());
+            }
+            if (this.ring == null) {
+                Thread.sleep(RECONNECT_DELAY);
+            }
+        }
+        System.out.println("Connected to shared memory ring.");
+
+        while (true) {
+            // mark as ready again if the server reset the ring in the meantime
+            if (this.ring.getState() != SharedMemoryRing.STATE_READY) {
+                this.ring.setState(SharedMemoryRing.STATE_READY);
+            }
+            var config = this.ring.readConfig();
+            if (config != null) {
+                return this.gson.fromJson(new String(config, StandardCharsets.UTF_8), Config.class);
+            }
+            Thread.sleep(CONFIG_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Takes packets from the queue populated by the source and writes them to the ring.
+     */
+    private void consumeTracePackets() throws InterruptedException {
+        while (true) {
+            var payload = this.batcher.take();
+
+            // waits while the server is behind
+            while (!this.ring.write(payload)) {
+                System.out.println("Shared memory ring was reset by the server.");
+                this.ring = null;
+                this.connect();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.ring != null) {
+            this.ring.setState(SharedMemoryRing.STATE_CLOSED);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package tracing.transport.tcp;
+
+import com.google.gson.Gson;
+import tracing.Config;
+import tracing.metrics.Metrics;
+import tracing.transport.TraceBatcher;
+import tracing.transport.TracePacket;
+import tracing.transport.TraceStartListener;
+import tracing.transport.TraceTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Transport implementation that sends length-prefixed frames over a plain TCP connection to the server (TCPSource),
+ * for setups where a broker is not needed.
+ * <p>
+ * A frame consists of the length of the rest of the frame (4 bytes, big endian), the frame kind (1 byte) and the
+ * payload. After connecting, the observer sends a ready frame with its name and waits for the config frame of the
+ * server, then it sends trace frames with the same payload as the trace messages over MQTT.
+ */
+public class TCPTransport implements TraceTransport {
+
+    public static final int DEFAULT_PORT = 1885;
+
+    // frame kinds, must match with the server
+    private static final byte FRAME_READY = 1;
+    private static final byte FRAME_CONFIG = 2;
+    private static final byte FRAME_TRACE = 3;
+    private static final int RECONNECT_DELAY = 2000;
+
+    private final Gson gson = new Gson();
+    // takes the packets of a frame from the queue and encodes them
+    private final TraceBatcher batcher;
+
+    private final String deviceName;
+    private final String serverHost;
+    private final int serverPort;
+    private final BlockingQueue<TracePacket> traceQueue;
+    private final TraceStartListener traceStartListener;
+
+    private volatile Socket socket;
+    private DataOutputStream out;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a TCP transport.
+     * @param traceQueue queue of packets to send
+     * @param deviceName name of the target/observer pair
+     * @param serverHost server host/IP
+     * @param serverPort server port
+     * @param traceStartListener notified when the server config is received
+     * @param json whether to send JSON instead of binary packets
+     * @param batchSize maximum number of packets per frame, 1 to send every packet as its own frame
+     * @param batchDelay maximum time in ms to wait for more packets before a batch is sent
+     */
+    public TCPTransport(BlockingQueue<TracePacket> traceQueue, String deviceName, String serverHost, int serverPort,
+                        TraceStartListener traceStartListener, boolean json, int batchSize, long batchDelay) {
+        this.batcher = new TraceBatcher(traceQueue, json, batchSize, batchDelay);
+        this.traceQueue = traceQueue;
+        this.traceStartListener = Objects.requireNonNull(traceStartListener);
+        this.deviceName = deviceName;
+        this.serverHost = serverHost;
+        this.serverPort = serverPort;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // connect to server and wait for the config
+            var config = this.connect();
+            if (config == null) {
+                return;
+            }
+            System.out.println("[Config] Received config.");
+
+            config.getWatchpoints().forEach(wp -> {
+                System.out.println("[Config] Watchpoint: " + String.format("%08x", wp.getAddress()) + ", " + wp.getSize() + " byte");
+            });
+
+            Metrics.registerQueue(traceQueue);
+
+            // notify that we can start tracing, as we got the config
+            this.traceStartListener.onTraceStarted(config);
+
+            // start consuming and sending trace packets
+            this.consumeTracePackets();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Connects to the server and sends the ready frame, retrying until the server sends the config.
+     * @return the config, null if the transport was closed
+     */
+    private Config connect() throws InterruptedException {
+        while (this.running) {
+            System.out.println("Try connecting to TCP server...");
+            try {
+                this.open();
+                System.out.println("Connected to TCP server.");
+
+                // wait for the config, the server sends it when all targets are ready
+                var in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+                while (true) {
+                    int length = in.readInt();
+                    var kind = in.readByte();
+                    var payload = new byte[length - 1];
+                    in.readFully(payload);
+                    if (kind == FRAME_CONFIG) {
+                        return this.gson.fromJson(new String(payload, StandardCharsets.UTF_8), Config.class);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Connection to TCP server failed: " + e.getMessage());
+                this.closeSocket();
+                Thread.sleep(RECONNECT_DELAY);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the connection and sends the ready frame.
+     */
+    private void open() throws IOException {
+        this.socket = new Socket(this.serverHost, this.serverPort);
+        this.socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+        this.writeFrame(FRAME_READY, this.deviceName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Takes packets from the queue populated by the source and sends them to the server.
+     */
+    private void consumeTracePackets() throws InterruptedException {
+        while (this.running) {
+            var payload = this.batcher.take();
+
+            // on connection loss, reconnect and continue, the server detects the lost packets
+            while (this.running) {
+                try {
+                    if (this.socket == null) {
+                        this.open();
+                        System.out.println("Reconnected to TCP server.");
+                    }
+                    this.writeFrame(FRAME_TRACE, payload);
+                    break;
+                } catch (IOException e) {
+                    System.err.println("Connection to TCP server lost: " + e.getMessage());
+                    this.closeSocket();
+                    Thread.sleep(RECONNECT_DELAY);
+                }
+            }
+        }
+    }
+
+    private void writeFrame(byte kind, byte[] payload) throws IOException {
+        this.out.writeInt(1 + payload.length);
+        this.out.writeByte(kind);
+        this.out.write(payload);
+        this.out.flush();
+    }
+
+    private void closeSocket() {
+        var s = this.socket;
+        this.socket = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        this.closeSocket();
+    }
+}
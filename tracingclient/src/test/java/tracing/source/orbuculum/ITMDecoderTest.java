@@ -0,0 +1,106 @@
+package tracing.source.orbuculum;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ITMDecoderTest {
+
+    // packets of the capture in src/test/resources/itm, see capture.txt
+    private static final List<String> CAPTURE_PACKETS = List.of(
+            "sw 1 8000135",
+            "sw 2 80002a1",
+            "sw 5 deadbeef",
+            "overflow",
+            "sw 6 3412",
+            "data 1 write 2a",
+            "data 1 read 7",
+            "sw 10 68",
+            "sw 10 69",
+            "sw 10 a",
+            "sw 3 8000135",
+            "sw 4 80002a1");
+
+    /**
+     * Records the reported packets as text.
+     */
+    private static class Recorder implements ITMDecoder.Listener {
+
+        final List<String> packets = new ArrayList<>();
+
+        @Override
+        public void onSoftware(int channel, long value) {
+            packets.add("sw " + channel + " " + Long.toHexString(value));
+        }
+
+        @Override
+        public void onDataTrace(int comparator, boolean write, long value) {
+            packets.add("data " + comparator + " " + (write ? "write " : "read ") + Long.toHexString(value));
+        }
+
+        @Override
+        public void onOverflow() {
+            packets.add("overflow");
+        }
+    }
+
+    static byte[] capture() throws Exception {
+        return Files.readAllBytes(Path.of(ITMDecoderTest.class.getResource("/itm/capture.bin").toURI()));
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        var recorder = new Recorder();
+        var decoder = new ITMDecoder(recorder, false);
+        assertFalse(decoder.isSynced());
+
+        var capture = capture();
+        decoder.pump(capture, 0, capture.length);
+        assertTrue(decoder.isSynced());
+        assertEquals(CAPTURE_PACKETS, recorder.packets);
+        assertEquals(1, decoder.getOverflowCount());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void testCaptureInChunks() throws Exception {
+        var capture = capture();
+        // packets split across reads
+        for (int chunk = 1; chunk <= 7; chunk++) {
+            var recorder = new Recorder();
+            var decoder = new ITMDecoder(recorder, false);
+            for (int offset = 0; offset < capture.length; offset += chunk) {
+                decoder.pump(capture, offset, Math.min(chunk, capture.length - offset));
+            }
+            assertEquals("chunk " + chunk, CAPTURE_PACKETS, recorder.packets);
+        }
+    }
+
+    @Test
+    public void testUnsyncedUntilSyncPacket() {
+        var recorder = new Recorder();
+        var decoder = new ITMDecoder(recorder, false);
+        // a complete software packet before the first sync packet
+        decoder.pump(new byte[] {0x0B, 1, 2, 3, 4}, 0, 5);
+        assertTrue(recorder.packets.isEmpty());
+        assertFalse(decoder.isSynced());
+
+        decoder.pump(new byte[] {0, 0, 0, 0, 0, (byte) 0x80, 0x0B, 1, 2, 3, 4}, 0, 11);
+        assertTrue(decoder.isSynced());
+        assertEquals(List.of("sw 1 4030201"), recorder.packets);
+    }
+
+    @Test
+    public void testStartSynced() {
+        var recorder = new Recorder();
+        var decoder = new ITMDecoder(recorder, true);
+        // port 31, 1 byte, and port 0, 2 bytes
+        decoder.pump(new byte[] {(byte) 0xF9, (byte) 0xFF, 0x02, 0x34, 0x12}, 0, 5);
+        assertEquals(List.of("sw 31 ff", "sw 0 1234"), recorder.packets);
+    }
+}
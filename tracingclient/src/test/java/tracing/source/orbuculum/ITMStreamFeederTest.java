@@ -0,0 +1,73 @@
+package tracing.source.orbuculum;
+
+import org.junit.Test;
+import tracing.Config;
+import tracing.trace.MemoryWatchpoint;
+import tracing.transport.TracePacket;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ITMStreamFeederTest {
+
+    @Test
+    public void testCapture() throws Exception {
+        var config = new Config();
+        config.getWatchpointMap().put(1, new MemoryWatchpoint(0x20000010L, 4));
+        var queue = new ArrayDeque<TracePacket>();
+        var lastEventTime = new AtomicLong();
+        var feeder = new ITMStreamFeeder(queue, lastEventTime, config);
+
+        feeder.read(new ByteArrayInputStream(ITMDecoderTest.capture()));
+        assertTrue(lastEventTime.get() > 0);
+
+        var enter = queue.remove();
+        assertEquals(TracePacket.TYPE_FUNCTION, (int) enter.getI());
+        assertEquals(TracePacket.SUBTYPE_ENTER, (int) enter.getJ());
+        assertEquals(0x08000135L, (long) enter.getF());
+        assertEquals(0x080002A1L, (long) enter.getC());
+
+        var send = queue.remove();
+        assertEquals(TracePacket.TYPE_MESSAGE, (int) send.getI());
+        assertEquals(TracePacket.SUBTYPE_SEND, (int) send.getJ());
+        assertEquals("deadbeef", send.getM());
+
+        assertEquals(TracePacket.TYPE_OVERFLOW, (int) queue.remove().getI());
+
+        var receive = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_RECEIVE, (int) receive.getJ());
+        assertEquals("3412", receive.getM());
+
+        var write = queue.remove();
+        assertEquals(TracePacket.TYPE_MEMORY, (int) write.getI());
+        assertEquals(TracePacket.SUBTYPE_WRITE, (int) write.getJ());
+        assertEquals(0x20000010L, (long) write.getA());
+        assertEquals(0x2A, (long) write.getV());
+
+        var read = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_READ, (int) read.getJ());
+        assertEquals(7, (long) read.getV());
+
+        var log = queue.remove();
+        assertEquals(TracePacket.TYPE_LOG, (int) log.getI());
+        assertEquals("hi", log.getL());
+
+        var exit = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_EXIT, (int) exit.getJ());
+        assertEquals(0x08000135L, (long) exit.getF());
+        assertEquals(0x080002A1L, (long) exit.getC());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDataTraceWithoutWatchpoint() throws Exception {
+        var queue = new ArrayDeque<TracePacket>();
+        var feeder = new ITMStreamFeeder(queue, new AtomicLong(), new Config());
+        // DWT comparator 1, data value write, no watchpoint configured
+        feeder.read(new ByteArrayInputStream(new byte[] {(byte) 0x9F, 0x2A, 0, 0, 0}));
+        assertTrue(queue.isEmpty());
+    }
+}
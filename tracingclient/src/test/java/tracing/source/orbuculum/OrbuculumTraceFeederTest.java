@@ -0,0 +1,151 @@
+package tracing.source.orbuculum;
+
+import org.junit.Test;
+import tracing.Config;
+import tracing.trace.MemoryWatchpoint;
+import tracing.transport.TracePacket;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class OrbuculumTraceFeederTest {
+
+    private final ArrayDeque<TracePacket> queue = new ArrayDeque<>();
+    private final Config config = new Config();
+
+    private void read(String output, boolean log) throws IOException {
+        read(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), log);
+    }
+
+    private void read(InputStream in, boolean log) throws IOException {
+        new OrbuculumTraceFeeder(queue, new AtomicLong(), config, null, log).read(in);
+    }
+
+    private List<String> messageIds() {
+        var ids = new ArrayList<String>();
+        for (var packet : queue) {
+            assertEquals(TracePacket.TYPE_MESSAGE, (int) packet.getI());
+            ids.add(packet.getM());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testLineSplitAcrossBufferBoundary() throws IOException {
+        // lines of 11 bytes, the 5958th line spans the end of the 64 KiB buffer
+        var output = new StringBuilder();
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 12000; i++) {
+            var id = String.format("%07x", i);
+            output.append("m,1,").append(id).append('\n');
+            expected.add(id);
+        }
+        read(output.toString(), false);
+        assertEquals(expected, messageIds());
+    }
+
+    @Test
+    public void testLineSplitAcrossReads() throws IOException {
+        var data = "m,1,ab\nm,2,cd\n".getBytes(StandardCharsets.UTF_8);
+        // a pipe may return any part of the output
+        var in = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        read(in, false);
+        assertEquals(List.of("ab", "cd"), messageIds());
+    }
+
+    @Test
+    public void testLineLongerThanBuffer() throws IOException {
+        var message = "x".repeat(200_000);
+        read(message + "\nshort\n", true);
+        assertEquals(2, queue.size());
+        var log = queue.remove();
+        assertEquals(TracePacket.TYPE_LOG, (int) log.getI());
+        assertEquals(message, log.getL());
+        assertEquals("short", queue.remove().getL());
+    }
+
+    @Test
+    public void testCrlfLineEndings() throws IOException {
+        read("m,1,ab\r\nm,2,cd\r\n", false);
+        assertEquals(List.of("ab", "cd"), messageIds());
+        queue.clear();
+
+        read("log line\r\n", true);
+        assertEquals("log line", queue.remove().getL());
+    }
+
+    @Test
+    public void testFunctionEventsArePaired() throws IOException {
+        // a second part without a first part is ignored
+        read("f,2,80002a1\nf,1,8000135\nf,2,80002a1\nf,3,8000135\nf,4,80002A1\n", false);
+        assertEquals(2, queue.size());
+
+        var enter = queue.remove();
+        assertEquals(TracePacket.TYPE_FUNCTION, (int) enter.getI());
+        assertEquals(TracePacket.SUBTYPE_ENTER, (int) enter.getJ());
+        assertEquals(0x08000135L, (long) enter.getF());
+        assertEquals(0x080002A1L, (long) enter.getC());
+
+        var exit = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_EXIT, (int) exit.getJ());
+        assertEquals(0x08000135L, (long) exit.getF());
+        assertEquals(0x080002A1L, (long) exit.getC());
+    }
+
+    @Test
+    public void testDataEvents() throws IOException {
+        config.getWatchpointMap().put(1, new MemoryWatchpoint(0x20000010L, 4));
+        // comparator 2 has no watchpoint
+        read("d,1,w,2a\nd,1,r,7\nd,2,w,1\n", false);
+        assertEquals(2, queue.size());
+
+        var write = queue.remove();
+        assertEquals(TracePacket.TYPE_MEMORY, (int) write.getI());
+        assertEquals(TracePacket.SUBTYPE_WRITE, (int) write.getJ());
+        assertEquals(0x20000010L, (long) write.getA());
+        assertEquals(0x2A, (long) write.getV());
+
+        var read = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_READ, (int) read.getJ());
+        assertEquals(7, (long) read.getV());
+    }
+
+    @Test
+    public void testMessageEvents() throws IOException {
+        read("m,1,deadbeef\nm,2,3412\n", false);
+        var send = queue.remove();
+        assertEquals(TracePacket.TYPE_MESSAGE, (int) send.getI());
+        assertEquals(TracePacket.SUBTYPE_SEND, (int) send.getJ());
+        assertEquals("deadbeef", send.getM());
+        var receive = queue.remove();
+        assertEquals(TracePacket.SUBTYPE_RECEIVE, (int) receive.getJ());
+        assertEquals("3412", receive.getM());
+    }
+
+    @Test
+    public void testOverflow() throws IOException {
+        read("ITM overflow\n", false);
+        assertEquals(TracePacket.TYPE_OVERFLOW, (int) queue.remove().getI());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMalformedHexIsSkipped() throws IOException {
+        config.getWatchpointMap().put(1, new MemoryWatchpoint(0x20000010L, 4));
+        read("f,1,80g0135\nd,1,w,zz\nd,1,w,\nm,1,ab\n", false);
+        assertEquals(List.of("ab"), messageIds());
+    }
+}
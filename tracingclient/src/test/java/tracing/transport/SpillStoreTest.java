@@ -0,0 +1,156 @@
+package tracing.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class SpillStoreTest {
+
+    private Path directory;
+    private SpillStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spill");
+    }
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+        var files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    private int segmentFiles() {
+        return directory.toFile().list((dir, name) -> name.endsWith(".spill")).length;
+    }
+
+    private static TracePacket packet(long timestamp) {
+        var tracePacket = new TracePacket();
+        tracePacket.setType(TracePacket.TYPE_FUNCTION);
+        tracePacket.setSubType(TracePacket.SUBTYPE_ENTER);
+        tracePacket.setFunctionAddress(0x8000000L + timestamp);
+        tracePacket.setTimestamp(timestamp);
+        return tracePacket;
+    }
+
+    @Test
+    public void testAllFields() throws IOException {
+        store = new SpillStore(directory, 1024);
+        var tracePacket = new TracePacket();
+        tracePacket.setType(TracePacket.TYPE_MESSAGE);
+        tracePacket.setSubType(TracePacket.SUBTYPE_RECEIVE);
+        tracePacket.setFunctionAddress(1L);
+        tracePacket.setCallSiteAddress(2L);
+        tracePacket.setMemoryAddress(0x20000000L);
+        tracePacket.setMemoryValue(-1L);
+        tracePacket.setTimestamp(Long.MAX_VALUE);
+        tracePacket.setSequenceNumber(7L);
+        tracePacket.setMessageId("m\u00fc");
+        tracePacket.setLogMessage("");
+        store.write(tracePacket);
+        assertEquals(1, store.count());
+        assertTrue(store.bytes() > 0);
+
+        var read = store.read();
+        assertEquals(TracePacket.TYPE_MESSAGE, (int) read.getI());
+        assertEquals(TracePacket.SUBTYPE_RECEIVE, (int) read.getJ());
+        assertEquals(1L, (long) read.getF());
+        assertEquals(2L, (long) read.getC());
+        assertEquals(0x20000000L, (long) read.getA());
+        assertEquals(-1L, (long) read.getV());
+        assertEquals(Long.MAX_VALUE, (long) read.getT());
+        assertEquals(7L, (long) read.getS());
+        assertEquals("m\u00fc", read.getM());
+        assertEquals("", read.getL());
+        assertTrue(store.isEmpty());
+        assertEquals(0, store.bytes());
+        assertNull(store.read());
+    }
+
+    @Test
+    public void testAbsentFields() throws IOException {
+        store = new SpillStore(directory, 1024);
+        store.write(new TracePacket());
+        var read = store.read();
+        assertNull(read.getI());
+        assertNull(read.getJ());
+        assertNull(read.getT());
+        assertNull(read.getS());
+        assertNull(read.getM());
+        assertNull(read.getL());
+    }
+
+    @Test
+    public void testOrderAcrossSegments() throws IOException {
+        // 30 bytes per packet, three packets per segment
+        store = new SpillStore(directory, 100);
+        for (int i = 0; i < 10; i++) {
+            store.write(packet(i));
+        }
+        assertEquals(10, store.count());
+        assertEquals(4, segmentFiles());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (long) store.read().getT());
+        }
+        // read segments are deleted
+        assertEquals(3, segmentFiles());
+
+        // writing while reading keeps the order
+        store.write(packet(10));
+        for (int i = 5; i <= 10; i++) {
+            assertEquals(i, (long) store.read().getT());
+        }
+        assertTrue(store.isEmpty());
+        // the last segment is reused
+        assertEquals(1, segmentFiles());
+        store.write(packet(11));
+        assertEquals(1, segmentFiles());
+        assertEquals(11, (long) store.read().getT());
+    }
+
+    @Test(expected = IOException.class)
+    public void testPacketLargerThanSegment() throws IOException {
+        store = new SpillStore(directory, 32);
+        var tracePacket = new TracePacket();
+        tracePacket.setLogMessage("a log message longer than the segment");
+        store.write(tracePacket);
+    }
+
+    @Test
+    public void testStaleSegmentsAreDeleted() throws IOException {
+        var previous = new SpillStore(directory, 100);
+        previous.write(packet(0));
+        assertEquals(1, segmentFiles());
+
+        store = new SpillStore(directory, 100);
+        assertEquals(0, segmentFiles());
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testCloseDeletesSegments() throws IOException {
+        store = new SpillStore(directory, 100);
+        for (int i = 0; i < 5; i++) {
+            store.write(packet(i));
+        }
+        store.close();
+        assertEquals(0, segmentFiles());
+        assertTrue(store.isEmpty());
+    }
+}
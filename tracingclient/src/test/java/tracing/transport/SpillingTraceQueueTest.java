@@ -0,0 +1,114 @@
+package tracing.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SpillingTraceQueueTest {
+
+    private Path directory;
+    private SpillingTraceQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spill");
+        queue = new SpillingTraceQueue(4, directory);
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+        var files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    private static TracePacket packet(long timestamp) {
+        var tracePacket = new TracePacket();
+        tracePacket.setType(TracePacket.TYPE_LOG);
+        tracePacket.setTimestamp(timestamp);
+        return tracePacket;
+    }
+
+    @Test
+    public void testSpillsBeyondCapacity() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(packet(i)));
+        }
+        assertEquals(10, queue.size());
+        assertTrue(queue.spilledBytes() > 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (long) queue.take().getT());
+        }
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.spilledBytes());
+    }
+
+    @Test
+    public void testOrderWhileSpilled() {
+        for (int i = 0; i < 6; i++) {
+            queue.offer(packet(i));
+        }
+        assertEquals(0, (long) queue.poll().getT());
+        // memory has room again, but packets are spilled, so new packets are spilled too
+        queue.offer(packet(6));
+        var taken = new ArrayList<TracePacket>();
+        assertEquals(6, queue.drainTo(taken));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i + 1, (long) taken.get(i).getT());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testDrainToLimit() {
+        for (int i = 0; i < 8; i++) {
+            queue.offer(packet(i));
+        }
+        var taken = new ArrayList<TracePacket>();
+        assertEquals(5, queue.drainTo(taken, 5));
+        assertEquals(3, queue.size());
+        assertEquals(5, (long) queue.peek().getT());
+    }
+
+    @Test
+    public void testPollTimeout() throws InterruptedException {
+        long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testTakeWaitsForPacket() throws InterruptedException {
+        var taken = new AtomicReference<TracePacket>();
+        var consumer = new Thread(() -> {
+            try {
+                taken.set(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Thread.sleep(20);
+        assertNull(taken.get());
+
+        queue.put(packet(42));
+        consumer.join(5000);
+        assertEquals(42, (long) taken.get().getT());
+    }
+}
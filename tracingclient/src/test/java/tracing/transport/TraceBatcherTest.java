@@ -0,0 +1,118 @@
+package tracing.transport;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TraceBatcherTest {
+
+    private final Gson gson = new Gson();
+    private final LinkedBlockingQueue<TracePacket> queue = new LinkedBlockingQueue<>();
+
+    private static TracePacket packet(long timestamp) {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_LOG);
+        packet.setTimestamp(timestamp);
+        return packet;
+    }
+
+    private TracePacket[] decode(byte[] payload) {
+        var json = new String(payload, StandardCharsets.UTF_8);
+        if (json.startsWith("[")) {
+            return gson.fromJson(json, TracePacket[].class);
+        }
+        return new TracePacket[] {gson.fromJson(json, TracePacket.class)};
+    }
+
+    @Test
+    public void testSinglePacketsWithoutBatching() throws InterruptedException {
+        var batcher = new TraceBatcher(queue, true, 1, 100);
+        for (int i = 0; i < 3; i++) {
+            queue.add(packet(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            var packets = decode(batcher.take());
+            assertEquals(1, packets.length);
+            assertEquals(i, (long) packets[0].getT());
+            assertEquals(i + 1, (long) packets[0].getS());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testBatchIsLimitedBySize() throws InterruptedException {
+        var batcher = new TraceBatcher(queue, true, 4, 10_000);
+        for (int i = 0; i < 10; i++) {
+            queue.add(packet(i));
+        }
+
+        long start = System.nanoTime();
+        var first = decode(batcher.take());
+        var second = decode(batcher.take());
+        // full batches are not delayed
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(4, first.length);
+        assertEquals(4, second.length);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, (long) first[i].getS());
+            assertEquals(i + 5, (long) second[i].getS());
+            assertEquals(i + 4, (long) second[i].getT());
+        }
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testBatchIsLimitedByDelay() throws InterruptedException {
+        var batcher = new TraceBatcher(queue, true, 100, 50);
+        queue.add(packet(0));
+        queue.add(packet(1));
+
+        long start = System.nanoTime();
+        var packets = decode(batcher.take());
+        long elapsed = System.nanoTime() - start;
+        assertEquals(2, packets.length);
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testPacketsDuringDelayAreBatched() throws InterruptedException {
+        var batcher = new TraceBatcher(queue, true, 3, 5_000);
+        queue.add(packet(0));
+        var producer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+                queue.add(packet(1));
+                Thread.sleep(20);
+                queue.add(packet(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        long start = System.nanoTime();
+        var packets = decode(batcher.take());
+        // returns as soon as the batch is full, not after the delay
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+        assertEquals(3, packets.length);
+        producer.join();
+    }
+
+    @Test
+    public void testBinaryPayload() throws InterruptedException {
+        var encoder = new TracePacketEncoder();
+        var batcher = new TraceBatcher(queue, false, 1, 0);
+        var tracePacket = packet(42);
+        queue.add(tracePacket);
+        var payload = batcher.take();
+        // the packet is numbered before it is encoded
+        assertEquals(1, (long) tracePacket.getS());
+        assertArrayEquals(encoder.encode(tracePacket), payload);
+    }
+}
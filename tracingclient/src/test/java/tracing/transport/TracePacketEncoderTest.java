@@ -0,0 +1,99 @@
+package tracing.transport;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TracePacketEncoderTest {
+
+    /**
+     * Frame of three packets numbered from 41, as decoded by the server (same bytes as in TracePacketDecoderTest):
+     * a memory write, a message receive 10 ms before it and a log message without timestamp.
+     */
+    private static final byte[] FRAME = {
+            (byte) 0xB7, 0x02, 0x29,
+            0x00, (byte) 0x99, 0x00, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x02, 0x09, (byte) 0xD0, 0x0F,
+            0x02, (byte) 0xA1, 0x01, 0x02, 0x6D, 0x31, 0x13,
+            0x04, 0x46, (byte) 0x81, (byte) 0x82, (byte) 0x80, 0x40, (byte) 0xAC, 0x02, 0x02, (byte) 0xC3, (byte) 0xBC
+    };
+
+    private final TracePacketEncoder encoder = new TracePacketEncoder();
+
+    private static List<TracePacket> packets() {
+        var memory = new TracePacket();
+        memory.setType(TracePacket.TYPE_MEMORY);
+        memory.setSubType(TracePacket.SUBTYPE_WRITE);
+        memory.setMemoryAddress(0x20000010L);
+        memory.setMemoryValue(-5L);
+        memory.setTimestamp(1000L);
+        memory.setSequenceNumber(41L);
+
+        var message = new TracePacket();
+        message.setType(TracePacket.TYPE_MESSAGE);
+        message.setSubType(TracePacket.SUBTYPE_RECEIVE);
+        message.setMessageId("m1");
+        message.setTimestamp(990L);
+        message.setSequenceNumber(42L);
+
+        var log = new TracePacket();
+        log.setType(TracePacket.TYPE_LOG);
+        log.setFunctionAddress(0x8000101L);
+        log.setCallSiteAddress(300L);
+        log.setLogMessage("\u00fc");
+        log.setSequenceNumber(43L);
+
+        return List.of(memory, message, log);
+    }
+
+    @Test
+    public void testEncodeFrame() {
+        assertArrayEquals(FRAME, encoder.encode(packets()));
+    }
+
+    @Test
+    public void testEncoderIsReusable() {
+        var single = encoder.encode(packets().get(1));
+        assertArrayEquals(FRAME, encoder.encode(packets()));
+        // the timestamp of the first packet of every frame is absolute
+        assertArrayEquals(single, encoder.encode(packets().get(1)));
+    }
+
+    @Test
+    public void testEncodeSinglePacket() {
+        var packet = packets().get(1);
+        packet.setSequenceNumber(41L);
+        // the second packet of FRAME with absolute timestamp 990
+        var expected = new byte[] {(byte) 0xB7, 0x02, 0x29, 0x02, (byte) 0xA1, 0x01, 0x02, 0x6D, 0x31, (byte) 0xBC, 0x0F};
+        assertArrayEquals(expected, encoder.encode(packet));
+    }
+
+    @Test
+    public void testUnnumberedHeartbeat() {
+        assertArrayEquals(new byte[] {(byte) 0xB7, 0x02, 0x00, (byte) 0xFF, 0x00}, encoder.encode(new TracePacket()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPacketsMustBeNumberedConsecutively() {
+        var packets = packets();
+        packets.get(2).setSequenceNumber(45L);
+        encoder.encode(packets);
+    }
+
+    @Test
+    public void testLongString() {
+        var packet = new TracePacket();
+        packet.setType(TracePacket.TYPE_LOG);
+        var chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        packet.setLogMessage(new String(chars));
+
+        var frame = encoder.encode(packet);
+        // header, type, fields, two bytes length, string
+        assertEquals(3 + 2 + 2 + 1000, frame.length);
+        assertEquals((byte) 0xE8, frame[5]);
+        assertEquals(0x07, frame[6]);
+    }
+}
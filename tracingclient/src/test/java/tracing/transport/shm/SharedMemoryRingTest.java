@@ -0,0 +1,169 @@
+package tracing.transport.shm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryRingTest {
+
+    // layout of the ring file, see SharedMemoryRing
+    private static final int WRITE_OFFSET = 64;
+    private static final int READ_OFFSET = 128;
+    private static final int GENERATION_OFFSET = 12;
+    private static final int DATA_OFFSET = 256 + 64 * 1024;
+    private static final int CAPACITY = 64;
+
+    private Path path;
+    // view of the server
+    private MappedByteBuffer server;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("ring", ".ring");
+        try (var raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength(DATA_OFFSET + CAPACITY);
+            server = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        server.order(ByteOrder.nativeOrder());
+        server.putInt(4, SharedMemoryRing.VERSION);
+        server.putInt(8, CAPACITY);
+        server.putInt(0, SharedMemoryRing.MAGIC);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private void consumeAll() {
+        server.putLong(READ_OFFSET, server.getLong(WRITE_OFFSET));
+    }
+
+    // what a restarted server does
+    private void reset() {
+        server.putLong(WRITE_OFFSET, 0);
+        server.putLong(READ_OFFSET, 0);
+        server.putInt(GENERATION_OFFSET, server.getInt(GENERATION_OFFSET) + 1);
+    }
+
+    @Test
+    public void testOpenWithoutServer() throws IOException {
+        assertNull(SharedMemoryRing.open(path.resolveSibling("missing.ring")));
+    }
+
+    @Test
+    public void testRecordsArePadded() throws Exception {
+        var ring = SharedMemoryRing.open(path);
+        ring.write(new byte[] {1, 2, 3});
+        ring.write(new byte[] {4});
+        assertEquals(16, server.getLong(WRITE_OFFSET));
+        assertEquals(3, server.getInt(DATA_OFFSET));
+        assertEquals(1, server.get(DATA_OFFSET + 4));
+        assertEquals(3, server.get(DATA_OFFSET + 6));
+        assertEquals(1, server.getInt(DATA_OFFSET + 8));
+        assertEquals(4, server.get(DATA_OFFSET + 12));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordLargerThanCapacity() throws Exception {
+        SharedMemoryRing.open(path).write(new byte[CAPACITY]);
+    }
+
+    @Test
+    public void testRecordWrapsToStart() throws Exception {
+        var ring = SharedMemoryRing.open(path);
+        ring.write(new byte[36]);
+        consumeAll();
+        // does not fit in the 24 bytes left before the end
+        ring.write(new byte[28]);
+        assertEquals(-1, server.getInt(DATA_OFFSET + 40));
+        assertEquals(28, server.getInt(DATA_OFFSET));
+        assertEquals(64 + 32, server.getLong(WRITE_OFFSET));
+    }
+
+    @Test
+    public void testLargeRecordWrapsWhileServerReads() throws Exception {
+        var ring = SharedMemoryRing.open(path);
+        ring.write(new byte[20]);
+        consumeAll();
+
+        // 40 bytes left before the end, record and skipped tail together exceed the capacity
+        var error = new AtomicReference<Exception>();
+        var producer = new Thread(() -> {
+            try {
+                ring.write(new byte[44]);
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        producer.start();
+
+        // the server skips the padding as soon as it is published
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getLong(WRITE_OFFSET) < 64 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(-1, server.getInt(DATA_OFFSET + 24));
+        consumeAll();
+
+        producer.join(5000);
+        assertFalse("producer hangs", producer.isAlive());
+        assertNull(error.get());
+        assertEquals(44, server.getInt(DATA_OFFSET));
+        assertEquals(64 + 48, server.getLong(WRITE_OFFSET));
+    }
+
+    @Test
+    public void testWriteAfterResetIsRefused() throws Exception {
+        var ring = SharedMemoryRing.open(path);
+        assertTrue(ring.write(new byte[] {1}));
+        reset();
+
+        assertTrue(ring.isReset());
+        assertFalse(ring.write(new byte[] {2}));
+        assertEquals(0, server.getLong(WRITE_OFFSET));
+
+        // mapped again, the record goes to the start of the new ring
+        var remapped = SharedMemoryRing.open(path);
+        assertFalse(remapped.isReset());
+        assertTrue(remapped.write(new byte[] {2}));
+        assertEquals(8, server.getLong(WRITE_OFFSET));
+        assertEquals(2, server.get(DATA_OFFSET + 4));
+    }
+
+    @Test
+    public void testResetWhileWaitingForSpace() throws Exception {
+        var ring = SharedMemoryRing.open(path);
+        assertTrue(ring.write(new byte[60]));
+
+        var written = new AtomicReference<Boolean>();
+        var producer = new Thread(() -> {
+            try {
+                written.set(ring.write(new byte[4]));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        assertTrue("producer waits for space", producer.isAlive());
+
+        // the server restarts instead of reading
+        reset();
+        producer.join(5000);
+        assertFalse("producer hangs", producer.isAlive());
+        assertEquals(Boolean.FALSE, written.get());
+        assertEquals(0, server.getLong(WRITE_OFFSET));
+    }
+}
@@ -0,0 +1,5 @@
+#!/bin/sh
+# Converts the annotated capture listing to the binary stream read by the tests.
+set -e
+cd "$(dirname "$0")"
+sed 's/#.*//' capture.txt | xxd -r -p > capture.bin